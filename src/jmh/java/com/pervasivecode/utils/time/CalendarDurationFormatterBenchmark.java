@@ -0,0 +1,73 @@
+package com.pervasivecode.utils.time;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.MONTHS;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput of {@link CalendarDurationFormatter} with splitting the same span using
+ * {@link ZonedDateTime} arithmetic, and formatting the parts smaller than a day with a
+ * {@link DurationFormatter}.
+ * <p>
+ * Run this with {@code ./gradlew jmh}, which also reports the number of bytes allocated per
+ * operation (the "gc.alloc.rate.norm" metric of the GC profiler).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalendarDurationFormatterBenchmark {
+  private static final ZoneId ZONE = ZoneId.of("America/New_York");
+
+  private Instant start;
+  private Instant end;
+  private CalendarDurationFormatter calendarFormatter;
+  private DurationFormatter formatter;
+  private StringBuilder sb;
+
+  @Setup
+  public void setUp() {
+    start = ZonedDateTime.of(2019, 1, 31, 9, 30, 0, 0, ZONE).toInstant();
+    end = ZonedDateTime.of(2020, 3, 10, 17, 45, 15, 0, ZONE).toInstant();
+    calendarFormatter = new CalendarDurationFormatter(DurationFormats.getUsDefaultInstance(), ZONE);
+    formatter = DurationFormats.getFormatter(Locale.US, DurationFormatStyle.SHORT);
+    sb = new StringBuilder(64);
+  }
+
+  @Benchmark
+  public StringBuilder zonedDateTimeArithmetic() {
+    ZonedDateTime from = start.atZone(ZONE);
+    ZonedDateTime to = end.atZone(ZONE);
+    long months = from.until(to, MONTHS);
+    ZonedDateTime monthAnchor = from.plusMonths(months);
+    long days = monthAnchor.until(to, DAYS);
+    ZonedDateTime dayAnchor = monthAnchor.plusDays(days);
+    sb.setLength(0);
+    sb.append(months / 12).append("y ").append(months % 12).append("mo ").append(days / 7)
+        .append("w ").append(days % 7).append("d ");
+    return formatter.formatTo(Duration.between(dayAnchor, to), sb);
+  }
+
+  @Benchmark
+  public StringBuilder calendarDurationFormatter() {
+    sb.setLength(0);
+    return calendarFormatter.formatTo(start, end, sb);
+  }
+}
@@ -0,0 +1,58 @@
+package com.pervasivecode.utils.time;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput of {@link CurrentNanosSource} implementations with reading the current
+ * time in nanoseconds since the epoch from {@link Instant#now()}.
+ * <p>
+ * Run this with {@code ./gradlew jmh}, which also reports the number of bytes allocated per
+ * operation (the "gc.alloc.rate.norm" metric of the GC profiler).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CurrentNanosSourceBenchmark {
+  private SimplePeriodicRunnerFactory runnerFactory;
+  private CalibratedNanosSource calibrated;
+
+  @Setup
+  public void setUp() {
+    runnerFactory = new SimplePeriodicRunnerFactory();
+    calibrated = CalibratedNanosSource.create(runnerFactory, Duration.ofSeconds(1));
+    calibrated.start();
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    calibrated.stop();
+    runnerFactory.shutdownGracefully(1, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  public long instantNow() {
+    Instant now = Instant.now();
+    return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+  }
+
+  @Benchmark
+  public long calibratedNanosSource() {
+    return calibrated.currentTimeNanoPrecision();
+  }
+}
@@ -0,0 +1,153 @@
+package com.pervasivecode.utils.time;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.HALF_DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static java.time.temporal.ChronoUnit.MINUTES;
+import static java.time.temporal.ChronoUnit.MONTHS;
+import static java.time.temporal.ChronoUnit.SECONDS;
+import static java.time.temporal.ChronoUnit.WEEKS;
+import static java.time.temporal.ChronoUnit.YEARS;
+import java.text.NumberFormat;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Measures the throughput of {@link DurationFormatter#format(Duration)} for a few representative
+ * DurationFormat configurations and Durations.
+ * <p>
+ * Run this with {@code ./gradlew jmh}, which also reports the number of bytes allocated per
+ * operation (the "gc.alloc.rate.norm" metric of the GC profiler).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DurationFormatterBenchmark {
+  /** The DurationFormat configurations being measured. */
+  public enum FormatConfig {
+    /** {@link DurationFormats#getUsDefaultInstance()}: "1h 1m 1s" */
+    US_DEFAULT {
+      @Override
+      DurationFormat format() {
+        return DurationFormats.getUsDefaultInstance();
+      }
+    },
+
+    /** Long-form singular and plural suffixes: "1 hour, 2 minutes, 1 second" */
+    LONG_FORM {
+      @Override
+      DurationFormat format() {
+        ImmutableMap<ChronoUnit, String> singularSuffixes =
+            ImmutableMap.<ChronoUnit, String>builder() //
+                .put(MILLIS, " millisecond") //
+                .put(SECONDS, " second") //
+                .put(MINUTES, " minute") //
+                .put(HOURS, " hour") //
+                .put(DAYS, " day") //
+                .put(WEEKS, " week") //
+                .put(YEARS, " year") //
+                .build();
+        ImmutableMap<ChronoUnit, String> pluralSuffixes =
+            ImmutableMap.<ChronoUnit, String>builder() //
+                .put(MILLIS, " milliseconds") //
+                .put(SECONDS, " seconds") //
+                .put(MINUTES, " minutes") //
+                .put(HOURS, " hours") //
+                .put(DAYS, " days") //
+                .put(WEEKS, " weeks") //
+                .put(YEARS, " years") //
+                .build();
+        return DurationFormat.builder() //
+            .setUnitSuffixProvider(
+                UnitSuffixProviders.singularAndPlural(singularSuffixes, pluralSuffixes)) //
+            .setPartDelimiter(", ") //
+            .setNumberFormat(NumberFormat.getInstance(Locale.US)) //
+            .setLargestUnit(YEARS) //
+            .setSmallestUnit(MILLIS) //
+            .setSuppressedUnits(ImmutableSet.of(HALF_DAYS, MONTHS)) //
+            .setUnitForZeroDuration(SECONDS) //
+            .setNumFractionalDigits(0) //
+            .build();
+      }
+    },
+
+    /** Three fractional digits of seconds, rounded half-even: "1h 1m 1.235s" */
+    FRACTIONAL_HALF_EVEN {
+      @Override
+      DurationFormat format() {
+        return DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+            .setSmallestUnit(SECONDS) //
+            .setNumFractionalDigits(3) //
+            .setRemainderHandling(DurationRemainderHandling.ROUND_HALF_EVEN) //
+            .build();
+      }
+    };
+
+    abstract DurationFormat format();
+  }
+
+  /** The Durations being formatted. */
+  public enum DurationValue {
+    /** A single part: 370 milliseconds. */
+    SHORT(Duration.ofMillis(370)),
+
+    /** Several parts: about 4 weeks, 1 day, 4 hours, 22 minutes, 50.224 seconds. */
+    MULTI_PART(Duration.ofNanos(2_521_370_223_500_001L)),
+
+    /** A negative value: about -1 hour, 1 minute, 1.5 seconds. */
+    NEGATIVE(Duration.ofMillis(-3_661_500)),
+
+    /** The largest possible Duration, which does not fit in a long number of nanoseconds. */
+    VERY_LARGE(Duration.ofSeconds(Long.MAX_VALUE, 999_999_999));
+
+    private final Duration duration;
+
+    DurationValue(Duration duration) {
+      this.duration = duration;
+    }
+  }
+
+  @Param
+  public FormatConfig config;
+
+  @Param
+  public DurationValue value;
+
+  /** Whether to measure the formatter returned by {@link DurationFormatter#compile()}. */
+  @Param({"false", "true"})
+  public boolean compiled;
+
+  private DurationFormatter formatter;
+  private Duration duration;
+
+  @Setup
+  public void setUp() {
+    DurationFormatter uncompiled = new DurationFormatter(config.format());
+    formatter = compiled ? uncompiled.compile() : uncompiled;
+    duration = value.duration;
+  }
+
+  @Benchmark
+  public String format() {
+    return formatter.format(duration);
+  }
+}
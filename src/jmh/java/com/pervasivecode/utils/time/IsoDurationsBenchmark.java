@@ -0,0 +1,102 @@
+package com.pervasivecode.utils.time;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput of {@link IsoDurations} with {@link Duration#toString()} and
+ * {@link Duration#parse(CharSequence)}.
+ * <p>
+ * Run this with {@code ./gradlew jmh}, which also reports the number of bytes allocated per
+ * operation (the "gc.alloc.rate.norm" metric of the GC profiler).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IsoDurationsBenchmark {
+  /** The Durations being formatted and parsed. */
+  public enum DurationValue {
+    /** A fraction of a second: "PT0.37S" */
+    SHORT(Duration.ofMillis(370)),
+
+    /** Hours, minutes, and a fraction of a second: "PT1H10M0.5S" */
+    MULTI_PART(Duration.ofMillis(4_200_500)),
+
+    /** A negative value: "PT-1H-1M-1.5S" */
+    NEGATIVE(Duration.ofMillis(-3_661_500));
+
+    private final Duration duration;
+
+    DurationValue(Duration duration) {
+      this.duration = duration;
+    }
+  }
+
+  @Param
+  public DurationValue value;
+
+  private Duration duration;
+  private String text;
+  private StringBuilder sb;
+  private ByteBuffer buffer;
+
+  @Setup
+  public void setUp() {
+    duration = value.duration;
+    text = duration.toString();
+    sb = new StringBuilder(IsoDurations.MAX_FORMATTED_LENGTH);
+    buffer = ByteBuffer.allocate(IsoDurations.MAX_FORMATTED_LENGTH);
+  }
+
+  @Benchmark
+  public String durationToString() {
+    return duration.toString();
+  }
+
+  @Benchmark
+  public String format() {
+    return IsoDurations.format(duration);
+  }
+
+  @Benchmark
+  public StringBuilder formatToStringBuilder() {
+    sb.setLength(0);
+    return IsoDurations.formatTo(duration, sb);
+  }
+
+  @Benchmark
+  public ByteBuffer formatToByteBuffer() {
+    buffer.clear();
+    return IsoDurations.formatTo(duration, buffer);
+  }
+
+  @Benchmark
+  public Duration durationParse() {
+    return Duration.parse(text);
+  }
+
+  @Benchmark
+  public Duration parse() {
+    return IsoDurations.parse(text);
+  }
+
+  @Benchmark
+  public long parseNanos() {
+    return IsoDurations.parseNanos(text);
+  }
+}
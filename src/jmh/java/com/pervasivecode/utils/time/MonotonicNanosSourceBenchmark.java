@@ -0,0 +1,67 @@
+package com.pervasivecode.utils.time;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput of {@link MonotonicNanosSource}, in its default and striped modes, with
+ * making the values of a CurrentNanosSource unique using a {@code synchronized} method.
+ * <p>
+ * The differences are in how the modes scale with the number of threads that get values at the
+ * same time, so run this with JMH's {@code -t} option set to 1, 2, 4, and so on up to the number
+ * of available processors. The source of the current time is {@link System#nanoTime()}.
+ * <p>
+ * So far this has only been run on a single processor, where striped mode was slower than the
+ * default mode at every thread count. Whether striped mode is faster with several processors is
+ * not yet known.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonotonicNanosSourceBenchmark {
+  private static final CurrentNanosSource SOURCE = System::nanoTime;
+
+  private MonotonicNanosSource monotonic;
+  private MonotonicNanosSource striped;
+  private long last = Long.MIN_VALUE;
+
+  @Setup
+  public void setUp() {
+    monotonic = new MonotonicNanosSource(SOURCE);
+    striped = MonotonicNanosSource.striped(SOURCE, 1_024);
+  }
+
+  @Benchmark
+  public long unsynchronizedSource() {
+    return SOURCE.currentTimeNanoPrecision();
+  }
+
+  @Benchmark
+  public synchronized long synchronizedSource() {
+    long now = SOURCE.currentTimeNanoPrecision();
+    last = (now > last) ? now : last + 1;
+    return last;
+  }
+
+  @Benchmark
+  public long monotonicNanosSource() {
+    return monotonic.currentTimeNanoPrecision();
+  }
+
+  @Benchmark
+  public long stripedMonotonicNanosSource() {
+    return striped.currentTimeNanoPrecision();
+  }
+}
@@ -0,0 +1,271 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+/**
+ * Formatter for a {@link Duration} value that writes it as a single part, in the largest unit in
+ * which its value is at least 1, with a fixed number of significant digits. For example, with four
+ * significant digits:
+ * <ul>
+ * <li>1.370s</li>
+ * <li>412.3µs</li>
+ * <li>2.001h</li>
+ * <li>-15.00ms</li>
+ * </ul>
+ * The candidate units, the unit suffixes, and the symbols used to write numbers are taken from a
+ * {@link DurationFormat}: the units are those from {@link DurationFormat#largestUnit()} to
+ * {@link DurationFormat#smallestUnit()}, except for {@link DurationFormat#suppressedUnits()}.
+ * Values smaller than 1 of the smallest unit are written in the smallest unit. Zero
+ * {@link Duration}s are formatted with the unit specified in
+ * {@link DurationFormat#unitForZeroDuration() unitForZeroDuration}, as by
+ * {@link DurationFormatter}.
+ * <p>
+ * The last digit is rounded half to even if the {@link DurationFormat#remainderHandling()
+ * remainderHandling} is {@link DurationRemainderHandling#ROUND_HALF_EVEN}, and truncated otherwise.
+ * A value that rounds up to the next power of ten keeps the same unit, and is written with one less
+ * fraction digit (for example, 999.96ms is written as "1,000ms"). A value with more integer digits
+ * than significant digits is written as a whole number. The other properties of the
+ * DurationFormat, such as the part delimiter and the number of fractional digits, are not used.
+ * <p>
+ * The value is computed from the Duration's seconds and nanoseconds using long arithmetic, in the
+ * same way that DurationFormatter rounds its smallest unit. As there, a value that is written with
+ * fraction digits has its suffix looked up at that scale, such as 1.000 rather than 1.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class AdaptiveDurationFormatter {
+  /** The largest supported number of significant digits. */
+  public static final int MAX_SIGNIFICANT_DIGITS = DigitEmitter.MAX_LONG_FRACTION_DIGITS;
+
+  private static final long NANOS_PER_SECOND = DurationFormatPlan.NANOS_PER_SECOND;
+
+  private final DurationFormat format;
+  private final int numSignificantDigits;
+  private final transient DurationFormatPlan plan;
+  private final transient DigitEmitter digits;
+
+  /**
+   * Create an AdaptiveDurationFormatter.
+   *
+   * @param format The DurationFormat that specifies the candidate units, unit suffixes, and number
+   *        symbols to use.
+   * @param numSignificantDigits The number of significant digits to write, from 1 to
+   *        {@link #MAX_SIGNIFICANT_DIGITS}.
+   * @throws IllegalArgumentException if the number of significant digits is out of range, or if the
+   *         format includes a unit that is too large to divide a Duration into, such as
+   *         {@link ChronoUnit#FOREVER}.
+   */
+  public AdaptiveDurationFormatter(DurationFormat format, int numSignificantDigits) {
+    this.format = requireNonNull(format);
+    checkArgument(numSignificantDigits >= 1 && numSignificantDigits <= MAX_SIGNIFICANT_DIGITS,
+        "numSignificantDigits must be from 1 to %s. Got: %s", MAX_SIGNIFICANT_DIGITS,
+        numSignificantDigits);
+    this.numSignificantDigits = numSignificantDigits;
+    this.plan = new DurationFormatPlan(format);
+    for (int i = 0; i < plan.unitsInDescOrder.length; i++) {
+      long unitSeconds = plan.unitSeconds[i];
+      boolean isDivisible = (unitSeconds == 0 || plan.unitNanos[i] == 0);
+      checkArgument(isDivisible && unitSeconds < Long.MAX_VALUE / 10, "Unsupported unit: %s",
+          plan.unitsInDescOrder[i]);
+    }
+    this.digits = new DigitEmitter(format.numberFormat(), numSignificantDigits - 1);
+  }
+
+  /**
+   * Format a Duration.
+   *
+   * @param duration The Duration to format.
+   * @return The formatted representation of the Duration.
+   */
+  public String format(Duration duration) {
+    return formatTo(duration, new StringBuilder()).toString();
+  }
+
+  /**
+   * Format a Duration, appending the formatted representation to a StringBuilder.
+   *
+   * @param duration The Duration to format.
+   * @param out The StringBuilder to which the formatted representation will be appended.
+   * @return The same StringBuilder instance that was passed in as {@code out}.
+   * @see #format(Duration)
+   */
+  public StringBuilder formatTo(Duration duration, StringBuilder out) {
+    try {
+      appendTo(duration, out);
+    } catch (IOException e) {
+      // StringBuilder#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Format a Duration, appending the formatted representation to an Appendable.
+   *
+   * @param duration The Duration to format.
+   * @param out The Appendable to which the formatted representation will be appended.
+   * @return The same Appendable instance that was passed in as {@code out}.
+   * @throws IOException if the Appendable throws an IOException.
+   * @see #format(Duration)
+   */
+  public Appendable formatTo(Duration duration, Appendable out) throws IOException {
+    appendTo(duration, out);
+    return out;
+  }
+
+  /**
+   * Format a number of nanoseconds, such as the difference between two values returned by
+   * {@link System#nanoTime()}. This produces the same result as formatting
+   * {@code Duration.ofNanos(nanos)}, without creating the Duration.
+   *
+   * @param nanos The number of nanoseconds to format.
+   * @return The formatted representation of the number of nanoseconds.
+   */
+  public String formatNanos(long nanos) {
+    return formatNanosTo(nanos, new StringBuilder()).toString();
+  }
+
+  /**
+   * Format a number of nanoseconds, appending the formatted representation to a StringBuilder.
+   *
+   * @param nanos The number of nanoseconds to format.
+   * @param out The StringBuilder to which the formatted representation will be appended.
+   * @return The same StringBuilder instance that was passed in as {@code out}.
+   * @see #formatNanos(long)
+   */
+  public StringBuilder formatNanosTo(long nanos, StringBuilder out) {
+    try {
+      appendNanos(nanos, out);
+    } catch (IOException e) {
+      // StringBuilder#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Format a number of nanoseconds, appending the formatted representation to an Appendable.
+   *
+   * @param nanos The number of nanoseconds to format.
+   * @param out The Appendable to which the formatted representation will be appended.
+   * @return The same Appendable instance that was passed in as {@code out}.
+   * @throws IOException if the Appendable throws an IOException.
+   * @see #formatNanos(long)
+   */
+  public Appendable formatNanosTo(long nanos, Appendable out) throws IOException {
+    appendNanos(nanos, out);
+    return out;
+  }
+
+  private void appendTo(Duration duration, Appendable out) throws IOException {
+    requireNonNull(out);
+    long seconds = duration.getSeconds();
+    int nanos = duration.getNano();
+    if (seconds >= 0) {
+      appendValue(false, seconds, nanos, out);
+    } else if (nanos == 0) {
+      // If seconds is Long.MIN_VALUE, this is 2^63 as an unsigned value, which is correct.
+      appendValue(true, -seconds, 0, out);
+    } else {
+      appendValue(true, -(seconds + 1), (int) (NANOS_PER_SECOND - nanos), out);
+    }
+  }
+
+  private void appendNanos(long nanos, Appendable out) throws IOException {
+    requireNonNull(out);
+    // Division truncates toward zero, so the seconds and nanos have the same sign as the total.
+    long seconds = nanos / NANOS_PER_SECOND;
+    int nanoOfSecond = (int) (nanos % NANOS_PER_SECOND);
+    if (nanos >= 0) {
+      appendValue(false, seconds, nanoOfSecond, out);
+    } else {
+      appendValue(true, -seconds, -nanoOfSecond, out);
+    }
+  }
+
+  /**
+   * Format a Duration, given as its sign and the seconds and nanoseconds of its magnitude (as in
+   * {@link DurationFormatter}), in the largest unit in which its magnitude is at least 1.
+   */
+  private void appendValue(boolean negative, long seconds, int nanos, Appendable out)
+      throws IOException {
+    if (seconds == 0 && nanos == 0) {
+      out.append(plan.formattedZero);
+      return;
+    }
+
+    int unitIndex = 0;
+    while (unitIndex < plan.smallestUnitIndex && !isAtLeastOneUnit(seconds, nanos, unitIndex)) {
+      unitIndex++;
+    }
+    RoundedValue value = new RoundedValue(plan).split(unitIndex, seconds, nanos);
+    int numIntegerDigits = numIntegerDigits(value);
+    value.round(Math.max(numSignificantDigits - numIntegerDigits, 0), plan.roundLastPart);
+    if (value.numFractionDigits > 0 && numIntegerDigits(value) > numIntegerDigits) {
+      // The value was rounded up to a power of ten, which has one more integer digit, and whose
+      // fraction is zero.
+      value.numFractionDigits--;
+    }
+
+    if (value.isZero()) {
+      // Only a value smaller than 1 of the smallest unit can round or truncate to zero.
+      out.append(plan.formattedZero);
+      return;
+    }
+    digits.appendFixedDecimal(negative, value.high, value.low, value.numLowDigits,
+        value.scaledFraction, value.numFractionDigits, out);
+    out.append(Objects.requireNonNull(value.suffixFor(plan.unitsInDescOrder[unitIndex], negative)));
+  }
+
+  private boolean isAtLeastOneUnit(long seconds, int nanos, int unitIndex) {
+    long unitSeconds = plan.unitSeconds[unitIndex];
+    if (unitSeconds == 0) {
+      return seconds != 0 || nanos >= plan.unitNanos[unitIndex];
+    }
+    return Long.compareUnsigned(seconds, unitSeconds) >= 0;
+  }
+
+  /** Get the number of decimal digits in the integer part of a value. */
+  private static int numIntegerDigits(RoundedValue value) {
+    if (value.high == 0) {
+      return numDigits(value.low);
+    }
+    return numDigits(value.high) + value.numLowDigits;
+  }
+
+  /** Get the number of decimal digits in an unsigned long value. */
+  private static int numDigits(long unsignedValue) {
+    if (unsignedValue < 0) {
+      // At least 2^63, which has 19 digits, like every larger unsigned long value.
+      return 19;
+    }
+    int numDigits = 1;
+    while (numDigits < 19 && unsignedValue >= DigitEmitter.powerOfTen(numDigits)) {
+      numDigits++;
+    }
+    return numDigits;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(format, numSignificantDigits);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    }
+    if (!(other instanceof AdaptiveDurationFormatter)) {
+      return false;
+    }
+    AdaptiveDurationFormatter otherFormatter = (AdaptiveDurationFormatter) other;
+    return Objects.equals(otherFormatter.format, format)
+        && otherFormatter.numSignificantDigits == numSignificantDigits;
+  }
+}
@@ -0,0 +1,70 @@
+package com.pervasivecode.utils.time;
+
+import java.time.Duration;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Formats a range of values from a batch into a results array, splitting the range into smaller
+ * tasks when it is large enough to be worth formatting in parallel.
+ * <p>
+ * Each task that formats values itself (rather than splitting) uses one scratch StringBuilder for
+ * all of its values, so the only allocations per value are the resulting Strings.
+ */
+final class BatchFormatTask extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  /** Ranges no larger than this are formatted sequentially by a single task. */
+  static final int SEQUENTIAL_THRESHOLD = 1024;
+
+  private final DurationFormatter formatter;
+  // Exactly one of these is non-null.
+  private final long[] nanos;
+  private final Duration[] durations;
+  private final String[] results;
+  private final int from;
+  private final int to;
+
+  private BatchFormatTask(DurationFormatter formatter, long[] nanos, Duration[] durations,
+      String[] results, int from, int to) {
+    this.formatter = formatter;
+    this.nanos = nanos;
+    this.durations = durations;
+    this.results = results;
+    this.from = from;
+    this.to = to;
+  }
+
+  static BatchFormatTask forNanos(DurationFormatter formatter, long[] nanos, String[] results) {
+    return new BatchFormatTask(formatter, nanos, null, results, 0, nanos.length);
+  }
+
+  static BatchFormatTask forDurations(DurationFormatter formatter, Duration[] durations,
+      String[] results) {
+    return new BatchFormatTask(formatter, null, durations, results, 0, durations.length);
+  }
+
+  @Override
+  protected void compute() {
+    if (to - from <= SEQUENTIAL_THRESHOLD) {
+      formatSequentially();
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    invokeAll(new BatchFormatTask(formatter, nanos, durations, results, from, middle),
+        new BatchFormatTask(formatter, nanos, durations, results, middle, to));
+  }
+
+  /** Format every value in this task's range in the calling thread. */
+  void formatSequentially() {
+    StringBuilder scratch = new StringBuilder();
+    for (int i = from; i < to; i++) {
+      scratch.setLength(0);
+      if (nanos != null) {
+        formatter.formatNanosTo(nanos[i], scratch);
+      } else {
+        formatter.formatTo(durations[i], scratch);
+      }
+      results[i] = scratch.toString();
+    }
+  }
+}
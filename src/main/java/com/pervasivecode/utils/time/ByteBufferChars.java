@@ -0,0 +1,53 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import java.nio.ByteBuffer;
+
+/**
+ * A view of a region of a ByteBuffer as a CharSequence with one char per byte, as if the bytes had
+ * been decoded as ISO-8859-1. The bytes are read using absolute gets, so the position and limit of
+ * the ByteBuffer are not used or changed.
+ * <p>
+ * This allows encoded text to be scanned without decoding it, as long as the text being searched
+ * for has been encoded the same way (see {@link DurationParser#forUtf8Bytes(DurationFormat)}).
+ */
+final class ByteBufferChars implements CharSequence {
+  private final ByteBuffer bytes;
+  private final int offset;
+  private final int length;
+
+  ByteBufferChars(ByteBuffer bytes, int offset, int length) {
+    checkPositionIndexes(offset, offset + length, bytes.capacity());
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("index " + index + " is not in [0, " + length + ")");
+    }
+    return (char) (bytes.get(offset + index) & 0xFF);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    checkPositionIndexes(start, end, length);
+    return new ByteBufferChars(bytes, offset + start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; i++) {
+      chars[i] = (char) (bytes.get(offset + i) & 0xFF);
+    }
+    return new String(chars);
+  }
+}
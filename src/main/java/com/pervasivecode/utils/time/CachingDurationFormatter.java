@@ -0,0 +1,120 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import java.time.Duration;
+import javax.annotation.concurrent.ThreadSafe;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * A wrapper around a {@link DurationFormatter} that caches the formatted representations of the
+ * most recently used Durations, for callers that format the same values over and over (such as
+ * timeouts, configured intervals, and latencies that have been rounded to a few distinct values).
+ * <p>
+ * Repeated values are returned as the same String instance, without being formatted again. The
+ * cache is keyed on the Duration (that is, its seconds and nanoseconds), holds at most a fixed
+ * number of entries, and evicts the least recently used entries when it is full. It is divided
+ * into independently locked segments, so it can be used by many threads at once.
+ * <p>
+ * Since the cache is keyed on Durations, {@link #formatNanos(long)} creates a Duration to look up
+ * each value, even if it is found in the cache. No other objects are created for a value that is
+ * found in the cache.
+ * <p>
+ * Instances are thread-safe.
+ */
+@ThreadSafe
+public final class CachingDurationFormatter {
+  private final DurationFormatter formatter;
+  private final LoadingCache<Duration, String> cache;
+
+  /**
+   * Create a CachingDurationFormatter.
+   *
+   * @param formatter The formatter that will format values that are not in the cache.
+   * @param maximumSize The maximum number of formatted values to keep in the cache.
+   * @throws IllegalArgumentException if maximumSize is negative.
+   */
+  public CachingDurationFormatter(DurationFormatter formatter, long maximumSize) {
+    this.formatter = requireNonNull(formatter);
+    checkArgument(maximumSize >= 0, "maximumSize must not be negative. Got: %s", maximumSize);
+    this.cache = CacheBuilder.newBuilder() //
+        .maximumSize(maximumSize) //
+        .recordStats() //
+        .build(CacheLoader.from(formatter::format));
+  }
+
+  /**
+   * Get the formatter that formats values that are not in the cache.
+   *
+   * @return The underlying formatter.
+   */
+  public DurationFormatter formatter() {
+    return formatter;
+  }
+
+  /**
+   * Format a Duration, or get its formatted representation from the cache.
+   *
+   * @param duration The Duration to format.
+   * @return The formatted representation of the Duration.
+   * @see DurationFormatter#format(Duration)
+   */
+  public String format(Duration duration) {
+    return cache.getUnchecked(requireNonNull(duration));
+  }
+
+  /**
+   * Format a number of nanoseconds, or get its formatted representation from the cache. This
+   * creates a Duration to use as the cache key, even if the value is in the cache.
+   *
+   * @param nanos The number of nanoseconds to format.
+   * @return The formatted representation of the number of nanoseconds.
+   * @see DurationFormatter#formatNanos(long)
+   */
+  public String formatNanos(long nanos) {
+    return cache.getUnchecked(Duration.ofNanos(nanos));
+  }
+
+  /**
+   * Get the number of times a formatted value was found in the cache.
+   *
+   * @return The number of cache hits.
+   */
+  public long hitCount() {
+    return cache.stats().hitCount();
+  }
+
+  /**
+   * Get the number of times a value had to be formatted because it was not in the cache.
+   *
+   * @return The number of cache misses.
+   */
+  public long missCount() {
+    return cache.stats().missCount();
+  }
+
+  /**
+   * Get the number of formatted values that were removed from the cache to make room for others.
+   *
+   * @return The number of cache evictions.
+   */
+  public long evictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  /**
+   * Get the approximate number of formatted values in the cache.
+   *
+   * @return The approximate number of cache entries.
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Remove all formatted values from the cache. The counters are not reset. */
+  public void clear() {
+    cache.invalidateAll();
+  }
+}
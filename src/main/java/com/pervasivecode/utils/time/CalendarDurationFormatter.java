@@ -0,0 +1,529 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.MONTHS;
+import static java.time.temporal.ChronoUnit.WEEKS;
+import static java.time.temporal.ChronoUnit.YEARS;
+import static java.util.Objects.requireNonNull;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+/**
+ * Formatter for the span of time between two {@link Instant}s, which splits the span into exact
+ * calendar years, months, weeks, and days in a time zone, rather than the estimated lengths of
+ * {@link ChronoUnit#MONTHS} and {@link ChronoUnit#YEARS} that {@link DurationFormatter} uses. For
+ * example, the 29 days from 2020-02-01 to 2020-03-01 are formatted as "1mo", while a
+ * DurationFormatter formats the same Duration as "4w 1d".
+ * <p>
+ * The span is split the way that {@link Period#between(java.time.LocalDate, java.time.LocalDate)}
+ * splits the span between two dates, using the local date-times of the start and end in the time
+ * zone: first the whole months from the start to the end are counted (and split into years and
+ * months), then the whole days from the start plus those months to the end (split into weeks and
+ * days). Adding months and days to the start follows the rules of {@link ZonedDateTime}, keeping
+ * the local time of day where possible. What is left is an exact number of seconds, which is split
+ * into the units smaller than a day like a {@link DurationFormatter} would split it. So a span that
+ * includes a change to daylight saving time can have a part such as "23h" where a whole day would
+ * otherwise be.
+ * <p>
+ * Only the units in the {@link DurationFormat} are used. For example, if the format has years but
+ * not months, the span is split into whole years and then days. If the end is before the start,
+ * the span is formatted as a negative value, with the same parts as the span from the end to the
+ * start. The other properties of the DurationFormat, such as {@link DurationFormat#maxParts()
+ * maxParts}, are applied as they are by DurationFormatter, and trailing parts whose value is zero
+ * are omitted in the same way. A calendar unit that is rounded is rounded according to the actual
+ * length of the month, year, week, or day that follows the whole units. When the last of maxParts
+ * parts is rounded, the end of the span is rounded to the nearer boundary of that unit before the
+ * span is split, so rounding up carries into the larger parts (for example, "1y 11mo 3w" is
+ * rounded to "2y").
+ * <p>
+ * The zone's offset transitions and the lengths of months are looked up in tables that are built
+ * once for each time zone and shared by all formatters for that zone, so formatting many spans in
+ * the same zone does not need ZoneRules lookups or LocalDateTime arithmetic for each value.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class CalendarDurationFormatter {
+  private static final long NANOS_PER_SECOND = DurationFormatPlan.NANOS_PER_SECOND;
+  private static final long SECONDS_PER_DAY = ZoneCalendar.SECONDS_PER_DAY;
+
+  private final DurationFormat format;
+  private final ZoneId zone;
+  private final transient DurationFormatter formatter;
+  private final transient DurationFormatPlan plan;
+  private final transient ZoneCalendar calendar;
+
+  /** The number of units at the start of the plan's units that are calendar units. */
+  private final transient int numCalendarUnits;
+  private final transient boolean hasYears;
+  private final transient boolean hasWeeks;
+  /** The number of months or days in the smallest month-based or day-based unit, or zero. */
+  private final transient int monthStep;
+  private final transient int dayStep;
+
+  /**
+   * Create a CalendarDurationFormatter.
+   *
+   * @param format The formatting rules to use.
+   * @param zone The time zone in which to count calendar years, months, weeks, and days.
+   * @throws IllegalArgumentException if the format includes a unit larger than
+   *         {@link ChronoUnit#YEARS}, such as {@link ChronoUnit#DECADES}.
+   */
+  public CalendarDurationFormatter(DurationFormat format, ZoneId zone) {
+    this.format = requireNonNull(format);
+    this.zone = requireNonNull(zone);
+    this.formatter = new DurationFormatter(format).compile();
+    this.plan = formatter.plan();
+    this.calendar = ZoneCalendar.of(zone);
+
+    int numCalendarUnits = 0;
+    for (ChronoUnit unit : plan.unitsInDescOrder) {
+      checkArgument(unit.compareTo(YEARS) <= 0, "Unsupported unit: %s", unit);
+      if (unit.compareTo(DAYS) >= 0) {
+        numCalendarUnits++;
+      }
+    }
+    this.numCalendarUnits = numCalendarUnits;
+    this.hasYears = format.units().contains(YEARS);
+    this.hasWeeks = format.units().contains(WEEKS);
+    boolean hasMonths = format.units().contains(MONTHS);
+    boolean hasDays = format.units().contains(DAYS);
+    this.monthStep = hasMonths ? 1 : (hasYears ? 12 : 0);
+    this.dayStep = hasDays ? 1 : (hasWeeks ? 7 : 0);
+  }
+
+  /**
+   * Format the span of time between two instants.
+   *
+   * @param start The start of the span.
+   * @param end The end of the span.
+   * @return The formatted representation of the span.
+   * @throws java.time.DateTimeException if a date in the span is outside of the range supported by
+   *         {@link java.time.LocalDate}.
+   */
+  public String format(Instant start, Instant end) {
+    return formatTo(start, end, new StringBuilder()).toString();
+  }
+
+  /**
+   * Format the span of time between two instants, appending the formatted representation to a
+   * StringBuilder.
+   *
+   * @param start The start of the span.
+   * @param end The end of the span.
+   * @param out The StringBuilder to which the formatted representation will be appended.
+   * @return The same StringBuilder instance that was passed in as {@code out}.
+   * @throws java.time.DateTimeException if a date in the span is outside of the range supported by
+   *         {@link java.time.LocalDate}.
+   */
+  public StringBuilder formatTo(Instant start, Instant end, StringBuilder out) {
+    try {
+      formatTo(start, end, (Appendable) out);
+    } catch (IOException e) {
+      // StringBuilder#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Format the span of time between two instants, appending the formatted representation to an
+   * Appendable such as a {@link java.io.Writer} or {@link java.nio.CharBuffer}.
+   *
+   * @param start The start of the span.
+   * @param end The end of the span.
+   * @param out The Appendable to which the formatted representation will be appended.
+   * @return The same Appendable instance that was passed in as {@code out}.
+   * @throws IOException if the Appendable throws an IOException.
+   * @throws java.time.DateTimeException if a date in the span is outside of the range supported by
+   *         {@link java.time.LocalDate}.
+   */
+  public Appendable formatTo(Instant start, Instant end, Appendable out) throws IOException {
+    requireNonNull(out);
+    writeSpan(start, end, formatter.textWriter(), out);
+    return out;
+  }
+
+  /**
+   * Split the span of time between two instants into the parts that
+   * {@link #format(Instant, Instant)} would write, filling in a FormattedDuration that can be
+   * reused for any number of spans. Any parts that it already contains are replaced.
+   *
+   * @param start The start of the span.
+   * @param end The end of the span.
+   * @param out The FormattedDuration to fill in.
+   * @return The same FormattedDuration instance that was passed in as {@code out}.
+   * @throws java.time.DateTimeException if a date in the span is outside of the range supported by
+   *         {@link java.time.LocalDate}.
+   */
+  public FormattedDuration formatToParts(Instant start, Instant end, FormattedDuration out) {
+    out.reset();
+    try {
+      writeSpan(start, end, out.writer(), null);
+    } catch (IOException e) {
+      // FormattedDuration's writer never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  private void writeSpan(Instant start, Instant end, DurationPartWriter writer, Appendable out)
+      throws IOException {
+    int comparison = start.compareTo(end);
+    if (comparison == 0) {
+      writer.writeZero(format.unitForZeroDuration(), out);
+      return;
+    }
+    boolean negative = comparison > 0;
+    Instant from = negative ? end : start;
+    Instant to = negative ? start : end;
+    Span span = new Span(from.getEpochSecond(), from.getNano(), to.getEpochSecond(), to.getNano());
+    if (plan.roundLastPart) {
+      span = roundLastPartShown(span);
+    }
+
+    int numPartsShown = 0;
+    // The index of the first of the zero parts that have not been written yet, or -1 if there are
+    // none, as in DurationFormatter: zero parts are only written once a nonzero part follows them.
+    int firstUnwrittenZeroIndex = -1;
+    for (int unitIndex = 0; unitIndex < numCalendarUnits; unitIndex++) {
+      ChronoUnit unit = plan.unitsInDescOrder[unitIndex];
+      long value = span.value(unit);
+      boolean isFirstPart = (numPartsShown == 0);
+      boolean isSmallestUnit = (unitIndex == plan.smallestUnitIndex);
+
+      if (isSmallestUnit && plan.roundSmallestUnit) {
+        writeRoundedPart(unitIndex, negative, isFirstPart, span, firstUnwrittenZeroIndex, writer,
+            out);
+        return;
+      }
+      if (isFirstPart && value == 0 && !isSmallestUnit) {
+        // Skip leading parts whose value is zero.
+        continue;
+      }
+      boolean isLastPart = (++numPartsShown == plan.maxParts);
+
+      if (value == 0 && !isFirstPart) {
+        if (firstUnwrittenZeroIndex < 0) {
+          firstUnwrittenZeroIndex = unitIndex;
+        }
+      } else {
+        formatter.writeZeroParts(firstUnwrittenZeroIndex, unitIndex, writer, out);
+        firstUnwrittenZeroIndex = -1;
+        // If the span is negative, only show the first part as a negative value.
+        boolean isNegativePart = negative && isFirstPart && value != 0;
+        writer.writeInteger(unit, isNegativePart, value, 0, 0, isFirstPart, out);
+      }
+      if (isLastPart || isSmallestUnit) {
+        return;
+      }
+    }
+
+    if (span.restSeconds != 0 || span.restNanos != 0) {
+      formatter.writeParts(negative, span.restSeconds, span.restNanos, numCalendarUnits,
+          numPartsShown, firstUnwrittenZeroIndex, writer, out);
+    }
+  }
+
+  /**
+   * If {@link DurationFormat#maxParts()} parts end before the smallest unit, round the end of the
+   * span to the nearer boundary of the last unit shown, and split the span again, so that rounding
+   * up carries into the larger parts, as it does in {@link DurationFormatter}. Example:
+   * "1y 11mo 3w" -&gt; "2y" rather than "1y 12mo".
+   *
+   * @return The span with its end rounded, or the same span if it does not need to be rounded
+   *         before it is written.
+   */
+  private Span roundLastPartShown(Span span) {
+    int firstPartUnitIndex = span.firstPartUnitIndex();
+    while (true) {
+      if (plan.maxParts > plan.smallestUnitIndex - firstPartUnitIndex) {
+        // The part for the smallest unit can be shown, and is rounded when it is written.
+        return span;
+      }
+      Span rounded = span.roundedTo(firstPartUnitIndex + plan.maxParts - 1);
+      int roundedFirstPartUnitIndex = rounded.firstPartUnitIndex();
+      if (roundedFirstPartUnitIndex >= firstPartUnitIndex) {
+        return rounded;
+      }
+      // Rounding up made the first part a larger unit, so the last part is a larger unit too.
+      firstPartUnitIndex = roundedFirstPartUnitIndex;
+    }
+  }
+
+  /**
+   * The span of time from one instant to a later one, split into whole calendar units and what is
+   * left after them.
+   */
+  private final class Span {
+    final long fromSecond;
+    // Adding months and days keeps the nanosecond-of-second of the start.
+    final int nano;
+    final long toSecond;
+    final int toNano;
+    final int fromOffset;
+    final long fromLocal;
+
+    /** The whole months from the start, and the instant after them. */
+    final long months;
+    final long monthAnchorSecond;
+    final int monthAnchorOffset;
+    final long monthAnchorLocal;
+
+    /** The whole days from the month anchor, and the instant after them. */
+    final long days;
+    final long dayAnchorSecond;
+
+    final long years;
+    final long monthsPart;
+    final long weeks;
+    final long daysPart;
+
+    /** The rest of the span after the whole days, which is split into units smaller than a day. */
+    final long restSeconds;
+    final int restNanos;
+
+    Span(long fromSecond, int nano, long toSecond, int toNano) {
+      this.fromSecond = fromSecond;
+      this.nano = nano;
+      this.toSecond = toSecond;
+      this.toNano = toNano;
+      this.fromOffset = calendar.offsetAt(fromSecond);
+      this.fromLocal = fromSecond + fromOffset;
+      long toLocal = toSecond + calendar.offsetAt(toSecond);
+
+      // Count whole months from the start, like Period#between. Adding them keeps the local time
+      // of day, so in rare cases (in an overlap caused by a change from daylight saving time) the
+      // result is after the end, and one fewer month fits.
+      long months = 0;
+      long monthAnchorSecond = fromSecond;
+      if (monthStep > 0) {
+        months = ZoneCalendar.monthsUntil(fromLocal, nano, toLocal, toNano);
+        months -= months % monthStep;
+        monthAnchorSecond = plusMonths(fromLocal, fromOffset, months);
+        while (months > 0 && isAfter(monthAnchorSecond, nano, toSecond, toNano)) {
+          months -= monthStep;
+          monthAnchorSecond = plusMonths(fromLocal, fromOffset, months);
+        }
+      }
+      this.months = months;
+      this.monthAnchorSecond = monthAnchorSecond;
+      this.monthAnchorOffset = calendar.offsetAt(monthAnchorSecond);
+      this.monthAnchorLocal = monthAnchorSecond + monthAnchorOffset;
+
+      // Count whole days from there.
+      long days = 0;
+      long dayAnchorSecond = monthAnchorSecond;
+      if (dayStep > 0) {
+        days = ZoneCalendar.daysUntil(monthAnchorLocal, nano, toLocal, toNano);
+        days -= days % dayStep;
+        dayAnchorSecond = plusDays(monthAnchorLocal, monthAnchorOffset, days);
+        while (days > 0 && isAfter(dayAnchorSecond, nano, toSecond, toNano)) {
+          days -= dayStep;
+          dayAnchorSecond = plusDays(monthAnchorLocal, monthAnchorOffset, days);
+        }
+      }
+      this.days = days;
+      this.dayAnchorSecond = dayAnchorSecond;
+
+      this.years = hasYears ? months / 12 : 0;
+      this.monthsPart = months - years * 12;
+      this.weeks = hasWeeks ? days / 7 : 0;
+      this.daysPart = days - weeks * 7;
+
+      long restSeconds = toSecond - dayAnchorSecond;
+      int restNanos = toNano - nano;
+      if (restNanos < 0) {
+        restNanos += NANOS_PER_SECOND;
+        restSeconds--;
+      }
+      this.restSeconds = restSeconds;
+      this.restNanos = restNanos;
+    }
+
+    /** Get the value of the part for a calendar unit. */
+    long value(ChronoUnit unit) {
+      switch (unit) {
+        case YEARS:
+          return years;
+        case MONTHS:
+          return monthsPart;
+        case WEEKS:
+          return weeks;
+        default:
+          return daysPart;
+      }
+    }
+
+    /** Get the index in the plan's units of the unit of the first part that would be written. */
+    int firstPartUnitIndex() {
+      for (int unitIndex = 0; unitIndex < numCalendarUnits; unitIndex++) {
+        if (value(plan.unitsInDescOrder[unitIndex]) != 0) {
+          return unitIndex;
+        }
+      }
+      return plan.largestUnitIndexIn(restSeconds, restNanos,
+          Math.min(numCalendarUnits, plan.smallestUnitIndex));
+    }
+
+    /** Get the start of the one of a calendar unit that follows the whole units. */
+    long unitStartSecond(ChronoUnit unit) {
+      switch (unit) {
+        case YEARS:
+          return plusMonths(fromLocal, fromOffset, years * 12);
+        case MONTHS:
+          return monthAnchorSecond;
+        case WEEKS:
+          return plusDays(monthAnchorLocal, monthAnchorOffset, weeks * 7);
+        default:
+          return dayAnchorSecond;
+      }
+    }
+
+    /** Get the end of the one of a calendar unit that follows the whole units. */
+    long unitEndSecond(ChronoUnit unit) {
+      switch (unit) {
+        case YEARS:
+          return plusMonths(fromLocal, fromOffset, (years + 1) * 12);
+        case MONTHS:
+          return plusMonths(fromLocal, fromOffset, months + 1);
+        case WEEKS:
+          return plusDays(monthAnchorLocal, monthAnchorOffset, (weeks + 1) * 7);
+        default:
+          return plusDays(monthAnchorLocal, monthAnchorOffset, days + 1);
+      }
+    }
+
+    /** Get the number of nanoseconds from an instant with the start's nanosecond to the end. */
+    long nanosToEndFrom(long second) {
+      return (toSecond - second) * NANOS_PER_SECOND + (toNano - nano);
+    }
+
+    /**
+     * Get this span with its end rounded half to even to a whole number of a unit, after the parts
+     * for the larger units. The end is not rounded past the next whole month (for weeks and days)
+     * or the next whole day (for units smaller than a day), since those can be shorter than a whole
+     * number of the smaller unit; rounding up to them carries into the larger part instead.
+     *
+     * @param unitIndex The index in the plan's units of the unit of the last part shown.
+     */
+    Span roundedTo(int unitIndex) {
+      ChronoUnit unit = plan.unitsInDescOrder[unitIndex];
+      long endSecond;
+      int endNano = nano;
+      if (unitIndex < numCalendarUnits) {
+        long unitStartSecond = unitStartSecond(unit);
+        long unitEndSecond = unitEndSecond(unit);
+        if (unit.compareTo(MONTHS) < 0) {
+          unitEndSecond = Math.min(unitEndSecond, nextMonthAnchorSecond());
+        }
+        // A unit is at most a year long, so these fit in a long.
+        long unitLengthNanos = (unitEndSecond - unitStartSecond) * NANOS_PER_SECOND;
+        long twiceElapsedNanos = nanosToEndFrom(unitStartSecond) * 2;
+        boolean roundUp = twiceElapsedNanos > unitLengthNanos
+            || (twiceElapsedNanos == unitLengthNanos && (value(unit) & 1) != 0);
+        endSecond = roundUp ? unitEndSecond : unitStartSecond;
+      } else {
+        RoundedValue rest =
+            new RoundedValue(plan).split(unitIndex, restSeconds, restNanos).round(0, true);
+        long endNanos = (long) nano + rest.replacedNanos(restNanos);
+        endSecond = dayAnchorSecond + rest.replacedSeconds(restSeconds, restNanos)
+            + endNanos / NANOS_PER_SECOND;
+        endNano = (int) (endNanos % NANOS_PER_SECOND);
+        long nextDayAnchorSecond = nextDayAnchorSecond();
+        if (isAfter(endSecond, endNano, nextDayAnchorSecond, nano)) {
+          endSecond = nextDayAnchorSecond;
+          endNano = nano;
+        }
+      }
+      return new Span(fromSecond, nano, endSecond, endNano);
+    }
+
+    /** Get the instant after one more of the smallest month-based unit, if there is one. */
+    private long nextMonthAnchorSecond() {
+      return (monthStep > 0) ? plusMonths(fromLocal, fromOffset, months + monthStep)
+          : Long.MAX_VALUE;
+    }
+
+    /** Get the instant after one more of the smallest calendar unit, if there is one. */
+    private long nextDayAnchorSecond() {
+      return (dayStep > 0) ? plusDays(monthAnchorLocal, monthAnchorOffset, days + dayStep)
+          : nextMonthAnchorSecond();
+    }
+  }
+
+  /** Get the instant of the local date-time of {@code localSecond} plus a number of months. */
+  private long plusMonths(long localSecond, int offset, long months) {
+    if (months == 0) {
+      return localSecond - offset;
+    }
+    return calendar.epochSecondOf(ZoneCalendar.plusMonths(localSecond, months), offset);
+  }
+
+  /** Get the instant of the local date-time of {@code localSecond} plus a number of days. */
+  private long plusDays(long localSecond, int offset, long days) {
+    if (days == 0) {
+      return localSecond - offset;
+    }
+    return calendar.epochSecondOf(
+        Math.addExact(localSecond, Math.multiplyExact(days, SECONDS_PER_DAY)), offset);
+  }
+
+  private static boolean isAfter(long second, int nano, long otherSecond, int otherNano) {
+    return second > otherSecond || (second == otherSecond && nano > otherNano);
+  }
+
+  /**
+   * Write the rounded value of the part for the smallest unit, which is a calendar unit. The
+   * fraction depends on the actual length of the month, year, week, or day that follows the whole
+   * units. If the value rounds to zero it is omitted, unless it is also the first part, in which
+   * case the whole value is formatted as a zero duration.
+   */
+  private void writeRoundedPart(int unitIndex, boolean negative, boolean isFirstPart, Span span,
+      int firstUnwrittenZeroIndex, DurationPartWriter writer, Appendable out) throws IOException {
+    ChronoUnit unit = plan.unitsInDescOrder[unitIndex];
+    long unitStartSecond = span.unitStartSecond(unit);
+    // A unit is at most a year long, so this fits in a long.
+    BigDecimal unitNanos = BigDecimal.valueOf(
+        (span.unitEndSecond(unit) - unitStartSecond) * NANOS_PER_SECOND);
+    BigDecimal roundedValue = BigDecimal.valueOf(span.value(unit)).multiply(unitNanos)
+        .add(BigDecimal.valueOf(span.nanosToEndFrom(unitStartSecond)))
+        .divide(unitNanos, plan.numFractionalDigits, RoundingMode.HALF_EVEN);
+    if (roundedValue.signum() == 0) {
+      if (isFirstPart) {
+        writer.writeZero(format.unitForZeroDuration(), out);
+      }
+      return; // omit the trailing zero.
+    }
+    if (negative && isFirstPart) {
+      roundedValue = roundedValue.negate();
+    }
+    formatter.writeZeroParts(firstUnwrittenZeroIndex, unitIndex, writer, out);
+    writer.writeBigDecimal(unit, roundedValue, isFirstPart, out);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(format, zone);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    }
+    if (!(other instanceof CalendarDurationFormatter)) {
+      return false;
+    }
+    CalendarDurationFormatter otherFormatter = (CalendarDurationFormatter) other;
+    return Objects.equals(otherFormatter.format, format)
+        && Objects.equals(otherFormatter.zone, zone);
+  }
+}
@@ -0,0 +1,186 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.LongSupplier;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A {@link CurrentNanosSource} that measures the time since the Unix epoch using a monotonic
+ * high-resolution timer such as {@link System#nanoTime()}, anchored to the wall clock.
+ * <p>
+ * The wall clock is read once when the source is created, and the timer's value at that moment is
+ * recorded. After that, the current time is the wall-clock time at the anchor plus the number of
+ * nanoseconds the timer has advanced since then, which is fast, has the resolution of the timer,
+ * and does not allocate.
+ * <p>
+ * Since the timer and the wall clock drift apart, the source is recalibrated against the wall clock
+ * periodically by a {@link PeriodicRunner} while it is {@link #start() started}. The difference
+ * found by a recalibration is not applied all at once, since that would make the values jump
+ * (possibly backward). Instead, it is slewed: the values advance slightly faster or slower than the
+ * timer, by at most {@code maxSlewPartsPerMillion}, until the difference has been made up. So the
+ * values always increase at a steady rate, and the offset from the wall clock is bounded by the
+ * drift during one recalibration interval plus whatever correction is still being slewed. (A large
+ * step of the wall clock, such as setting it by hand, takes a long time to make up at a small slew
+ * rate. Create a new instance to follow such a change right away.)
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class CalibratedNanosSource implements CurrentNanosSource {
+  /** The slew rate that {@link #create} uses, which is the maximum rate used by NTP. */
+  public static final int DEFAULT_MAX_SLEW_PARTS_PER_MILLION = 500;
+
+  private static final long PARTS_PER_MILLION = 1_000_000L;
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+  /** How many times to read the wall clock when calibrating, keeping the most precise reading. */
+  private static final int CALIBRATION_SAMPLES = 3;
+
+  /**
+   * The relationship between the timer and the time since the epoch, starting at one calibration.
+   */
+  @Immutable
+  private static final class Calibration {
+    final long anchorTicks;
+    final long anchorEpochNanos;
+    final long correctionNanos;
+
+    Calibration(long anchorTicks, long anchorEpochNanos, long correctionNanos) {
+      this.anchorTicks = anchorTicks;
+      this.anchorEpochNanos = anchorEpochNanos;
+      this.correctionNanos = correctionNanos;
+    }
+  }
+
+  private final LongSupplier ticker;
+  private final TimeSource wallClock;
+  private final PeriodicRunner runner;
+  private final long maxSlewPartsPerMillion;
+
+  private volatile Calibration calibration;
+
+  /**
+   * Create a CalibratedNanosSource that uses {@link System#nanoTime()} and the system clock, and is
+   * recalibrated using a runner from a {@link SimplePeriodicRunnerFactory}, with the default slew
+   * rate of {@value #DEFAULT_MAX_SLEW_PARTS_PER_MILLION} parts per million.
+   *
+   * @param runnerFactory The factory whose scheduling thread will recalibrate the source.
+   * @param recalibrationInterval How often to recalibrate against the wall clock, such as once per
+   *        minute. Since SimplePeriodicRunner schedules tasks in whole milliseconds, this must be at
+   *        least one millisecond.
+   * @return A CalibratedNanosSource that has not been started yet.
+   * @throws IllegalArgumentException if the recalibration interval is shorter than one
+   *         millisecond.
+   */
+  public static CalibratedNanosSource create(SimplePeriodicRunnerFactory runnerFactory,
+      Duration recalibrationInterval) {
+    checkArgument(recalibrationInterval.toMillis() >= 1,
+        "The recalibration interval must be at least 1ms. Got: %s", recalibrationInterval);
+    return new CalibratedNanosSource(System::nanoTime, () -> Instant.now(),
+        runnerFactory.getRunnerForInterval(recalibrationInterval),
+        DEFAULT_MAX_SLEW_PARTS_PER_MILLION);
+  }
+
+  /**
+   * Create a CalibratedNanosSource. The wall clock is read once by this constructor, and then once
+   * per run of the periodic task, after {@link #start()} is called.
+   *
+   * @param ticker A monotonic timer that returns a number of nanoseconds since an arbitrary origin,
+   *        such as {@code System::nanoTime}.
+   * @param wallClock The wall clock, such as {@code () -> Instant.now()}.
+   * @param runner A PeriodicRunner that has no task yet, which will be used to recalibrate the
+   *        source. This CalibratedNanosSource sets its task.
+   * @param maxSlewPartsPerMillion The largest adjustment to the rate at which the values advance,
+   *        relative to the ticker, when making up a difference from the wall clock.
+   * @throws IllegalArgumentException if maxSlewPartsPerMillion is not between 1 and 999,999.
+   */
+  public CalibratedNanosSource(LongSupplier ticker, TimeSource wallClock, PeriodicRunner runner,
+      int maxSlewPartsPerMillion) {
+    checkArgument(maxSlewPartsPerMillion > 0 && maxSlewPartsPerMillion < PARTS_PER_MILLION,
+        "maxSlewPartsPerMillion must be between 1 and 999,999. Got: %s", maxSlewPartsPerMillion);
+    this.ticker = checkNotNull(ticker);
+    this.wallClock = checkNotNull(wallClock);
+    this.runner = checkNotNull(runner);
+    this.maxSlewPartsPerMillion = maxSlewPartsPerMillion;
+
+    long[] reading = readWallClock();
+    this.calibration = new Calibration(reading[0], reading[1], 0);
+    runner.setPeriodicTask(this::recalibrate);
+  }
+
+  /**
+   * Read the wall clock, returning the ticker value at the time of the reading and the wall clock
+   * time in nanoseconds since the epoch. Of several readings, the one for which the ticker advanced
+   * the least while the wall clock was read is used.
+   */
+  private long[] readWallClock() {
+    long bestWindow = Long.MAX_VALUE;
+    long[] reading = new long[2];
+    for (int i = 0; i < CALIBRATION_SAMPLES; i++) {
+      long before = ticker.getAsLong();
+      Instant wallTime = wallClock.now();
+      long after = ticker.getAsLong();
+      long window = after - before;
+      if (window < bestWindow) {
+        bestWindow = window;
+        reading[0] = before + window / 2;
+        reading[1] = Math.addExact(
+            Math.multiplyExact(wallTime.getEpochSecond(), NANOS_PER_SECOND), wallTime.getNano());
+      }
+    }
+    return reading;
+  }
+
+  private void recalibrate() {
+    long[] reading = readWallClock();
+    // Other threads use the old calibration until the new one is published, so anchor the new one
+    // at the current ticker value rather than at the time of the reading. Otherwise values read
+    // since the reading (at the old slew rate) could be ahead of the new calibration's values.
+    long ticks = ticker.getAsLong();
+    long wallEpochNanos = reading[1] + (ticks - reading[0]);
+    long estimate = epochNanosAt(calibration, ticks);
+    // Start again from the current estimate, so the values don't jump, and slew toward the wall
+    // clock from there.
+    this.calibration = new Calibration(ticks, estimate, wallEpochNanos - estimate);
+  }
+
+  private long epochNanosAt(Calibration c, long ticks) {
+    long elapsed = ticks - c.anchorTicks;
+    long correction = c.correctionNanos;
+    if (correction != 0 && elapsed > 0) {
+      // elapsed * maxSlewPartsPerMillion / 1,000,000, without overflow.
+      long maxCorrection = elapsed / PARTS_PER_MILLION * maxSlewPartsPerMillion
+          + elapsed % PARTS_PER_MILLION * maxSlewPartsPerMillion / PARTS_PER_MILLION;
+      correction = Math.max(-maxCorrection, Math.min(correction, maxCorrection));
+    } else {
+      correction = 0;
+    }
+    return c.anchorEpochNanos + elapsed + correction;
+  }
+
+  /**
+   * Start recalibrating against the wall clock periodically.
+   *
+   * @throws IllegalStateException if this source has already been started.
+   */
+  public void start() {
+    runner.start();
+  }
+
+  /**
+   * Stop recalibrating against the wall clock. The values continue to advance with the ticker.
+   *
+   * @throws IllegalStateException if this source has not been started, or has been stopped.
+   */
+  public void stop() {
+    runner.stop();
+  }
+
+  @Override
+  public long currentTimeNanoPrecision() {
+    Calibration c = calibration;
+    return epochNanosAt(c, ticker.getAsLong());
+  }
+}
@@ -0,0 +1,112 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A {@link TimeSource} that returns a cached value of the current time, which is refreshed from
+ * another TimeSource (such as {@code () -> Instant.now()}) once per tick by a
+ * {@link PeriodicRunner}.
+ * <p>
+ * Reading the current time is just a read of a volatile field, so it does not read the system
+ * clock or allocate an Instant. In return, the value is only as precise as the tick: it can be up
+ * to one tick (plus any scheduling delay of the PeriodicRunner) behind the real time. This makes it
+ * suitable for frequent uses such as timestamping log entries or checking whether a cache entry
+ * has expired, but not for measuring short intervals.
+ * <p>
+ * The cached value is refreshed only while this source is {@link #start() started}. Instances are
+ * thread-safe.
+ */
+public final class CoarseTimeSource implements TimeSource {
+  private final TimeSource clock;
+  private final PeriodicRunner runner;
+
+  private volatile Instant currentTime;
+  private volatile long currentTimeMillis;
+
+  /**
+   * Create a CoarseTimeSource that refreshes its cached time from the system clock, at a rate of
+   * once per tick, using a runner from a {@link SimplePeriodicRunnerFactory}.
+   *
+   * @param runnerFactory The factory whose scheduling thread will refresh the cached time.
+   * @param tick The amount of time between refreshes of the cached time. Since
+   *        SimplePeriodicRunner schedules tasks in whole milliseconds, this must be at least one
+   *        millisecond (for example, 1ms or 10ms).
+   * @return A CoarseTimeSource that has not been started yet.
+   * @throws IllegalArgumentException if the tick is shorter than one millisecond.
+   */
+  public static CoarseTimeSource create(SimplePeriodicRunnerFactory runnerFactory,
+      Duration tick) {
+    checkArgument(tick.toMillis() >= 1, "The tick must be at least 1ms. Got: %s", tick);
+    return new CoarseTimeSource(() -> Instant.now(), runnerFactory.getRunnerForInterval(tick));
+  }
+
+  /**
+   * Create a CoarseTimeSource.
+   * <p>
+   * The cached time is read from the clock once by this constructor, and then once per run of the
+   * periodic task, after {@link #start()} is called. The runner's rate is the tick granularity of
+   * this time source.
+   *
+   * @param clock The TimeSource from which to refresh the cached time.
+   * @param runner A PeriodicRunner that has no task yet, which will be used to refresh the cached
+   *        time. This CoarseTimeSource sets its task.
+   */
+  public CoarseTimeSource(TimeSource clock, PeriodicRunner runner) {
+    this.clock = checkNotNull(clock);
+    this.runner = checkNotNull(runner);
+    refresh();
+    runner.setPeriodicTask(this::refresh);
+  }
+
+  private void refresh() {
+    Instant now = clock.now();
+    this.currentTimeMillis = now.toEpochMilli();
+    this.currentTime = now;
+  }
+
+  /**
+   * Start refreshing the cached time once per tick. The cached time is also refreshed right away,
+   * so that it is not stale if this source has been stopped for a while.
+   *
+   * @throws IllegalStateException if this source has already been started.
+   */
+  public void start() {
+    refresh();
+    runner.start();
+  }
+
+  /**
+   * Stop refreshing the cached time. Until {@link #start()} is called again, the current time
+   * values do not change.
+   *
+   * @throws IllegalStateException if this source has not been started, or has been stopped.
+   */
+  public void stop() {
+    runner.stop();
+  }
+
+  /**
+   * Get the cached value of the current wall-clock time, which was read from the clock at most one
+   * tick ago (if this source is started).
+   *
+   * @return The current time, as of the most recent refresh.
+   */
+  @Override
+  public Instant now() {
+    return currentTime;
+  }
+
+  /**
+   * Get the cached value of the current wall-clock time, as a number of milliseconds since the Unix
+   * epoch, like {@link System#currentTimeMillis()}. This is refreshed along with {@link #now()}, so
+   * it is {@code now().toEpochMilli()} without the conversion, except during a refresh.
+   *
+   * @return The current time, in milliseconds since the Unix epoch.
+   */
+  public long currentTimeMillis() {
+    return currentTimeMillis;
+  }
+}
@@ -0,0 +1,405 @@
+package com.pervasivecode.utils.time;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.List;
+import javax.annotation.concurrent.Immutable;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Writes numbers as text, using the symbols (digits, separators, and positive and negative
+ * prefixes and suffixes) of a {@link NumberFormat}.
+ * <p>
+ * The symbols are read from the NumberFormat once, when this emitter is created, so that numbers
+ * can be written directly as chars without cloning or locking the NumberFormat (which is not
+ * thread-safe). This is only possible for a {@link DecimalFormat} that uses a plain decimal
+ * pattern; for any other kind of NumberFormat, this emitter falls back to formatting each value with
+ * a private clone of the NumberFormat.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+@Immutable
+final class DigitEmitter {
+  // Large enough for the most digits that any part of a formatted Duration can have.
+  private static final int MIN_SUPPORTED_INTEGER_DIGITS = 40;
+
+  /**
+   * The most fraction digits that
+   * {@link #appendDecimal(boolean, long, long, int, long, Appendable)} allows.
+   */
+  static final int MAX_LONG_FRACTION_DIGITS = 18;
+
+  private static final long[] POWERS_OF_TEN = new long[19];
+  static {
+    long power = 1;
+    for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = power;
+      power *= 10;
+    }
+  }
+
+  private final int maxFractionDigits;
+  private final boolean useSymbols;
+  private final char zeroDigit;
+  private final char groupingSeparator;
+  private final int groupingSize;
+  private final char decimalSeparator;
+  private final String positivePrefix;
+  private final String positiveSuffix;
+  private final String negativePrefix;
+  private final String negativeSuffix;
+
+  // Only used if useSymbols is false. These must be cloned before being used.
+  private final NumberFormat wholeNumberFormat;
+  private final NumberFormat fractionalNumberFormat;
+
+  /**
+   * Create an emitter that writes numbers the way the specified NumberFormat would, using a
+   * maximum of {@code maxFractionDigits} digits after the decimal separator. Values with fraction
+   * digits must already be rounded to that many digits.
+   */
+  DigitEmitter(NumberFormat numberFormat, int maxFractionDigits) {
+    this.maxFractionDigits = maxFractionDigits;
+    NumberFormat whole = (NumberFormat) numberFormat.clone();
+    whole.setRoundingMode(RoundingMode.UNNECESSARY);
+    whole.setMinimumFractionDigits(0);
+    whole.setMaximumFractionDigits(0);
+    this.wholeNumberFormat = whole;
+
+    NumberFormat fractional = (NumberFormat) whole.clone();
+    fractional.setRoundingMode(RoundingMode.HALF_EVEN);
+    fractional.setMaximumFractionDigits(maxFractionDigits);
+    this.fractionalNumberFormat = fractional;
+
+    if (hasPlainDecimalPattern(numberFormat)) {
+      DecimalFormat decimalFormat = (DecimalFormat) numberFormat;
+      DecimalFormatSymbols symbols = decimalFormat.getDecimalFormatSymbols();
+      this.useSymbols = true;
+      this.zeroDigit = symbols.getZeroDigit();
+      this.groupingSeparator = symbols.getGroupingSeparator();
+      this.groupingSize = decimalFormat.isGroupingUsed() ? decimalFormat.getGroupingSize() : 0;
+      this.decimalSeparator = symbols.getDecimalSeparator();
+      this.positivePrefix = decimalFormat.getPositivePrefix();
+      this.positiveSuffix = decimalFormat.getPositiveSuffix();
+      this.negativePrefix = decimalFormat.getNegativePrefix();
+      this.negativeSuffix = decimalFormat.getNegativeSuffix();
+    } else {
+      this.useSymbols = false;
+      this.zeroDigit = '0';
+      this.groupingSeparator = ',';
+      this.groupingSize = 0;
+      this.decimalSeparator = '.';
+      this.positivePrefix = "";
+      this.positiveSuffix = "";
+      this.negativePrefix = "-";
+      this.negativeSuffix = "";
+    }
+  }
+
+  private static boolean hasPlainDecimalPattern(NumberFormat numberFormat) {
+    if (!(numberFormat instanceof DecimalFormat)) {
+      return false;
+    }
+    DecimalFormat decimalFormat = (DecimalFormat) numberFormat;
+    String pattern = decimalFormat.toPattern();
+    return decimalFormat.getMultiplier() == 1
+        && decimalFormat.getMinimumIntegerDigits() == 1
+        && decimalFormat.getMaximumIntegerDigits() >= MIN_SUPPORTED_INTEGER_DIGITS
+        && !decimalFormat.isDecimalSeparatorAlwaysShown()
+        // Exponential notation and currency formats use symbols that aren't handled here.
+        && pattern.indexOf('E') < 0
+        && pattern.indexOf('¤') < 0;
+  }
+
+  /**
+   * Get a power of ten that fits in a long.
+   *
+   * @param exponent The power, from 0 to 18.
+   * @return Ten to the power of {@code exponent}.
+   */
+  static long powerOfTen(int exponent) {
+    return POWERS_OF_TEN[exponent];
+  }
+
+  /**
+   * Get the value of a magnitude that is given as a high part and a low part, where the low part
+   * is the last {@code numLowDigits} decimal digits of the value.
+   *
+   * @param high The value divided by ten to the power of {@code numLowDigits}, as an unsigned
+   *        long.
+   * @param low The rest of the value, which must be less than ten to the power of
+   *        {@code numLowDigits}.
+   * @param numLowDigits The number of decimal digits in the low part.
+   * @return The magnitude, as a BigDecimal with a scale of zero.
+   */
+  static BigDecimal toBigDecimal(long high, long low, int numLowDigits) {
+    BigDecimal highValue = (high >= 0) ? BigDecimal.valueOf(high)
+        : new BigDecimal(Long.toUnsignedString(high));
+    return highValue.scaleByPowerOfTen(numLowDigits).add(BigDecimal.valueOf(low));
+  }
+
+  /**
+   * Append an integer value, given as a sign and a magnitude that is split into a high part and a
+   * low part (see {@link #toBigDecimal(long, long, int)}). This allows values larger than a long
+   * to be written without using BigInteger.
+   *
+   * @param negative Whether the value is negative. This must be false if the value is zero.
+   * @param high The magnitude divided by ten to the power of {@code numLowDigits}, as an unsigned
+   *        long no larger than 2<sup>63</sup>.
+   * @param low The rest of the magnitude.
+   * @param numLowDigits The number of decimal digits in the low part.
+   * @param out The Appendable to which the value will be written.
+   * @throws IOException if the Appendable throws an IOException.
+   */
+  void appendInteger(boolean negative, long high, long low, int numLowDigits, Appendable out)
+      throws IOException {
+    if (!useSymbols) {
+      BigDecimal magnitude = toBigDecimal(high, low, numLowDigits);
+      out.append(((NumberFormat) wholeNumberFormat.clone())
+          .format(negative ? magnitude.negate() : magnitude));
+      return;
+    }
+    out.append(negative ? negativePrefix : positivePrefix);
+    appendMagnitudeDigits(high, low, numLowDigits, out);
+    out.append(negative ? negativeSuffix : positiveSuffix);
+  }
+
+  /**
+   * Append a value that has already been rounded to the maximum number of fraction digits, given as
+   * the magnitude of its integer part (as in
+   * {@link #appendInteger(boolean, long, long, int, Appendable)}) and its fraction digits. Trailing
+   * zeros after the decimal separator are not written, nor is the decimal separator if the
+   * fraction is zero.
+   * <p>
+   * This method can only be used if the maximum number of fraction digits is no more than
+   * {@link #MAX_LONG_FRACTION_DIGITS}.
+   *
+   * @param negative Whether the value is negative. This must be false if the value is zero.
+   * @param high The integer part of the magnitude divided by ten to the power of
+   *        {@code numLowDigits}, as an unsigned long no larger than 2<sup>63</sup>.
+   * @param low The rest of the integer part of the magnitude.
+   * @param numLowDigits The number of decimal digits in the low part.
+   * @param scaledFraction The fraction part of the value, multiplied by ten to the power of the
+   *        maximum number of fraction digits. For example, with three fraction digits, 0.25 is
+   *        given as 250.
+   * @param out The Appendable to which the value will be written.
+   * @throws IOException if the Appendable throws an IOException.
+   */
+  void appendDecimal(boolean negative, long high, long low, int numLowDigits, long scaledFraction,
+      Appendable out) throws IOException {
+    if (!useSymbols) {
+      BigDecimal magnitude = toBigDecimal(high, low, numLowDigits)
+          .add(BigDecimal.valueOf(scaledFraction, maxFractionDigits));
+      out.append(((NumberFormat) fractionalNumberFormat.clone())
+          .format(negative ? magnitude.negate() : magnitude));
+      return;
+    }
+    out.append(negative ? negativePrefix : positivePrefix);
+    appendMagnitudeDigits(high, low, numLowDigits, out);
+    if (scaledFraction != 0) {
+      int numDigits = maxFractionDigits;
+      long fraction = scaledFraction;
+      while (fraction % 10 == 0) {
+        fraction /= 10;
+        numDigits--;
+      }
+      out.append(decimalSeparator);
+      appendPaddedDigits(fraction, numDigits, false, out);
+    }
+    out.append(negative ? negativeSuffix : positiveSuffix);
+  }
+
+  /**
+   * Append a value that has already been rounded to {@code numFractionDigits} fraction digits,
+   * like {@link #appendDecimal(boolean, long, long, int, long, Appendable)}, but always writing
+   * exactly that many fraction digits, including trailing zeros.
+   *
+   * @param negative Whether the value is negative. This must be false if the value is zero.
+   * @param high The integer part of the magnitude divided by ten to the power of
+   *        {@code numLowDigits}, as an unsigned long no larger than 2<sup>63</sup>.
+   * @param low The rest of the integer part of the magnitude.
+   * @param numLowDigits The number of decimal digits in the low part.
+   * @param scaledFraction The fraction part of the value, multiplied by ten to the power of
+   *        {@code numFractionDigits}.
+   * @param numFractionDigits The number of fraction digits to write, which must be no more than the
+   *        maximum number of fraction digits.
+   * @param out The Appendable to which the value will be written.
+   * @throws IOException if the Appendable throws an IOException.
+   */
+  void appendFixedDecimal(boolean negative, long high, long low, int numLowDigits,
+      long scaledFraction, int numFractionDigits, Appendable out) throws IOException {
+    if (!useSymbols) {
+      BigDecimal magnitude = toBigDecimal(high, low, numLowDigits)
+          .add(BigDecimal.valueOf(scaledFraction, numFractionDigits));
+      NumberFormat numberFormat = (NumberFormat) fractionalNumberFormat.clone();
+      numberFormat.setMinimumFractionDigits(numFractionDigits);
+      numberFormat.setMaximumFractionDigits(numFractionDigits);
+      out.append(numberFormat.format(negative ? magnitude.negate() : magnitude));
+      return;
+    }
+    out.append(negative ? negativePrefix : positivePrefix);
+    appendMagnitudeDigits(high, low, numLowDigits, out);
+    if (numFractionDigits > 0) {
+      out.append(decimalSeparator);
+      appendPaddedDigits(scaledFraction, numFractionDigits, false, out);
+    }
+    out.append(negative ? negativeSuffix : positiveSuffix);
+  }
+
+  /**
+   * Append a value that has already been rounded to the maximum number of fraction digits.
+   * Trailing zeros after the decimal separator are not written, nor is the decimal separator if
+   * there are no fraction digits left.
+   *
+   * @param roundedValue The value, rounded to the maximum number of fraction digits.
+   * @param out The Appendable to which the value will be written.
+   * @throws IOException if the Appendable throws an IOException.
+   */
+  void appendDecimal(BigDecimal roundedValue, Appendable out) throws IOException {
+    if (!useSymbols) {
+      out.append(((NumberFormat) fractionalNumberFormat.clone()).format(roundedValue));
+      return;
+    }
+    boolean negative = roundedValue.signum() < 0;
+    out.append(negative ? negativePrefix : positivePrefix);
+
+    String digits = roundedValue.unscaledValue().abs().toString();
+    int numIntegerDigits = digits.length() - roundedValue.scale();
+    if (numIntegerDigits <= 0) {
+      out.append(zeroDigit);
+    } else {
+      appendIntegerDigits(digits.substring(0, numIntegerDigits), out);
+    }
+
+    // Fraction digits at negative indexes are leading zeros that aren't present in the String.
+    int fractionStart = Math.max(numIntegerDigits, 0);
+    int fractionEnd = digits.length();
+    while (fractionEnd > fractionStart && digits.charAt(fractionEnd - 1) == '0') {
+      fractionEnd--;
+    }
+    if (fractionEnd > fractionStart) {
+      out.append(decimalSeparator);
+      for (int i = numIntegerDigits; i < fractionEnd; i++) {
+        out.append(i < 0 ? zeroDigit : digitChar(digits.charAt(i) - '0'));
+      }
+    }
+    out.append(negative ? negativeSuffix : positiveSuffix);
+  }
+
+  /**
+   * Get the Strings that this emitter appends as a whole when writing a number (such as the prefix
+   * for negative numbers), so that they can be encoded ahead of time.
+   *
+   * @return The Strings that are appended as a whole.
+   */
+  List<String> symbolStrings() {
+    return ImmutableList.of(positivePrefix, positiveSuffix, negativePrefix, negativeSuffix);
+  }
+
+  /**
+   * Determine the maximum length, in bytes when encoded as UTF-8, of a number whose integer part has
+   * a magnitude no larger than {@code maxMagnitude}.
+   *
+   * @param maxMagnitude The largest magnitude of the integer part of the number.
+   * @param withFraction If true, the number can be written with fraction digits.
+   * @return The maximum number of bytes in the encoded number.
+   */
+  int maxEncodedLength(BigInteger maxMagnitude, boolean withFraction) {
+    int numFractionDigits = withFraction ? maxFractionDigits : 0;
+    if (!useSymbols) {
+      // Format the negative and positive values with the most digits.
+      BigDecimal fraction = numFractionDigits == 0 ? BigDecimal.ZERO
+          : BigDecimal.ONE.movePointLeft(numFractionDigits).multiply(BigDecimal.valueOf(9));
+      BigDecimal largest = new BigDecimal(maxMagnitude).add(fraction);
+      NumberFormat numberFormat = (NumberFormat) fractionalNumberFormat.clone();
+      return Math.max(encodedLength(numberFormat.format(largest)),
+          encodedLength(numberFormat.format(largest.negate())));
+    }
+    int signLength = Math.max(encodedLength(positivePrefix) + encodedLength(positiveSuffix),
+        encodedLength(negativePrefix) + encodedLength(negativeSuffix));
+    int digitLength = encodedLength(String.valueOf(zeroDigit));
+    int numDigits = maxMagnitude.toString().length();
+    int numSeparators = groupingSize > 0 ? (numDigits - 1) / groupingSize : 0;
+    int length = signLength + numDigits * digitLength
+        + numSeparators * encodedLength(String.valueOf(groupingSeparator));
+    if (numFractionDigits > 0) {
+      length += encodedLength(String.valueOf(decimalSeparator)) + numFractionDigits * digitLength;
+    }
+    return length;
+  }
+
+  private static int encodedLength(String text) {
+    return text.getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  private char digitChar(int digit) {
+    return (char) (zeroDigit + digit);
+  }
+
+  private void appendSeparatorIfNeeded(int numDigitsRemaining, Appendable out)
+      throws IOException {
+    if (groupingSize > 0 && numDigitsRemaining > 0 && numDigitsRemaining % groupingSize == 0) {
+      out.append(groupingSeparator);
+    }
+  }
+
+  /** Append the digits of a magnitude that is split into a high part and a low part. */
+  private void appendMagnitudeDigits(long high, long low, int numLowDigits, Appendable out)
+      throws IOException {
+    if (high == 0) {
+      appendNonPositiveDigits(-low, 0, out);
+    } else {
+      // Negating the high part works for all unsigned values up to 2^63, which becomes
+      // Long.MIN_VALUE.
+      appendNonPositiveDigits(-high, numLowDigits, out);
+      appendPaddedDigits(low, numLowDigits, true, out);
+    }
+  }
+
+  /**
+   * Append the digits of the magnitude of a value that is zero or negative, followed by
+   * {@code numDigitsAfter} digits that will be appended separately (which affects where grouping
+   * separators go).
+   */
+  private void appendNonPositiveDigits(long nonPositiveValue, int numDigitsAfter,
+      Appendable out) throws IOException {
+    int numDigits = 1;
+    while (numDigits < POWERS_OF_TEN.length && nonPositiveValue <= -POWERS_OF_TEN[numDigits]) {
+      numDigits++;
+    }
+    for (int i = numDigits - 1; i >= 0; i--) {
+      int digit = (int) -((nonPositiveValue / POWERS_OF_TEN[i]) % 10);
+      out.append(digitChar(digit));
+      appendSeparatorIfNeeded(i + numDigitsAfter, out);
+    }
+  }
+
+  /**
+   * Append exactly {@code numDigits} digits of a nonnegative value, with leading zeros if needed,
+   * and with grouping separators if {@code grouped} is true.
+   */
+  private void appendPaddedDigits(long value, int numDigits, boolean grouped, Appendable out)
+      throws IOException {
+    for (int i = numDigits - 1; i >= 0; i--) {
+      out.append(digitChar((int) ((value / POWERS_OF_TEN[i]) % 10)));
+      if (grouped) {
+        appendSeparatorIfNeeded(i, out);
+      }
+    }
+  }
+
+  /** Append a String of ASCII digits, translated to this emitter's digits and grouped. */
+  private void appendIntegerDigits(String asciiDigits, Appendable out) throws IOException {
+    int numDigits = asciiDigits.length();
+    for (int i = 0; i < numDigits; i++) {
+      out.append(digitChar(asciiDigits.charAt(i) - '0'));
+      appendSeparatorIfNeeded(numDigits - 1 - i, out);
+    }
+  }
+}
@@ -0,0 +1,265 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongConsumer;
+import javax.annotation.concurrent.Immutable;
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Finds Durations that were written by a {@link DurationFormatter} in UTF-8 or ASCII encoded text,
+ * such as log files, without decoding the text into Strings.
+ * <p>
+ * Every Duration in the text that can be parsed by a {@link DurationParser} with the same
+ * {@link DurationFormat} is passed to a {@link LongConsumer} (such as a histogram) as a number of
+ * nanoseconds. A Duration is only recognized if it is not immediately preceded or followed by an
+ * ASCII letter or digit, so that (for example) "4m" is not found in "v4mp". Durations whose number
+ * of nanoseconds does not fit in a long are skipped.
+ * <p>
+ * Files are memory-mapped and scanned in chunks, so files larger than the maximum size of a
+ * MappedByteBuffer (2 GiB) can be scanned. Chunks end at line boundaries, so Durations are found as
+ * long as they do not span multiple lines and no line is longer than the chunk size. Chunks can be
+ * scanned in parallel using a {@link ForkJoinPool}.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+@Immutable
+public final class DurationExtractor {
+  @VisibleForTesting
+  static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+  // Number of bytes to read at a time when looking for the end of a line at a chunk boundary.
+  private static final int LINE_END_SEARCH_SIZE = 8 * 1024;
+
+  private final DurationFormat format;
+  private final transient DurationParser parser;
+  private final transient int chunkSize;
+
+  /**
+   * Create a DurationExtractor.
+   *
+   * @param format The formatting rules that were used to write the Durations to be found.
+   * @throws IllegalArgumentException if the format's NumberFormat cannot be parsed (see
+   *         {@link DurationParser#DurationParser(DurationFormat)}), or does not use ASCII digits.
+   */
+  public DurationExtractor(DurationFormat format) {
+    this(format, DEFAULT_CHUNK_SIZE);
+  }
+
+  @VisibleForTesting
+  DurationExtractor(DurationFormat format, int chunkSize) {
+    checkArgument(chunkSize > 0, "chunkSize must be positive. Got: %s", chunkSize);
+    this.format = requireNonNull(format);
+    this.parser = DurationParser.forUtf8Bytes(format);
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Find the Durations in the bytes between the position and limit of a ByteBuffer. The position
+   * and limit of the ByteBuffer are not changed.
+   *
+   * @param bytes The UTF-8 or ASCII encoded text to scan.
+   * @param consumer The consumer that will be called with the number of nanoseconds in each
+   *        Duration, in the order in which they appear in the text.
+   * @return The number of Durations found.
+   */
+  public long extractNanos(ByteBuffer bytes, LongConsumer consumer) {
+    requireNonNull(consumer);
+    return scan(new ByteBufferChars(bytes, bytes.position(), bytes.remaining()), consumer);
+  }
+
+  /**
+   * Find the Durations in a file, by memory-mapping it one chunk at a time.
+   *
+   * @param channel The channel of a file containing UTF-8 or ASCII encoded text.
+   * @param consumer The consumer that will be called with the number of nanoseconds in each
+   *        Duration, in the order in which they appear in the file.
+   * @return The number of Durations found.
+   * @throws IOException if the file cannot be read or mapped.
+   */
+  public long extractNanos(FileChannel channel, LongConsumer consumer) throws IOException {
+    requireNonNull(consumer);
+    long[] chunkStarts = findChunkStarts(channel);
+    long count = 0;
+    for (int i = 0; i < chunkStarts.length - 1; i++) {
+      count += scanChunk(channel, chunkStarts[i], chunkStarts[i + 1], consumer);
+    }
+    return count;
+  }
+
+  /**
+   * Find the Durations in a file, by memory-mapping it in chunks that are scanned in parallel by
+   * the specified ForkJoinPool.
+   *
+   * @param channel The channel of a file containing UTF-8 or ASCII encoded text.
+   * @param consumer The consumer that will be called with the number of nanoseconds in each
+   *        Duration. This consumer will be called concurrently from multiple threads, in no
+   *        particular order, so it must be thread-safe.
+   * @param pool The ForkJoinPool that will scan the chunks.
+   * @return The number of Durations found.
+   * @throws IOException if the file cannot be read or mapped.
+   */
+  public long extractNanos(FileChannel channel, LongConsumer consumer, ForkJoinPool pool)
+      throws IOException {
+    requireNonNull(consumer);
+    requireNonNull(pool);
+    long[] chunkStarts = findChunkStarts(channel);
+    try {
+      return pool.invoke(new ChunkTask(channel, chunkStarts, 0, chunkStarts.length - 1, consumer));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Scans a range of chunks, splitting it in half until there is only one chunk to scan. */
+  private final class ChunkTask extends RecursiveTask<Long> {
+    private static final long serialVersionUID = 1L;
+
+    private final FileChannel channel;
+    private final long[] chunkStarts;
+    private final int fromChunk;
+    private final int toChunk;
+    private final LongConsumer consumer;
+
+    ChunkTask(FileChannel channel, long[] chunkStarts, int fromChunk, int toChunk,
+        LongConsumer consumer) {
+      this.channel = channel;
+      this.chunkStarts = chunkStarts;
+      this.fromChunk = fromChunk;
+      this.toChunk = toChunk;
+      this.consumer = consumer;
+    }
+
+    @Override
+    protected Long compute() {
+      if (toChunk - fromChunk <= 1) {
+        if (toChunk == fromChunk) {
+          return 0L;
+        }
+        try {
+          return scanChunk(channel, chunkStarts[fromChunk], chunkStarts[toChunk], consumer);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+      int middle = (fromChunk + toChunk) >>> 1;
+      ChunkTask second = new ChunkTask(channel, chunkStarts, middle, toChunk, consumer);
+      second.fork();
+      long firstCount =
+          new ChunkTask(channel, chunkStarts, fromChunk, middle, consumer).compute();
+      return firstCount + second.join();
+    }
+  }
+
+  /**
+   * Divide a file into chunks of at most {@link #chunkSize} bytes that end at line boundaries,
+   * unless a line is longer than a chunk.
+   *
+   * @return The offset of the start of each chunk, followed by the size of the file.
+   */
+  private long[] findChunkStarts(FileChannel channel) throws IOException {
+    long size = channel.size();
+    List<Long> chunkStarts = new ArrayList<>();
+    ByteBuffer searchBuffer = ByteBuffer.allocate(Math.min(LINE_END_SEARCH_SIZE, chunkSize));
+    long start = 0;
+    while (start < size) {
+      chunkStarts.add(start);
+      long maxEnd = Math.min(size, start + chunkSize);
+      start = (maxEnd == size) ? size : findLineEnd(channel, start, maxEnd, searchBuffer);
+    }
+    chunkStarts.add(size);
+    return chunkStarts.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  /**
+   * Find the offset after the last newline in a range of a file, or the end of the range if there
+   * is no newline in it.
+   */
+  private static long findLineEnd(FileChannel channel, long start, long end,
+      ByteBuffer searchBuffer) throws IOException {
+    long searchEnd = end;
+    while (searchEnd > start) {
+      long searchStart = Math.max(start, searchEnd - searchBuffer.capacity());
+      searchBuffer.clear();
+      searchBuffer.limit((int) (searchEnd - searchStart));
+      while (searchBuffer.hasRemaining()) {
+        if (channel.read(searchBuffer, searchStart + searchBuffer.position()) < 0) {
+          throw new IOException("Unexpected end of file at " + searchStart);
+        }
+      }
+      for (int i = searchBuffer.limit() - 1; i >= 0; i--) {
+        if (searchBuffer.get(i) == '\n') {
+          return searchStart + i + 1;
+        }
+      }
+      searchEnd = searchStart;
+    }
+    return end;
+  }
+
+  private long scanChunk(FileChannel channel, long start, long end, LongConsumer consumer)
+      throws IOException {
+    MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+    return scan(new ByteBufferChars(chunk, 0, chunk.capacity()), consumer);
+  }
+
+  private long scan(ByteBufferChars chars, LongConsumer consumer) {
+    DurationParser.ParsedValue value = new DurationParser.ParsedValue();
+    int length = chars.length();
+    long count = 0;
+    int pos = 0;
+    while (pos < length) {
+      if (parser.mayStartDuration(chars.charAt(pos))
+          && (pos == 0 || !isAsciiLetterOrDigit(chars.charAt(pos - 1)))) {
+        int parsedEnd = parser.parseParts(chars, pos, length, true, value);
+        if (parsedEnd > pos
+            && (parsedEnd == length || !isAsciiLetterOrDigit(chars.charAt(parsedEnd)))) {
+          long nanos;
+          try {
+            nanos = value.toNanos();
+          } catch (ArithmeticException e) {
+            pos = parsedEnd;
+            continue;
+          }
+          consumer.accept(nanos);
+          count++;
+          pos = parsedEnd;
+          continue;
+        }
+      }
+      pos++;
+    }
+    return count;
+  }
+
+  private static boolean isAsciiLetterOrDigit(char c) {
+    return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(format);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    }
+    if (!(other instanceof DurationExtractor)) {
+      return false;
+    }
+    DurationExtractor otherExtractor = (DurationExtractor) other;
+    return Objects.equals(otherExtractor.format, format);
+  }
+}
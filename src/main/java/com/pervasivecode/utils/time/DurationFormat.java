@@ -122,6 +122,27 @@ public abstract class DurationFormat {
    */
   public abstract DurationRemainderHandling remainderHandling();
 
+  /**
+   * The maximum number of parts to show, starting with the largest unit that has a nonzero value.
+   * The remaining smaller units are not computed or shown.
+   * <p>
+   * Example: A duration of 2 weeks, 3 days, 4 hours, and 22 minutes, formatted with a maxParts
+   * value of 2, will be represented as 2 weeks, 3 days.
+   * <p>
+   * If the last part shown is not the part for {@link #smallestUnit()}, the value of the units that
+   * are not shown is handled as specified by {@link #remainderHandling()}: the whole duration is
+   * either truncated or rounded to a whole number of the last unit shown, and then split into
+   * parts. (Fractional digits are only used for the smallest unit.) Trailing parts that are zero
+   * are omitted, and rounding up carries into the larger parts. Example: with a maxParts value of 2, a
+   * duration of 2 weeks, 3 days, and 13 hours will be represented as 2 weeks, 3 days with
+   * {@link DurationRemainderHandling#TRUNCATE} or 2 weeks, 4 days with
+   * {@link DurationRemainderHandling#ROUND_HALF_EVEN}; a duration of 1 hour, 59 minutes, and 40
+   * seconds will be represented as 1 hour, 59 minutes or 2 hours.
+   *
+   * @return The maximum number of parts to show.
+   */
+  public abstract Integer maxParts();
+
   /**
    * Get a list of units which are greater than or equal to smallestUnit and less than or equal to
    * largestUnit, without the units specified by {@link #suppressedUnits()}. These units are the
@@ -149,6 +170,7 @@ public abstract class DurationFormat {
    * <ul>
    * <li>suppressedUnits = { ChronoUnit.HALF_DAYS }</li>
    * <li>remainderHandling = DurationRemainderHandling.TRUNCATE</li>
+   * <li>maxParts = Integer.MAX_VALUE (that is, no limit)</li>
    * </ul>
    *
    * @return a new {@link DurationFormat.Builder} instance.
@@ -156,7 +178,8 @@ public abstract class DurationFormat {
   public static Builder builder() {
     return new AutoValue_DurationFormat.Builder() //
         .setSuppressedUnits(ImmutableSet.of(ChronoUnit.HALF_DAYS))
-        .setRemainderHandling(DurationRemainderHandling.TRUNCATE);
+        .setRemainderHandling(DurationRemainderHandling.TRUNCATE) //
+        .setMaxParts(Integer.MAX_VALUE);
   }
 
   /**
@@ -179,7 +202,8 @@ public abstract class DurationFormat {
         .setUnitForZeroDuration(format.unitForZeroDuration()) //
         .setNumFractionalDigits(format.numFractionalDigits()) //
         .setSuppressedUnits(format.suppressedUnits()) //
-        .setRemainderHandling(format.remainderHandling());
+        .setRemainderHandling(format.remainderHandling()) //
+        .setMaxParts(format.maxParts());
   }
 
   /**
@@ -208,6 +232,8 @@ public abstract class DurationFormat {
 
     public abstract Builder setRemainderHandling(DurationRemainderHandling remainderHandling);
 
+    public abstract Builder setMaxParts(Integer maxParts);
+
     protected abstract DurationFormat buildInternal();
 
     /**
@@ -221,6 +247,7 @@ public abstract class DurationFormat {
      * @throws IllegalStateException if the unitForZeroDuration is not one of the units specified by
      *         smallestUnit, largestUnit, and useHalfDays.
      * @throws IllegalStateException if numFractionalDigits is negative.
+     * @throws IllegalStateException if maxParts is less than one.
      * @return A valid {@link DurationFormat} instance.
      */
     public DurationFormat build() {
@@ -242,6 +269,9 @@ public abstract class DurationFormat {
           "The number of fractional digits must be nonnegative. Got: %s",
           format.numFractionalDigits());
 
+      checkState(format.maxParts() >= 1, "maxParts must be at least 1. Got: %s",
+          format.maxParts());
+
       return format;
     }
 
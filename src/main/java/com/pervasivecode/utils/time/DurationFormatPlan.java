@@ -0,0 +1,257 @@
+package com.pervasivecode.utils.time;
+
+import static com.pervasivecode.utils.time.DurationRemainderHandling.ROUND_HALF_EVEN;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.text.NumberFormat;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * The parts of a {@link DurationFormat} that a {@link DurationFormatter} needs on every call,
+ * computed once so that formatting a value does not have to repeat this work.
+ * <p>
+ * Units are stored in descending order (largest first), which is the order in which the parts of a
+ * formatted value are produced.
+ */
+@Immutable
+final class DurationFormatPlan {
+  static final long NANOS_PER_SECOND = 1_000_000_000L;
+  private static final BigInteger BIG_NANOS_PER_SECOND = BigInteger.valueOf(NANOS_PER_SECOND);
+
+  /** The magnitude of the most negative Duration, in nanoseconds. */
+  private static final BigInteger MAX_DURATION_MAGNITUDE =
+      wholeDurationAsNanos(Duration.ofSeconds(Long.MIN_VALUE)).negate();
+
+  final ChronoUnit[] unitsInDescOrder;
+
+  /**
+   * The length of each unit, split into whole seconds and nanoseconds like a {@link Duration}.
+   * Units from seconds up are a whole number of seconds and units shorter than a second are a
+   * number of nanoseconds, so only one of these is nonzero, except for
+   * {@link ChronoUnit#FOREVER}.
+   */
+  final long[] unitSeconds;
+  final int[] unitNanos;
+
+  /**
+   * For units shorter than a second, the number of these units in a second, and the number of
+   * decimal digits in a value of this unit that is less than one second. (The number of units per
+   * second is always a power of ten.)
+   */
+  final long[] unitsPerSecond;
+  final int[] unitsPerSecondDigits;
+
+  /** The index of {@link DurationFormat#smallestUnit()} in {@link #unitsInDescOrder}. */
+  final int smallestUnitIndex;
+
+  /** Whether the part for the smallest unit is rounded, possibly with fractional digits. */
+  final boolean roundSmallestUnit;
+  final int numFractionalDigits;
+
+  /** The maximum number of parts to show. See {@link DurationFormat#maxParts()}. */
+  final int maxParts;
+
+  /**
+   * Whether the last part shown is rounded to a whole number when it is not the part for the
+   * smallest unit, because {@link DurationFormat#maxParts()} was reached.
+   */
+  final boolean roundLastPart;
+
+  /**
+   * Whether the part for each unit can be rounded using long arithmetic. This requires the
+   * fractional digits (if any) to fit in a long, and the unit to be short enough that ten times its
+   * length in seconds fits in a long.
+   */
+  final boolean[] roundWithLongArithmetic;
+
+  final UnitSuffixProvider suffixProvider;
+
+  /**
+   * The smallest and largest whole quantities whose suffixes are cached by a compiled formatter,
+   * which are the same quantities that maxEncodedLength is based on.
+   */
+  private static final int MIN_CACHED_SUFFIX_QUANTITY =
+      UnitSuffixProviders.MIN_PROBED_WHOLE_QUANTITY;
+  private static final int MAX_CACHED_SUFFIX_QUANTITY =
+      UnitSuffixProviders.MAX_PROBED_WHOLE_QUANTITY;
+
+  /**
+   * The suffixes of whole quantities from {@link #MIN_CACHED_SUFFIX_QUANTITY} through
+   * {@link #MAX_CACHED_SUFFIX_QUANTITY}, indexed by {@link ChronoUnit#ordinal()} and then by
+   * quantity, or null if the suffixes are not cached. See {@link DurationFormatter#compile()}.
+   */
+  private final String[][] cachedSuffixes;
+
+  final String partDelimiter;
+  final String formattedZero;
+
+  final DigitEmitter digits;
+
+  /** UTF-8 encoded bytes of the Strings that are appended as a whole, such as suffixes. */
+  final Map<String, byte[]> utf8Symbols;
+  final int maxEncodedLength;
+
+  DurationFormatPlan(DurationFormat format) {
+    this(format, false);
+  }
+
+  /**
+   * Create a plan for a DurationFormat.
+   *
+   * @param format The DurationFormat.
+   * @param cacheSuffixes If true, the suffixes of small whole quantities of each unit are obtained
+   *        from the UnitSuffixProvider now, rather than each time a value is formatted.
+   */
+  DurationFormatPlan(DurationFormat format, boolean cacheSuffixes) {
+    List<ChronoUnit> units = format.units();
+    int numUnits = units.size();
+    this.unitsInDescOrder = new ChronoUnit[numUnits];
+    this.unitSeconds = new long[numUnits];
+    this.unitNanos = new int[numUnits];
+    this.unitsPerSecond = new long[numUnits];
+    this.unitsPerSecondDigits = new int[numUnits];
+    BigInteger[] unitNanosAsBig = new BigInteger[numUnits];
+    for (int i = 0; i < numUnits; i++) {
+      ChronoUnit unit = units.get(numUnits - 1 - i);
+      Duration unitDuration = unit.getDuration();
+      unitsInDescOrder[i] = unit;
+      unitSeconds[i] = unitDuration.getSeconds();
+      unitNanos[i] = unitDuration.getNano();
+      unitNanosAsBig[i] = wholeDurationAsNanos(unitDuration);
+      if (unitSeconds[i] == 0) {
+        unitsPerSecond[i] = NANOS_PER_SECOND / unitNanos[i];
+        for (long n = unitsPerSecond[i]; n > 1; n /= 10) {
+          unitsPerSecondDigits[i]++;
+        }
+      }
+    }
+    this.smallestUnitIndex = numUnits - 1;
+
+    this.numFractionalDigits = format.numFractionalDigits();
+    this.roundSmallestUnit =
+        numFractionalDigits > 0 || format.remainderHandling() == ROUND_HALF_EVEN;
+    this.maxParts = format.maxParts();
+    this.roundLastPart = format.remainderHandling() == ROUND_HALF_EVEN;
+    this.roundWithLongArithmetic = new boolean[numUnits];
+    for (int i = 0; i < numUnits; i++) {
+      roundWithLongArithmetic[i] = (unitSeconds[i] == 0 || unitNanos[i] == 0)
+          && unitSeconds[i] < Long.MAX_VALUE / 10
+          && (i != smallestUnitIndex
+              || numFractionalDigits <= DigitEmitter.MAX_LONG_FRACTION_DIGITS);
+    }
+
+    this.suffixProvider = format.unitSuffixProvider();
+    if (cacheSuffixes) {
+      this.cachedSuffixes = new String[ChronoUnit.values().length][];
+      for (ChronoUnit unit : unitsInDescOrder) {
+        String[] suffixes =
+            new String[MAX_CACHED_SUFFIX_QUANTITY - MIN_CACHED_SUFFIX_QUANTITY + 1];
+        for (int i = 0; i < suffixes.length; i++) {
+          suffixes[i] = suffixProvider.suffixFor(unit, (long) (i + MIN_CACHED_SUFFIX_QUANTITY));
+        }
+        cachedSuffixes[unit.ordinal()] = suffixes;
+      }
+    } else {
+      this.cachedSuffixes = null;
+    }
+    this.partDelimiter = format.partDelimiter();
+
+    this.digits = new DigitEmitter(format.numberFormat(), numFractionalDigits);
+
+    String zeroSuffix = suffixProvider.suffixFor(format.unitForZeroDuration(), BigDecimal.ZERO);
+    NumberFormat zeroFormat = (NumberFormat) format.numberFormat().clone();
+    zeroFormat.setMinimumFractionDigits(0);
+    zeroFormat.setMaximumFractionDigits(0);
+    this.formattedZero = zeroFormat.format(0) + zeroSuffix;
+
+    Map<String, byte[]> symbols = new HashMap<>();
+    addUtf8Symbol(symbols, partDelimiter);
+    addUtf8Symbol(symbols, formattedZero);
+    for (String symbol : digits.symbolStrings()) {
+      addUtf8Symbol(symbols, symbol);
+    }
+    int[] maxPartLengths = new int[numUnits];
+    for (int i = 0; i < numUnits; i++) {
+      int maxSuffixLength = 0;
+      for (String suffix : UnitSuffixProviders.probeSuffixes(suffixProvider, unitsInDescOrder[i])) {
+        maxSuffixLength = Math.max(maxSuffixLength, addUtf8Symbol(symbols, suffix).length);
+      }
+      // The largest unit can hold the whole magnitude of a Duration. Any other unit's value is
+      // less than one of the next larger unit (though rounding can make it equal).
+      BigInteger maxPartValue = (i == 0) ? ceilingDivide(MAX_DURATION_MAGNITUDE, unitNanosAsBig[0])
+          : ceilingDivide(unitNanosAsBig[i - 1], unitNanosAsBig[i]);
+      boolean withFraction = (i == smallestUnitIndex) && roundSmallestUnit;
+      maxPartLengths[i] = digits.maxEncodedLength(maxPartValue, withFraction) + maxSuffixLength;
+    }
+    // At most maxParts parts are shown, so only the longest ones can be part of the longest value.
+    Arrays.sort(maxPartLengths);
+    int numPartsShown = Math.min(numUnits, maxParts);
+    int maxLength = 0;
+    for (int i = 0; i < numPartsShown; i++) {
+      maxLength += maxPartLengths[numUnits - 1 - i];
+    }
+    maxLength += (numPartsShown - 1) * symbols.get(partDelimiter).length;
+    this.utf8Symbols = symbols;
+    this.maxEncodedLength = Math.max(maxLength, symbols.get(formattedZero).length);
+  }
+
+  /** Determine whether the suffixes of small whole quantities are cached. */
+  boolean cachesSuffixes() {
+    return cachedSuffixes != null;
+  }
+
+  /**
+   * Get the suffix for a whole quantity of a unit, from the cache if possible, or otherwise from
+   * the UnitSuffixProvider.
+   */
+  String suffixFor(ChronoUnit unit, long quantity) {
+    if (cachedSuffixes != null && quantity >= MIN_CACHED_SUFFIX_QUANTITY
+        && quantity <= MAX_CACHED_SUFFIX_QUANTITY) {
+      return cachedSuffixes[unit.ordinal()][(int) quantity - MIN_CACHED_SUFFIX_QUANTITY];
+    }
+    return suffixProvider.suffixFor(unit, quantity);
+  }
+
+  /**
+   * Get the index of the largest unit, from {@code fromIndex} on, of which a magnitude is at least
+   * one, or the index of the smallest unit if there is no such unit.
+   *
+   * @param seconds The number of whole seconds in the magnitude, as an unsigned long.
+   * @param nanos The nanosecond-of-second of the magnitude.
+   * @param fromIndex The index in {@link #unitsInDescOrder} of the largest unit to consider.
+   */
+  int largestUnitIndexIn(long seconds, int nanos, int fromIndex) {
+    int unitIndex = fromIndex;
+    while (unitIndex < smallestUnitIndex) {
+      int comparison = Long.compareUnsigned(seconds, unitSeconds[unitIndex]);
+      if (comparison > 0 || (comparison == 0 && nanos >= unitNanos[unitIndex])) {
+        break;
+      }
+      unitIndex++;
+    }
+    return unitIndex;
+  }
+
+  private static byte[] addUtf8Symbol(Map<String, byte[]> symbols, String symbol) {
+    return symbols.computeIfAbsent(symbol, s -> s.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static BigInteger ceilingDivide(BigInteger dividend, BigInteger divisor) {
+    BigInteger[] quotientAndRemainder = dividend.divideAndRemainder(divisor);
+    return quotientAndRemainder[1].signum() == 0 ? quotientAndRemainder[0]
+        : quotientAndRemainder[0].add(BigInteger.ONE);
+  }
+
+  static BigInteger wholeDurationAsNanos(Duration duration) {
+    BigInteger secondsPart = BigInteger.valueOf(duration.getSeconds());
+    BigInteger nanosPart = BigInteger.valueOf(duration.getNano());
+    return secondsPart.multiply(BIG_NANOS_PER_SECOND).add(nanosPart);
+  }
+}
@@ -0,0 +1,21 @@
+package com.pervasivecode.utils.time;
+
+import java.util.Locale;
+
+/**
+ * Styles of unit suffixes for the shared DurationFormat instances that
+ * {@link DurationFormats#getInstance(Locale, DurationFormatStyle)} provides.
+ */
+public enum DurationFormatStyle {
+  /**
+   * Abbreviated suffixes with no space before them, with parts separated by spaces. Example:
+   * "1h 10m 30s".
+   */
+  SHORT,
+
+  /**
+   * Singular and plural unit names, with parts separated by commas. Example: "1 hour, 10 minutes,
+   * 30 seconds".
+   */
+  LONG
+}
@@ -10,17 +10,178 @@ import static java.time.temporal.ChronoUnit.NANOS;
 import static java.time.temporal.ChronoUnit.SECONDS;
 import static java.time.temporal.ChronoUnit.WEEKS;
 import static java.time.temporal.ChronoUnit.YEARS;
+import static java.util.Objects.requireNonNull;
 import java.text.NumberFormat;
 import java.time.temporal.ChronoUnit;
 import java.util.Locale;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
-/** Factory methods for DurationFormat instances. */
+/**
+ * Factory methods for DurationFormat instances.
+ * <p>
+ * The formatters returned by {@link #getFormatter(Locale, DurationFormatStyle)} are created the
+ * first time they are requested for a Locale and style, and then shared by all callers, so they can
+ * be used freely (even once per request) by any number of threads. The DurationFormat instances
+ * returned by the other methods are new instances, each with its own
+ * {@link DurationFormat#numberFormat() NumberFormat}, so callers can modify them without affecting
+ * anyone else.
+ */
 public class DurationFormats {
   private DurationFormats() {}
 
+  /** The units that the suffix lists below provide suffixes for, in the same order. */
+  private static final ImmutableList<ChronoUnit> SUFFIXED_UNITS =
+      ImmutableList.of(NANOS, MICROS, MILLIS, SECONDS, MINUTES, HOURS, DAYS, WEEKS, MONTHS, YEARS);
+
+  private static final ImmutableMap<String, ImmutableList<String>> SHORT_SUFFIXES =
+      ImmutableMap.of( //
+          "en", ImmutableList.of("ns", "µs", "ms", "s", "m", "h", "d", "w", "mo", "y"), //
+          "de", ImmutableList.of("ns", "µs", "ms", "s", "min", "h", "T", "W", "M", "J"), //
+          "fr", ImmutableList.of("ns", "µs", "ms", "s", "min", "h", "j", "sem", "mois", "a"), //
+          "es", ImmutableList.of("ns", "µs", "ms", "s", "min", "h", "d", "sem", "m", "a"));
+
+  private static final ImmutableMap<String, ImmutableList<String>> LONG_SINGULAR_SUFFIXES =
+      ImmutableMap.of( //
+          "en", ImmutableList.of(" nanosecond", " microsecond", " millisecond", " second",
+              " minute", " hour", " day", " week", " month", " year"), //
+          "de", ImmutableList.of(" Nanosekunde", " Mikrosekunde", " Millisekunde", " Sekunde",
+              " Minute", " Stunde", " Tag", " Woche", " Monat", " Jahr"), //
+          "fr", ImmutableList.of(" nanoseconde", " microseconde", " milliseconde", " seconde",
+              " minute", " heure", " jour", " semaine", " mois", " an"), //
+          "es", ImmutableList.of(" nanosegundo", " microsegundo", " milisegundo", " segundo",
+              " minuto", " hora", " día", " semana", " mes", " año"));
+
+  private static final ImmutableMap<String, ImmutableList<String>> LONG_PLURAL_SUFFIXES =
+      ImmutableMap.of( //
+          "en", ImmutableList.of(" nanoseconds", " microseconds", " milliseconds", " seconds",
+              " minutes", " hours", " days", " weeks", " months", " years"), //
+          "de", ImmutableList.of(" Nanosekunden", " Mikrosekunden", " Millisekunden", " Sekunden",
+              " Minuten", " Stunden", " Tage", " Wochen", " Monate", " Jahre"), //
+          "fr", ImmutableList.of(" nanosecondes", " microsecondes", " millisecondes", " secondes",
+              " minutes", " heures", " jours", " semaines", " mois", " ans"), //
+          "es", ImmutableList.of(" nanosegundos", " microsegundos", " milisegundos", " segundos",
+              " minutos", " horas", " días", " semanas", " meses", " años"));
+
+  /**
+   * The most shared formatters to keep for each style. Formatters are cached by Locale, and callers
+   * may use many distinct Locales (with regions, variants, or extensions) for the few supported
+   * languages, so the least recently used ones are dropped beyond this limit.
+   */
+  @VisibleForTesting
+  static final int MAX_CACHED_FORMATTERS = 100;
+
+  private static final ImmutableMap<DurationFormatStyle, ImmutableMap<String, UnitSuffixProvider>>
+      SUFFIX_PROVIDERS = ImmutableMap.of( //
+          DurationFormatStyle.SHORT, suffixProviders(DurationFormatStyle.SHORT), //
+          DurationFormatStyle.LONG, suffixProviders(DurationFormatStyle.LONG));
+
+  private static final UnitSuffixProvider US_SHORT_SUFFIXES =
+      SUFFIX_PROVIDERS.get(DurationFormatStyle.SHORT).get("en");
+
+  private static final ImmutableMap<DurationFormatStyle, LoadingCache<Locale, DurationFormatter>>
+      FORMATTERS = ImmutableMap.of( //
+          DurationFormatStyle.SHORT, newFormatterCache(DurationFormatStyle.SHORT), //
+          DurationFormatStyle.LONG, newFormatterCache(DurationFormatStyle.LONG));
+
+  private static ImmutableMap<String, UnitSuffixProvider> suffixProviders(
+      DurationFormatStyle style) {
+    ImmutableMap.Builder<String, UnitSuffixProvider> builder = ImmutableMap.builder();
+    for (String language : SHORT_SUFFIXES.keySet()) {
+      if (style == DurationFormatStyle.SHORT) {
+        builder.put(language,
+            UnitSuffixProviders.fixedSuffixPerUnit(suffixMap(SHORT_SUFFIXES.get(language))));
+      } else {
+        builder.put(language,
+            UnitSuffixProviders.singularAndPlural(suffixMap(LONG_SINGULAR_SUFFIXES.get(language)),
+                suffixMap(LONG_PLURAL_SUFFIXES.get(language))));
+      }
+    }
+    return builder.build();
+  }
+
+  private static LoadingCache<Locale, DurationFormatter> newFormatterCache(
+      DurationFormatStyle style) {
+    return CacheBuilder.newBuilder() //
+        .maximumSize(MAX_CACHED_FORMATTERS) //
+        .build(CacheLoader.from(
+            (Locale locale) -> new DurationFormatter(createInstance(locale, style)).compile()));
+  }
+
+  private static ImmutableMap<ChronoUnit, String> suffixMap(ImmutableList<String> suffixes) {
+    ImmutableMap.Builder<ChronoUnit, String> builder = ImmutableMap.builder();
+    for (int i = 0; i < SUFFIXED_UNITS.size(); i++) {
+      builder.put(SUFFIXED_UNITS.get(i), suffixes.get(i));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Get a DurationFormat for a Locale and style, using units from nanoseconds up to years, without
+   * fractions. Numbers are written using {@link NumberFormat#getInstance(Locale)}.
+   * <p>
+   * Unit suffixes are available for English, German, French, and Spanish (that is, for Locales
+   * whose {@link Locale#getLanguage() language} is "en", "de", "fr", or "es").
+   *
+   * @param locale The Locale whose unit suffixes and number symbols should be used.
+   * @param style The style of unit suffixes to use.
+   * @return A new DurationFormat for the Locale and style.
+   * @throws IllegalArgumentException if there are no unit suffixes for the Locale's language.
+   */
+  public static DurationFormat getInstance(Locale locale, DurationFormatStyle style) {
+    return createInstance(requireNonNull(locale), requireNonNull(style));
+  }
+
+  /**
+   * Get the shared DurationFormatter for the DurationFormat that
+   * {@link #getInstance(Locale, DurationFormatStyle)} returns. The formatter is
+   * {@link DurationFormatter#compile() compiled}, since it is shared. It has its own copy of the
+   * format's NumberFormat symbols, so it is not affected by changes to any DurationFormat.
+   *
+   * @param locale The Locale whose unit suffixes and number symbols should be used.
+   * @param style The style of unit suffixes to use.
+   * @return The shared DurationFormatter for the Locale and style.
+   * @throws IllegalArgumentException if there are no unit suffixes for the Locale's language.
+   */
+  public static DurationFormatter getFormatter(Locale locale, DurationFormatStyle style) {
+    checkSupported(requireNonNull(locale));
+    return FORMATTERS.get(requireNonNull(style)).getUnchecked(locale);
+  }
+
+  @VisibleForTesting
+  static long numCachedFormatters(DurationFormatStyle style) {
+    LoadingCache<Locale, DurationFormatter> cache = FORMATTERS.get(style);
+    cache.cleanUp();
+    return cache.size();
+  }
+
+  private static void checkSupported(Locale locale) {
+    if (!SHORT_SUFFIXES.containsKey(locale.getLanguage())) {
+      throw new IllegalArgumentException("Unsupported locale: " + locale);
+    }
+  }
+
+  private static DurationFormat createInstance(Locale locale, DurationFormatStyle style) {
+    checkSupported(locale);
+    return DurationFormat.builder() //
+        .setUnitSuffixProvider(SUFFIX_PROVIDERS.get(style).get(locale.getLanguage())) //
+        .setPartDelimiter(style == DurationFormatStyle.SHORT ? " " : ", ") //
+        .setNumberFormat(NumberFormat.getInstance(locale)) //
+        .setLargestUnit(YEARS) //
+        .setSmallestUnit(NANOS) //
+        .setUnitForZeroDuration(SECONDS) //
+        .setNumFractionalDigits(0) //
+        .build();
+  }
+
   /**
    * DurationFormat for US locales, using units from nanoseconds up to years, without fractions.
+   * This is the same as {@code getInstance(Locale.US, DurationFormatStyle.SHORT)}, and returns a new
+   * instance each time.
    * <p>
    * Examples:
    * <ul>
@@ -33,15 +194,7 @@ public class DurationFormats {
    * @return An instance that will format values in a form appropriate for the US locale.
    */
   public static DurationFormat getUsDefaultInstance() {
-    return DurationFormat.builder() //
-        .setUnitSuffixProvider(usShortSuffixProvider()) //
-        .setPartDelimiter(" ") //
-        .setNumberFormat(NumberFormat.getInstance(Locale.US)) //
-        .setLargestUnit(YEARS) //
-        .setSmallestUnit(NANOS) //
-        .setUnitForZeroDuration(SECONDS) //
-        .setNumFractionalDigits(0) //
-        .build();
+    return getInstance(Locale.US, DurationFormatStyle.SHORT);
   }
 
   /**
@@ -52,19 +205,6 @@ public class DurationFormats {
    * @return The UnitSuffixProvider for short US suffixes.
    */
   public static UnitSuffixProvider usShortSuffixProvider() {
-    ImmutableMap<ChronoUnit, String> unitSuffixes = ImmutableMap.<ChronoUnit, String>builder() //
-        .put(NANOS, "ns") //
-        .put(MICROS, "µs") //
-        .put(MILLIS, "ms") //
-        .put(SECONDS, "s") //
-        .put(MINUTES, "m") //
-        .put(HOURS, "h") //
-        .put(DAYS, "d") //
-        .put(WEEKS, "w") //
-        .put(MONTHS, "mo") //
-        .put(YEARS, "y") //
-        .build();
-    UnitSuffixProvider suffixProvider = UnitSuffixProviders.fixedSuffixPerUnit(unitSuffixes);
-    return suffixProvider;
+    return US_SHORT_SUFFIXES;
   }
 }
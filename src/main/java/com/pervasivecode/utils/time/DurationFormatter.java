@@ -1,17 +1,17 @@
 package com.pervasivecode.utils.time;
 
-import static com.pervasivecode.utils.time.DurationRemainderHandling.ROUND_HALF_EVEN;
 import static java.util.Objects.requireNonNull;
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.math.RoundingMode;
-import java.text.NumberFormat;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
-import com.google.common.base.Joiner;
-import com.google.common.collect.ImmutableList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Formatter for a {@link Duration} value. {@link Duration}s are split into avaialble
@@ -46,14 +46,17 @@ import com.google.common.collect.ImmutableList;
  * Note: {@link Duration} values are defined in terms of seconds and nanoseconds. Since calendars'
  * day, month, and year lengths vary over time, this class uses the {@link ChronoUnit#MONTHS} and
  * {@link ChronoUnit#YEARS} unit values that are approximations of actual calendar months and years.
+ * <p>
+ * Instances are immutable and thread-safe. The symbols used to write numbers are read from the
+ * {@link DurationFormat#numberFormat() NumberFormat} once, when the formatter is created, so one
+ * instance can be shared by any number of threads without cloning or locking.
  */
 public final class DurationFormatter {
-  private static final BigInteger NANOS_PER_SECOND = BigInteger.valueOf(1_000_000_000L);
-  private static final BigInteger INT_MAX_AS_BIG = BigInteger.valueOf(Integer.MAX_VALUE);
-  private static final BigInteger INT_MIN_AS_BIG = BigInteger.valueOf(Integer.MIN_VALUE);
+  private static final long NANOS_PER_SECOND = DurationFormatPlan.NANOS_PER_SECOND;
 
   private final DurationFormat format;
-  private final transient Joiner partJoiner;
+  private final transient DurationFormatPlan plan;
+  private final transient DurationPartWriter textWriter = new TextWriter();
 
   /**
    * Create a DurationFormatter.
@@ -62,13 +65,33 @@ public final class DurationFormatter {
    */
   public DurationFormatter(DurationFormat format) {
     this.format = requireNonNull(format);
-    this.partJoiner = Joiner.on(format.partDelimiter());
+    this.plan = new DurationFormatPlan(format);
+  }
+
+  private DurationFormatter(DurationFormat format, DurationFormatPlan plan) {
+    this.format = format;
+    this.plan = plan;
   }
 
-  private static BigInteger wholeDurationAsNanos(Duration duration) {
-    BigInteger secondsPart = BigInteger.valueOf(duration.getSeconds());
-    BigInteger nanosPart = BigInteger.valueOf(duration.getNano());
-    return secondsPart.multiply(NANOS_PER_SECOND).add(nanosPart);
+  /**
+   * Get a formatter that produces the same output as this one, but that is specialized for a format
+   * that will be used many times, such as one that is fixed for the life of the process.
+   * <p>
+   * The returned formatter asks the {@link UnitSuffixProvider} for the suffix of every whole
+   * quantity from -2 through 100 of each unit once, when it is created, and then looks these
+   * suffixes up in a table instead of calling the provider for each part. This assumes that the
+   * provider always returns the same suffix for the same unit and quantity, which is true of the
+   * providers in {@link UnitSuffixProviders}.
+   * <p>
+   * The returned formatter is equal to this one.
+   *
+   * @return A specialized formatter for the same DurationFormat.
+   */
+  public DurationFormatter compile() {
+    if (plan.cachesSuffixes()) {
+      return this;
+    }
+    return new DurationFormatter(format, new DurationFormatPlan(format, true));
   }
 
   /**
@@ -78,96 +101,886 @@ public final class DurationFormatter {
    * @return The formatted representation of the Duration.
    */
   public String format(Duration duration) {
+    return formatTo(duration, new StringBuilder()).toString();
+  }
+
+  /**
+   * Get a CharSequence that formats a Duration only when its text is first used (by calling
+   * {@link CharSequence#toString() toString}, {@link CharSequence#length() length}, or
+   * {@link CharSequence#charAt(int) charAt}), and then keeps the formatted representation.
+   * <p>
+   * This is meant for values that might not be shown, such as arguments to a logging call at a
+   * level that is usually disabled. Creating the CharSequence costs one small object, which holds
+   * only this formatter and the seconds and nanoseconds of the Duration.
+   *
+   * @param duration The Duration to format.
+   * @return A CharSequence whose text is the formatted representation of the Duration.
+   * @see #format(Duration)
+   */
+  public CharSequence formatLazily(Duration duration) {
+    return new LazyFormattedDuration(this, duration.getSeconds(), duration.getNano());
+  }
+
+  /**
+   * Format a Duration, appending the formatted representation to a StringBuilder.
+   * <p>
+   * This avoids allocating the intermediate objects that {@link #format(Duration)} needs to return
+   * a new String, so a caller that reuses a StringBuilder can format many values cheaply.
+   *
+   * @param duration The Duration to format.
+   * @param out The StringBuilder to which the formatted representation will be appended.
+   * @return The same StringBuilder instance that was passed in as {@code out}.
+   */
+  public StringBuilder formatTo(Duration duration, StringBuilder out) {
+    try {
+      appendTo(duration, out);
+    } catch (IOException e) {
+      // StringBuilder#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Format a Duration, appending the formatted representation to an Appendable such as a
+   * {@link java.io.Writer} or {@link java.nio.CharBuffer}.
+   *
+   * @param duration The Duration to format.
+   * @param out The Appendable to which the formatted representation will be appended.
+   * @return The same Appendable instance that was passed in as {@code out}.
+   * @throws IOException if the Appendable throws an IOException.
+   */
+  public Appendable formatTo(Duration duration, Appendable out) throws IOException {
+    appendTo(duration, out);
+    return out;
+  }
+
+  /**
+   * Format a Duration, writing the formatted representation into a ByteBuffer as UTF-8 encoded
+   * bytes, without creating a String.
+   * <p>
+   * The formatted representation is written starting at the buffer's position, and the position is
+   * advanced past it. {@link #maxEncodedLength()} bytes of space is always enough.
+   *
+   * @param duration The Duration to format.
+   * @param out The ByteBuffer into which the encoded bytes will be written.
+   * @return The same ByteBuffer instance that was passed in as {@code out}.
+   * @throws BufferOverflowException if there is not enough space remaining in the buffer. In this
+   *         case the buffer's position is not changed, though bytes after the position may have
+   *         been overwritten.
+   * @see #format(Duration)
+   */
+  public ByteBuffer formatTo(Duration duration, ByteBuffer out) {
+    int start = out.position();
+    try {
+      Utf8ByteBufferAppendable encoder = new Utf8ByteBufferAppendable(out, plan.utf8Symbols);
+      appendTo(duration, encoder);
+      encoder.finish();
+    } catch (BufferOverflowException e) {
+      out.position(start);
+      throw e;
+    } catch (IOException e) {
+      // Utf8ByteBufferAppendable#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Get the maximum number of bytes that {@link #formatTo(Duration, ByteBuffer)} or
+   * {@link #formatNanosTo(long, ByteBuffer)} can write, so that buffers can be allocated before
+   * formatting any values.
+   * <p>
+   * This assumes that the {@link UnitSuffixProvider} uses one of the suffixes that it provides for
+   * quantities from -2 through 100 (which is the case for the providers in
+   * {@link UnitSuffixProviders}).
+   *
+   * @return The maximum length of a formatted value, in bytes of UTF-8.
+   */
+  public int maxEncodedLength() {
+    return plan.maxEncodedLength;
+  }
+
+  /**
+   * Format a number of nanoseconds, such as the difference between two values returned by
+   * {@link System#nanoTime()}. This produces the same result as formatting
+   * {@code Duration.ofNanos(nanos)}, without creating the Duration.
+   *
+   * @param nanos The number of nanoseconds to format.
+   * @return The formatted representation of the number of nanoseconds.
+   */
+  public String formatNanos(long nanos) {
+    return formatNanosTo(nanos, new StringBuilder()).toString();
+  }
+
+  /**
+   * Get a CharSequence that formats a number of nanoseconds only when its text is first used, like
+   * {@link #formatLazily(Duration)}.
+   *
+   * @param nanos The number of nanoseconds to format.
+   * @return A CharSequence whose text is the formatted representation of the number of nanoseconds.
+   * @see #formatNanos(long)
+   */
+  public CharSequence formatNanosLazily(long nanos) {
+    return new LazyFormattedDuration(this, Math.floorDiv(nanos, NANOS_PER_SECOND),
+        (int) Math.floorMod(nanos, NANOS_PER_SECOND));
+  }
+
+  /**
+   * Format a number of nanoseconds, appending the formatted representation to a StringBuilder.
+   *
+   * @param nanos The number of nanoseconds to format.
+   * @param out The StringBuilder to which the formatted representation will be appended.
+   * @return The same StringBuilder instance that was passed in as {@code out}.
+   * @see #formatNanos(long)
+   */
+  public StringBuilder formatNanosTo(long nanos, StringBuilder out) {
+    try {
+      appendNanos(nanos, out);
+    } catch (IOException e) {
+      // StringBuilder#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Format a number of nanoseconds, appending the formatted representation to an Appendable.
+   *
+   * @param nanos The number of nanoseconds to format.
+   * @param out The Appendable to which the formatted representation will be appended.
+   * @return The same Appendable instance that was passed in as {@code out}.
+   * @throws IOException if the Appendable throws an IOException.
+   * @see #formatNanos(long)
+   */
+  public Appendable formatNanosTo(long nanos, Appendable out) throws IOException {
+    appendNanos(nanos, out);
+    return out;
+  }
+
+  /**
+   * Format a number of nanoseconds, writing the formatted representation into a ByteBuffer as UTF-8
+   * encoded bytes, without creating a String.
+   *
+   * @param nanos The number of nanoseconds to format.
+   * @param out The ByteBuffer into which the encoded bytes will be written.
+   * @return The same ByteBuffer instance that was passed in as {@code out}.
+   * @throws BufferOverflowException if there is not enough space remaining in the buffer. In this
+   *         case the buffer's position is not changed, though bytes after the position may have
+   *         been overwritten.
+   * @see #formatNanos(long)
+   * @see #formatTo(Duration, ByteBuffer)
+   */
+  public ByteBuffer formatNanosTo(long nanos, ByteBuffer out) {
+    int start = out.position();
+    try {
+      Utf8ByteBufferAppendable encoder = new Utf8ByteBufferAppendable(out, plan.utf8Symbols);
+      appendNanos(nanos, encoder);
+      encoder.finish();
+    } catch (BufferOverflowException e) {
+      out.position(start);
+      throw e;
+    } catch (IOException e) {
+      // Utf8ByteBufferAppendable#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Format a number of milliseconds, such as the difference between two values returned by
+   * {@link System#currentTimeMillis()}. This produces the same result as formatting
+   * {@code Duration.ofMillis(millis)}, without creating the Duration.
+   *
+   * @param millis The number of milliseconds to format.
+   * @return The formatted representation of the number of milliseconds.
+   */
+  public String formatMillis(long millis) {
+    return formatMillisTo(millis, new StringBuilder()).toString();
+  }
+
+  /**
+   * Format a number of milliseconds, appending the formatted representation to a StringBuilder.
+   *
+   * @param millis The number of milliseconds to format.
+   * @param out The StringBuilder to which the formatted representation will be appended.
+   * @return The same StringBuilder instance that was passed in as {@code out}.
+   * @see #formatMillis(long)
+   */
+  public StringBuilder formatMillisTo(long millis, StringBuilder out) {
+    return formatTo(millis, TimeUnit.MILLISECONDS, out);
+  }
+
+  /**
+   * Format a number of milliseconds, appending the formatted representation to an Appendable.
+   *
+   * @param millis The number of milliseconds to format.
+   * @param out The Appendable to which the formatted representation will be appended.
+   * @return The same Appendable instance that was passed in as {@code out}.
+   * @throws IOException if the Appendable throws an IOException.
+   * @see #formatMillis(long)
+   */
+  public Appendable formatMillisTo(long millis, Appendable out) throws IOException {
+    return formatTo(millis, TimeUnit.MILLISECONDS, out);
+  }
+
+  /**
+   * Format an amount of time specified as a quantity of a {@link TimeUnit}. This produces the same
+   * result as formatting the equivalent Duration, without creating the Duration (unless the amount
+   * of time is too large to be represented as a long number of nanoseconds).
+   *
+   * @param amount The quantity of the specified unit to format.
+   * @param unit The unit of the specified quantity.
+   * @return The formatted representation of the amount of time.
+   * @throws ArithmeticException if the amount of time is too large to be represented as a
+   *         Duration.
+   */
+  public String format(long amount, TimeUnit unit) {
+    return formatTo(amount, unit, new StringBuilder()).toString();
+  }
+
+  /**
+   * Format an amount of time specified as a quantity of a {@link TimeUnit}, appending the formatted
+   * representation to a StringBuilder.
+   *
+   * @param amount The quantity of the specified unit to format.
+   * @param unit The unit of the specified quantity.
+   * @param out The StringBuilder to which the formatted representation will be appended.
+   * @return The same StringBuilder instance that was passed in as {@code out}.
+   * @see #format(long, TimeUnit)
+   * @throws ArithmeticException if the amount of time is too large to be represented as a
+   *         Duration.
+   */
+  public StringBuilder formatTo(long amount, TimeUnit unit, StringBuilder out) {
+    try {
+      appendTo(amount, unit, out);
+    } catch (IOException e) {
+      // StringBuilder#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Format an amount of time specified as a quantity of a {@link TimeUnit}, appending the formatted
+   * representation to an Appendable.
+   *
+   * @param amount The quantity of the specified unit to format.
+   * @param unit The unit of the specified quantity.
+   * @param out The Appendable to which the formatted representation will be appended.
+   * @return The same Appendable instance that was passed in as {@code out}.
+   * @throws IOException if the Appendable throws an IOException.
+   * @see #format(long, TimeUnit)
+   * @throws ArithmeticException if the amount of time is too large to be represented as a
+   *         Duration.
+   */
+  public Appendable formatTo(long amount, TimeUnit unit, Appendable out) throws IOException {
+    appendTo(amount, unit, out);
+    return out;
+  }
+
+  /**
+   * Split a Duration into the parts that {@link #format(Duration)} would write, without writing any
+   * text.
+   *
+   * @param duration The Duration to split into parts.
+   * @return A new FormattedDuration containing the sign and parts of the Duration.
+   * @see FormattedDuration
+   */
+  public FormattedDuration formatToParts(Duration duration) {
+    return formatToParts(duration, new FormattedDuration());
+  }
+
+  /**
+   * Split a Duration into the parts that {@link #format(Duration)} would write, filling in a
+   * FormattedDuration that can be reused for any number of Durations. Any parts that it already
+   * contains are replaced.
+   *
+   * @param duration The Duration to split into parts.
+   * @param out The FormattedDuration to fill in.
+   * @return The same FormattedDuration instance that was passed in as {@code out}.
+   */
+  public FormattedDuration formatToParts(Duration duration, FormattedDuration out) {
+    requireNonNull(duration);
+    out.reset();
+    try {
+      writeDuration(duration, out.writer(), null);
+    } catch (IOException e) {
+      // FormattedDuration's writer never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Split a number of nanoseconds into the parts that {@link #formatNanos(long)} would write,
+   * filling in a FormattedDuration that can be reused for any number of values. Any parts that it
+   * already contains are replaced.
+   *
+   * @param nanos The number of nanoseconds to split into parts.
+   * @param out The FormattedDuration to fill in.
+   * @return The same FormattedDuration instance that was passed in as {@code out}.
+   */
+  public FormattedDuration formatNanosToParts(long nanos, FormattedDuration out) {
+    out.reset();
+    try {
+      writeNanos(nanos, out.writer(), null);
+    } catch (IOException e) {
+      // FormattedDuration's writer never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Format an array of nanosecond values, such as a column of per-request timings.
+   *
+   * @param nanos The numbers of nanoseconds to format.
+   * @return An array containing the formatted representation of each value, in the same order.
+   * @see #formatNanos(long)
+   */
+  public String[] formatAllNanos(long[] nanos) {
+    String[] results = new String[nanos.length];
+    BatchFormatTask.forNanos(this, nanos, results).formatSequentially();
+    return results;
+  }
+
+  /**
+   * Format an array of nanosecond values, splitting large arrays into ranges that are formatted in
+   * parallel by the specified ForkJoinPool.
+   *
+   * @param nanos The numbers of nanoseconds to format.
+   * @param pool The ForkJoinPool that will format the values.
+   * @return An array containing the formatted representation of each value, in the same order.
+   * @see #formatNanos(long)
+   */
+  public String[] formatAllNanos(long[] nanos, ForkJoinPool pool) {
+    requireNonNull(pool);
+    String[] results = new String[nanos.length];
+    pool.invoke(BatchFormatTask.forNanos(this, nanos, results));
+    return results;
+  }
+
+  /**
+   * Format a list of Durations.
+   *
+   * @param durations The Durations to format.
+   * @return An array containing the formatted representation of each Duration, in the same order.
+   * @see #format(Duration)
+   */
+  public String[] formatAll(List<Duration> durations) {
+    Duration[] values = durations.toArray(new Duration[0]);
+    String[] results = new String[values.length];
+    BatchFormatTask.forDurations(this, values, results).formatSequentially();
+    return results;
+  }
+
+  /**
+   * Format a list of Durations, splitting large lists into ranges that are formatted in parallel by
+   * the specified ForkJoinPool.
+   *
+   * @param durations The Durations to format.
+   * @param pool The ForkJoinPool that will format the values.
+   * @return An array containing the formatted representation of each Duration, in the same order.
+   * @see #format(Duration)
+   */
+  public String[] formatAll(List<Duration> durations, ForkJoinPool pool) {
+    requireNonNull(pool);
+    Duration[] values = durations.toArray(new Duration[0]);
+    String[] results = new String[values.length];
+    pool.invoke(BatchFormatTask.forDurations(this, values, results));
+    return results;
+  }
+
+  /**
+   * Format an array of nanosecond values, appending the formatted representations to a
+   * StringBuilder with a delimiter between each one.
+   *
+   * @param nanos The numbers of nanoseconds to format.
+   * @param delimiter The text to append between formatted values.
+   * @param out The StringBuilder to which the formatted representations will be appended.
+   * @return The same StringBuilder instance that was passed in as {@code out}.
+   * @see #formatNanos(long)
+   */
+  public StringBuilder formatAllNanosTo(long[] nanos, CharSequence delimiter, StringBuilder out) {
+    try {
+      appendAllNanos(nanos, delimiter, out);
+    } catch (IOException e) {
+      // StringBuilder#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Format an array of nanosecond values, appending the formatted representations to an Appendable
+   * (such as a CharBuffer) with a delimiter between each one.
+   *
+   * @param nanos The numbers of nanoseconds to format.
+   * @param delimiter The text to append between formatted values.
+   * @param out The Appendable to which the formatted representations will be appended.
+   * @return The same Appendable instance that was passed in as {@code out}.
+   * @throws IOException if the Appendable throws an IOException.
+   * @see #formatNanos(long)
+   */
+  public Appendable formatAllNanosTo(long[] nanos, CharSequence delimiter, Appendable out)
+      throws IOException {
+    appendAllNanos(nanos, delimiter, out);
+    return out;
+  }
+
+  /**
+   * Format a list of Durations, appending the formatted representations to a StringBuilder with a
+   * delimiter between each one.
+   *
+   * @param durations The Durations to format.
+   * @param delimiter The text to append between formatted values.
+   * @param out The StringBuilder to which the formatted representations will be appended.
+   * @return The same StringBuilder instance that was passed in as {@code out}.
+   * @see #format(Duration)
+   */
+  public StringBuilder formatAllTo(List<Duration> durations, CharSequence delimiter,
+      StringBuilder out) {
+    try {
+      appendAll(durations, delimiter, out);
+    } catch (IOException e) {
+      // StringBuilder#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Format a list of Durations, appending the formatted representations to an Appendable (such as a
+   * CharBuffer) with a delimiter between each one.
+   *
+   * @param durations The Durations to format.
+   * @param delimiter The text to append between formatted values.
+   * @param out The Appendable to which the formatted representations will be appended.
+   * @return The same Appendable instance that was passed in as {@code out}.
+   * @throws IOException if the Appendable throws an IOException.
+   * @see #format(Duration)
+   */
+  public Appendable formatAllTo(List<Duration> durations, CharSequence delimiter,
+      Appendable out) throws IOException {
+    appendAll(durations, delimiter, out);
+    return out;
+  }
+
+  /** Get the plan that this formatter follows. */
+  DurationFormatPlan plan() {
+    return plan;
+  }
+
+  /** Get the DurationPartWriter that writes parts as text. */
+  DurationPartWriter textWriter() {
+    return textWriter;
+  }
+
+  private void appendTo(Duration duration, Appendable out) throws IOException {
+    requireNonNull(out);
+    writeDuration(duration, textWriter, out);
+  }
+
+  private void writeDuration(Duration duration, DurationPartWriter writer, Appendable out)
+      throws IOException {
     if (duration.isZero()) {
-      return formatZero();
+      writer.writeZero(format.unitForZeroDuration(), out);
+      return;
+    }
+    long seconds = duration.getSeconds();
+    int nanos = duration.getNano();
+    if (seconds >= 0) {
+      writeParts(false, seconds, nanos, writer, out);
+    } else if (nanos == 0) {
+      // If seconds is Long.MIN_VALUE, this is 2^63 as an unsigned value, which is correct.
+      writeParts(true, -seconds, 0, writer, out);
+    } else {
+      writeParts(true, -(seconds + 1), (int) (NANOS_PER_SECOND - nanos), writer, out);
     }
+  }
 
-    NumberFormat nf = (NumberFormat) format.numberFormat().clone();
-    nf.setRoundingMode(RoundingMode.UNNECESSARY);
-    nf.setMinimumFractionDigits(0);
-    nf.setMaximumFractionDigits(0);
+  private void appendTo(long amount, TimeUnit unit, Appendable out) throws IOException {
+    long nanosPerUnit = unit.toNanos(1);
+    long maxAmount = Long.MAX_VALUE / nanosPerUnit;
+    if (amount <= maxAmount && amount >= -maxAmount) {
+      appendNanos(amount * nanosPerUnit, out);
+    } else {
+      appendTo(Duration.of(amount, toChronoUnit(unit)), out);
+    }
+  }
 
-    int unitIndex = 0;
-    ImmutableList<ChronoUnit> unitsInDescOrder = ImmutableList.copyOf(format.units()).reverse();
-    ArrayList<String> parts = new ArrayList<>();
+  private void appendNanos(long nanos, Appendable out) throws IOException {
+    requireNonNull(out);
+    writeNanos(nanos, textWriter, out);
+  }
 
-    BigInteger bigNanosRemaining = wholeDurationAsNanos(duration);
+  private void writeNanos(long nanos, DurationPartWriter writer, Appendable out)
+      throws IOException {
+    if (nanos == 0) {
+      writer.writeZero(format.unitForZeroDuration(), out);
+      return;
+    }
+    // Division truncates toward zero, so the seconds and nanos have the same sign as the total.
+    long seconds = nanos / NANOS_PER_SECOND;
+    int nanoOfSecond = (int) (nanos % NANOS_PER_SECOND);
+    if (nanos > 0) {
+      writeParts(false, seconds, nanoOfSecond, writer, out);
+    } else {
+      writeParts(true, -seconds, -nanoOfSecond, writer, out);
+    }
+  }
 
-    for (; unitIndex < unitsInDescOrder.size(); unitIndex++) {
-      ChronoUnit currentUnit = unitsInDescOrder.get(unitIndex);
-      BigInteger currentUnitInNanos = wholeDurationAsNanos(currentUnit.getDuration());
+  private void appendAllNanos(long[] nanos, CharSequence delimiter, Appendable out)
+      throws IOException {
+    requireNonNull(delimiter);
+    for (int i = 0; i < nanos.length; i++) {
+      if (i > 0) {
+        out.append(delimiter);
+      }
+      appendNanos(nanos[i], out);
+    }
+  }
 
-      BigInteger bigNanosRemainingBeforeIntDivision = bigNanosRemaining;
-      BigInteger[] quotientAndRemainder = bigNanosRemaining.divideAndRemainder(currentUnitInNanos);
-      BigInteger partValue = quotientAndRemainder[0];
-      bigNanosRemaining = quotientAndRemainder[1];
+  private void appendAll(List<Duration> durations, CharSequence delimiter, Appendable out)
+      throws IOException {
+    requireNonNull(delimiter);
+    boolean isFirst = true;
+    for (Duration duration : durations) {
+      if (!isFirst) {
+        out.append(delimiter);
+      }
+      appendTo(duration, out);
+      isFirst = false;
+    }
+  }
 
-      if (parts.isEmpty()) {
-        if (partValue.equals(BigInteger.ZERO) && currentUnit != format.smallestUnit()) {
-          // Skip leading parts whose value is zero.
-          continue;
-        } else {
-          // If the duration is negative, only show the first part as a negative value.
-          // Example: Duration.ofHours(-25) -> "-1d 1h" rather than "-1d -1h".
-          bigNanosRemaining = bigNanosRemaining.abs();
+  private static ChronoUnit toChronoUnit(TimeUnit unit) {
+    switch (unit) {
+      case NANOSECONDS:
+        return ChronoUnit.NANOS;
+      case MICROSECONDS:
+        return ChronoUnit.MICROS;
+      case MILLISECONDS:
+        return ChronoUnit.MILLIS;
+      case SECONDS:
+        return ChronoUnit.SECONDS;
+      case MINUTES:
+        return ChronoUnit.MINUTES;
+      case HOURS:
+        return ChronoUnit.HOURS;
+      case DAYS:
+        return ChronoUnit.DAYS;
+      default:
+        throw new IllegalArgumentException("Unsupported TimeUnit: " + unit);
+    }
+  }
+
+  /**
+   * Split a nonzero Duration, given as its sign and the seconds and nanoseconds of its magnitude,
+   * into parts, and pass them to a DurationPartWriter. This works for any Duration and any set of
+   * units, using only long arithmetic (except for values that do not fit in a long, for which the
+   * UnitSuffixProvider needs a BigDecimal).
+   * <p>
+   * Each part's value is split into a high part and a low part (see
+   * {@link DigitEmitter#toBigDecimal(long, long, int)}), since a part in a unit shorter than a
+   * second can be larger than a long. For units of seconds or longer, the low part is always zero.
+   *
+   * @param negative Whether the Duration is negative.
+   * @param seconds The number of whole seconds in the magnitude of the Duration, as an unsigned
+   *        long. This can be as large as 2<sup>63</sup>, for the most negative Duration.
+   * @param nanos The nanosecond-of-second of the magnitude of the Duration.
+   * @param writer The DurationPartWriter that will receive the parts.
+   * @param out The Appendable to pass to the writer.
+   */
+  private void writeParts(boolean negative, long seconds, int nanos, DurationPartWriter writer,
+      Appendable out) throws IOException {
+    writeParts(negative, seconds, nanos, 0, 0, -1, writer, out);
+  }
+
+  /**
+   * Split a nonzero Duration into parts, like
+   * {@link #writeParts(boolean, long, int, DurationPartWriter, Appendable)}, but only using the
+   * units from {@code firstUnitIndex} on. This allows the parts for the larger units to be written
+   * by another source, such as a {@link CalendarDurationFormatter}.
+   *
+   * @param negative Whether the Duration is negative.
+   * @param seconds The number of whole seconds in the magnitude of the Duration, as an unsigned
+   *        long.
+   * @param nanos The nanosecond-of-second of the magnitude of the Duration.
+   * @param firstUnitIndex The index in {@link DurationFormatPlan#unitsInDescOrder} of the largest
+   *        unit to use.
+   * @param numPartsAlreadyShown The number of parts that have already been written or held back,
+   *        for the larger units. If this is nonzero, none of the parts written here is the first
+   *        part.
+   * @param firstUnwrittenZeroIndex The index of the first of the zero parts for the larger units
+   *        that have not been written yet, or -1 if there are none. They are written before the
+   *        first nonzero part written here, if there is one.
+   * @param writer The DurationPartWriter that will receive the parts.
+   * @param out The Appendable to pass to the writer.
+   */
+  void writeParts(boolean negative, long seconds, int nanos, int firstUnitIndex,
+      int numPartsAlreadyShown, int firstUnwrittenZeroIndex, DurationPartWriter writer,
+      Appendable out) throws IOException {
+    ChronoUnit[] units = plan.unitsInDescOrder;
+    boolean isFirstPart = (numPartsAlreadyShown == 0);
+    int numPartsShown = numPartsAlreadyShown;
+
+    long secondsRemaining = seconds;
+    int nanosRemaining = nanos;
+    // Zero parts are only written once a nonzero part follows them, so that trailing parts whose
+    // value is zero are omitted.
+
+    // If the parts end before the smallest unit, round or truncate the value of the last part
+    // first, and then split the result, so that rounding up carries into the larger parts.
+    // Example: "1h 59m 40s" -> "2h" rather than "1h 60m".
+    RoundedValue lastPartValue =
+        roundLastPartShown(seconds, nanos, firstUnitIndex, numPartsAlreadyShown);
+    if (lastPartValue != null) {
+      secondsRemaining = lastPartValue.replacedSeconds(seconds, nanos);
+      nanosRemaining = lastPartValue.replacedNanos(nanos);
+      if (secondsRemaining == 0 && nanosRemaining == 0) {
+        if (isFirstPart) {
+          writer.writeZero(format.unitForZeroDuration(), out);
         }
+        return; // omit the trailing zero.
       }
+    }
 
-      StringBuilder sb = new StringBuilder();
-
-      final String suffix;
-      if (currentUnit == format.smallestUnit()
-          && (format.numFractionalDigits() > 0 || format.remainderHandling() == ROUND_HALF_EVEN)) {
-        BigDecimal partValueWithFraction = new BigDecimal(bigNanosRemainingBeforeIntDivision)
-            .divide(new BigDecimal(currentUnitInNanos));
+    for (int unitIndex = firstUnitIndex; unitIndex < units.length; unitIndex++) {
+      ChronoUnit currentUnit = units[unitIndex];
+      boolean isSmallestUnit = (unitIndex == plan.smallestUnitIndex);
 
-        BigDecimal roundedPartValue =
-            partValueWithFraction.setScale(format.numFractionalDigits(), RoundingMode.HALF_EVEN);
+      if (isSmallestUnit && plan.roundSmallestUnit) {
+        // If the duration is negative, only show the first part as a negative value.
+        writeRoundedPart(unitIndex, plan.numFractionalDigits, negative && isFirstPart,
+            secondsRemaining, nanosRemaining, isFirstPart, firstUnwrittenZeroIndex, writer, out);
+        return;
+      }
 
-        nf.setRoundingMode(RoundingMode.HALF_EVEN);
-        nf.setMaximumFractionDigits(format.numFractionalDigits());
-        String fractionPart = nf.format(partValueWithFraction);
-        if (fractionPart.equals("0")) {
-          if (parts.isEmpty()) {
-            return formatZero();
+      long unitSeconds = plan.unitSeconds[unitIndex];
+      int unitNanos = plan.unitNanos[unitIndex];
+      long high;
+      long low = 0;
+      int numLowDigits = 0;
+      if (unitNanos == 0) {
+        high = Long.divideUnsigned(secondsRemaining, unitSeconds);
+        secondsRemaining = Long.remainderUnsigned(secondsRemaining, unitSeconds);
+      } else if (unitSeconds == 0) {
+        // The remaining seconds become the high digits of the value, followed by the number of
+        // whole units in the remaining nanoseconds.
+        high = secondsRemaining;
+        low = nanosRemaining / unitNanos;
+        numLowDigits = plan.unitsPerSecondDigits[unitIndex];
+        secondsRemaining = 0;
+        nanosRemaining = nanosRemaining % unitNanos;
+      } else {
+        // ChronoUnit.FOREVER, which is so long that no Duration can have a value larger than 1.
+        int comparison = Long.compareUnsigned(secondsRemaining, unitSeconds);
+        if (comparison > 0 || (comparison == 0 && nanosRemaining >= unitNanos)) {
+          high = 1;
+          secondsRemaining -= unitSeconds;
+          nanosRemaining -= unitNanos;
+          if (nanosRemaining < 0) {
+            secondsRemaining--;
+            nanosRemaining += NANOS_PER_SECOND;
           }
-          break; // omit the trailing zero.
+        } else {
+          high = 0;
         }
-        sb.append(fractionPart);
-        suffix = format.unitSuffixProvider().suffixFor(currentUnit, roundedPartValue);
-      } else {
-        String wholeNumberPart = nf.format(partValue);
-        sb.append(wholeNumberPart);
-        suffix = suffixFor(currentUnit, partValue);
       }
 
-      Objects.requireNonNull(suffix);
-      sb.append(suffix);
+      boolean isZero = (high == 0 && low == 0);
+      if (isFirstPart && isZero && !isSmallestUnit) {
+        // Skip leading parts whose value is zero.
+        continue;
+      }
+
+      // Stop after maxParts parts, without computing the values of the smaller units.
+      boolean isLastPart = (++numPartsShown == plan.maxParts);
 
-      parts.add(sb.toString());
+      if (isZero && !isFirstPart) {
+        if (firstUnwrittenZeroIndex < 0) {
+          firstUnwrittenZeroIndex = unitIndex;
+        }
+      } else {
+        writeZeroParts(firstUnwrittenZeroIndex, unitIndex, writer, out);
+        firstUnwrittenZeroIndex = -1;
+        // If the duration is negative, only show the first part as a negative value.
+        // Example: Duration.ofHours(-25) -> "-1d 1h" rather than "-1d -1h".
+        boolean isNegativePart = negative && isFirstPart && !isZero;
+        writer.writeInteger(currentUnit, isNegativePart, high, low, numLowDigits, isFirstPart,
+            out);
+        isFirstPart = false;
+      }
 
-      if (bigNanosRemaining.equals(BigInteger.ZERO)) {
+      if (isLastPart || (secondsRemaining == 0 && nanosRemaining == 0)) {
         break;
       }
     }
+  }
+
+  /**
+   * Write the zero parts, which are not the first part, for the units from {@code fromIndex} up to
+   * but not including {@code toIndex}. Nothing is written if {@code fromIndex} is negative.
+   */
+  void writeZeroParts(int fromIndex, int toIndex, DurationPartWriter writer,
+      Appendable out) throws IOException {
+    if (fromIndex < 0) {
+      return;
+    }
+    for (int unitIndex = fromIndex; unitIndex < toIndex; unitIndex++) {
+      writer.writeInteger(plan.unitsInDescOrder[unitIndex], false, 0, 0,
+          plan.unitsPerSecondDigits[unitIndex], false, out);
+    }
+  }
+
+  /**
+   * If {@link DurationFormat#maxParts()} parts end before the smallest unit, round or truncate the
+   * value of the last part shown, which is what is left of the magnitude after the larger parts, to
+   * a whole number as specified by {@link DurationFormat#remainderHandling()}.
+   *
+   * @return The rounded value of the last part, or null if the part for the smallest unit can be
+   *         shown (that part is rounded with its fractional digits when it is written), or if one
+   *         of the parts is {@link ChronoUnit#FOREVER}, which is only the case for the most negative
+   *         Duration, whose remainder after one FOREVER is truncated.
+   */
+  private RoundedValue roundLastPartShown(long seconds, int nanos, int firstUnitIndex,
+      int numPartsAlreadyShown) {
+    int numPartsLeft = plan.maxParts - numPartsAlreadyShown;
+    if (numPartsLeft > plan.smallestUnitIndex - firstUnitIndex) {
+      return null;
+    }
+    int firstPartUnitIndex = (numPartsAlreadyShown == 0)
+        ? plan.largestUnitIndexIn(seconds, nanos, firstUnitIndex)
+        : firstUnitIndex;
+    RoundedValue value = new RoundedValue(plan);
+    while (true) {
+      int lastUnitIndex = firstPartUnitIndex + numPartsLeft - 1;
+      if (lastUnitIndex >= plan.smallestUnitIndex) {
+        return null;
+      }
+      long remainderSeconds = seconds;
+      int remainderNanos = nanos;
+      for (int unitIndex = firstPartUnitIndex; unitIndex <= lastUnitIndex; unitIndex++) {
+        if (!plan.roundWithLongArithmetic[unitIndex]) {
+          return null;
+        }
+        value.split(unitIndex, remainderSeconds, remainderNanos);
+        remainderSeconds = value.remainderSeconds();
+        remainderNanos = value.remainderNanos();
+      }
+      value.round(0, plan.roundLastPart);
+      if (numPartsAlreadyShown > 0) {
+        return value;
+      }
+      int roundedFirstPartUnitIndex = plan.largestUnitIndexIn(
+          value.replacedSeconds(seconds, nanos), value.replacedNanos(nanos), firstUnitIndex);
+      if (roundedFirstPartUnitIndex >= firstPartUnitIndex) {
+        return value;
+      }
+      // Rounding up made the first part a larger unit, so the last part is a larger unit too.
+      // Example: with maxParts of 2, 59m 59.6s is rounded to 1h, rather than to 1h 0m 0s.
+      firstPartUnitIndex = roundedFirstPartUnitIndex;
+    }
+  }
 
-    return partJoiner.join(parts);
+  /**
+   * Write the rounded value of the part for the smallest unit. If it rounds to zero it is omitted,
+   * unless it is also the first part, in which case the whole value is formatted as a zero
+   * duration.
+   * <p>
+   * The value is computed as an integer part plus a fraction scaled by ten to the power of the
+   * number of fractional digits, using long division (see {@link RoundedValue}), so the rounding is
+   * exact.
+   */
+  private void writeRoundedPart(int unitIndex, int numFractionalDigits, boolean negative,
+      long seconds, int nanos, boolean isFirstPart, int firstUnwrittenZeroIndex,
+      DurationPartWriter writer, Appendable out) throws IOException {
+    if (!plan.roundWithLongArithmetic[unitIndex]) {
+      writeRoundedPartAsBigDecimal(unitIndex, numFractionalDigits, negative, seconds, nanos,
+          isFirstPart, firstUnwrittenZeroIndex, writer, out);
+      return;
+    }
+    RoundedValue value = new RoundedValue(plan).split(unitIndex, seconds, nanos)
+        .round(numFractionalDigits, true);
+    if (value.isZero()) {
+      if (isFirstPart) {
+        writer.writeZero(format.unitForZeroDuration(), out);
+      }
+      return; // omit the trailing zero.
+    }
+    writeZeroParts(firstUnwrittenZeroIndex, unitIndex, writer, out);
+    writer.writeDecimal(plan.unitsInDescOrder[unitIndex], negative, value.high, value.low,
+        value.numLowDigits, value.scaledFraction, numFractionalDigits, isFirstPart, out);
   }
 
-  private String suffixFor(ChronoUnit unit, BigInteger partValue) {
-    if ((partValue.compareTo(INT_MAX_AS_BIG) > 0) || (partValue.compareTo(INT_MIN_AS_BIG) < 0)) {
-      return format.unitSuffixProvider().suffixFor(unit, new BigDecimal(partValue));
+  /**
+   * Write the rounded value of the part for the smallest unit, like {@link #writeRoundedPart}, using
+   * BigDecimal arithmetic. This is only needed for formats with more fractional digits than fit in
+   * a long, or for rounding to {@link ChronoUnit#FOREVER}.
+   */
+  private void writeRoundedPartAsBigDecimal(int unitIndex, int numFractionalDigits,
+      boolean negative, long seconds, int nanos, boolean isFirstPart, int firstUnwrittenZeroIndex,
+      DurationPartWriter writer, Appendable out) throws IOException {
+    BigDecimal magnitude = DigitEmitter.toBigDecimal(seconds, nanos, 9);
+    BigDecimal unitMagnitude =
+        DigitEmitter.toBigDecimal(plan.unitSeconds[unitIndex], plan.unitNanos[unitIndex], 9);
+    BigDecimal roundedPartValue =
+        magnitude.divide(unitMagnitude, numFractionalDigits, RoundingMode.HALF_EVEN);
+    if (roundedPartValue.signum() == 0) {
+      if (isFirstPart) {
+        writer.writeZero(format.unitForZeroDuration(), out);
+      }
+      return; // omit the trailing zero.
     }
-    return format.unitSuffixProvider().suffixFor(unit, partValue.intValue());
+    if (negative) {
+      roundedPartValue = roundedPartValue.negate();
+    }
+    writeZeroParts(firstUnwrittenZeroIndex, unitIndex, writer, out);
+    writer.writeBigDecimal(plan.unitsInDescOrder[unitIndex], roundedPartValue, isFirstPart, out);
   }
 
-  private String formatZero() {
-    String zeroSuffix =
-        format.unitSuffixProvider().suffixFor(format.unitForZeroDuration(), BigDecimal.ZERO);
-    NumberFormat nf = (NumberFormat) format.numberFormat().clone();
-    nf.setMinimumFractionDigits(0);
-    nf.setMaximumFractionDigits(0);
-    return nf.format(0) + zeroSuffix;
+  /** Writes the parts of a Duration as text, to the Appendable passed to the formatter. */
+  private final class TextWriter implements DurationPartWriter {
+    @Override
+    public void writeZero(ChronoUnit unit, Appendable out) throws IOException {
+      out.append(plan.formattedZero);
+    }
+
+    @Override
+    public void writeInteger(ChronoUnit unit, boolean negative, long high, long low,
+        int numLowDigits, boolean isFirstPart, Appendable out) throws IOException {
+      appendDelimiterUnlessFirst(isFirstPart, out);
+      plan.digits.appendInteger(negative, high, low, numLowDigits, out);
+      out.append(Objects.requireNonNull(
+          RoundedValue.suffixFor(plan, unit, negative, high, low, numLowDigits)));
+    }
+
+    @Override
+    public void writeDecimal(ChronoUnit unit, boolean negative, long high, long low,
+        int numLowDigits, long scaledFraction, int numFractionDigits, boolean isFirstPart,
+        Appendable out) throws IOException {
+      appendDelimiterUnlessFirst(isFirstPart, out);
+      plan.digits.appendDecimal(negative, high, low, numLowDigits, scaledFraction, out);
+      out.append(Objects.requireNonNull(RoundedValue.suffixFor(plan, unit, negative, high, low,
+          numLowDigits, scaledFraction, numFractionDigits)));
+    }
+
+    @Override
+    public void writeBigDecimal(ChronoUnit unit, BigDecimal roundedValue, boolean isFirstPart,
+        Appendable out) throws IOException {
+      appendDelimiterUnlessFirst(isFirstPart, out);
+      plan.digits.appendDecimal(roundedValue, out);
+      out.append(Objects.requireNonNull(plan.suffixProvider.suffixFor(unit, roundedValue)));
+    }
+
+    private void appendDelimiterUnlessFirst(boolean isFirstPart, Appendable out)
+        throws IOException {
+      if (!isFirstPart) {
+        out.append(plan.partDelimiter);
+      }
+    }
   }
 
   @Override
@@ -0,0 +1,678 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.util.Objects.requireNonNull;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Parser for text representing a {@link Duration}, such as text produced by a
+ * {@link DurationFormatter}. This is the inverse of {@link DurationFormatter#format(Duration)}:
+ * text is parsed using the same unit suffixes, part delimiter, and number symbols as the
+ * {@link DurationFormat} that produced it.
+ * <p>
+ * Parts of the text must appear in descending order of unit size (for example, "1h 10m" but not
+ * "10m 1h"), and only the last part may have fractional digits. As with formatted values, only the
+ * first part may be negative, and a negative first part makes the whole Duration negative: "-1m
+ * 30s" is parsed as -90 seconds.
+ * <p>
+ * Suffixes are found by asking the {@link UnitSuffixProvider} for the suffixes of quantities from
+ * -2 through 100 and a few fractional quantities of each unit, when the parser is created. Text is
+ * then parsed in a single pass, matching suffixes using a trie, without using regular expressions
+ * or creating substrings. If the same suffix is used for more than one unit (such as "m" for both
+ * minutes and months), the largest unit that is smaller than the unit of the previous part is used.
+ * <p>
+ * Fractional amounts are rounded to the nearest nanosecond, using
+ * {@link RoundingMode#HALF_EVEN}. Digits after the 18th fractional digit are ignored. The integer
+ * quantity of a part may be larger than a long, as long as the whole value fits in a Duration. (A
+ * DurationFormatter whose largest unit is small produces such parts, such as the number of
+ * milliseconds in a Duration of 300 million years.)
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+@Immutable
+public final class DurationParser {
+  private static final long NANOS_PER_SECOND = DurationFormatPlan.NANOS_PER_SECOND;
+  private static final int MAX_FRACTION_DIGITS = 18;
+  private static final long[] POWERS_OF_TEN = new long[MAX_FRACTION_DIGITS + 1];
+  static {
+    long power = 1;
+    for (int i = 0; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = power;
+      power *= 10;
+    }
+  }
+
+  private static final String VALUE_TOO_LARGE = "Value is too large to be a Duration";
+
+  private final DurationFormat format;
+
+  // Units in descending order. Parts must use units with increasing indexes in this array.
+  private final transient ChronoUnit[] unitsInDescOrder;
+  private final transient long[] unitSeconds;
+  private final transient long[] unitNanoAdjustments;
+  // The total length of each unit in nanoseconds, or -1 if that doesn't fit in a long.
+  private final transient long[] unitTotalNanos;
+  private final transient SuffixTrie suffixes;
+  private final transient String partDelimiter;
+
+  private final transient char zeroDigit;
+  private final transient String groupingSeparator;
+  private final transient boolean groupingUsed;
+  private final transient String decimalSeparator;
+  private final transient String positivePrefix;
+  private final transient String positiveSuffix;
+  private final transient String negativePrefix;
+  private final transient String negativeSuffix;
+
+  /**
+   * Create a DurationParser.
+   *
+   * @param format The formatting rules that were used to format the text to be parsed.
+   * @throws IllegalArgumentException if the format's NumberFormat is not a {@link DecimalFormat},
+   *         or is a DecimalFormat that uses a multiplier (such as a percent format) or exponential
+   *         notation.
+   */
+  public DurationParser(DurationFormat format) {
+    this(format, UnaryOperator.identity());
+  }
+
+  /**
+   * Create a DurationParser for UTF-8 encoded text that is viewed as chars with one char per byte,
+   * as if it had been decoded as ISO-8859-1. This allows encoded text to be parsed without decoding
+   * it.
+   *
+   * @param format The formatting rules that were used to format the text to be parsed.
+   * @throws IllegalArgumentException if the format's NumberFormat cannot be parsed (see
+   *         {@link #DurationParser(DurationFormat)}), or does not use ASCII digits.
+   */
+  static DurationParser forUtf8Bytes(DurationFormat format) {
+    return new DurationParser(format, DurationParser::utf8BytesAsChars);
+  }
+
+  private static String utf8BytesAsChars(String text) {
+    return new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Create a DurationParser for text in which the suffixes, delimiter, and number symbols of the
+   * format have been encoded by {@code symbolEncoder}.
+   */
+  private DurationParser(DurationFormat format, UnaryOperator<String> symbolEncoder) {
+    this.format = requireNonNull(format);
+
+    List<ChronoUnit> units = format.units();
+    int numUnits = units.size();
+    this.unitsInDescOrder = new ChronoUnit[numUnits];
+    this.unitSeconds = new long[numUnits];
+    this.unitNanoAdjustments = new long[numUnits];
+    this.unitTotalNanos = new long[numUnits];
+    for (int i = 0; i < numUnits; i++) {
+      ChronoUnit unit = units.get(numUnits - 1 - i);
+      Duration unitDuration = unit.getDuration();
+      unitsInDescOrder[i] = unit;
+      unitSeconds[i] = unitDuration.getSeconds();
+      unitNanoAdjustments[i] = unitDuration.getNano();
+      BigInteger totalNanos = DurationFormatPlan.wholeDurationAsNanos(unitDuration);
+      unitTotalNanos[i] = totalNanos.bitLength() < Long.SIZE ? totalNanos.longValue() : -1;
+    }
+    this.suffixes =
+        buildSuffixTrie(format.unitSuffixProvider(), unitsInDescOrder, symbolEncoder);
+    this.partDelimiter = symbolEncoder.apply(format.partDelimiter());
+
+    NumberFormat numberFormat = format.numberFormat();
+    if (!(numberFormat instanceof DecimalFormat)) {
+      throw new IllegalArgumentException(
+          "Only DecimalFormat number formats can be parsed. Got: " + numberFormat.getClass());
+    }
+    DecimalFormat decimalFormat = (DecimalFormat) numberFormat;
+    if (decimalFormat.getMultiplier() != 1 || decimalFormat.toPattern().indexOf('E') >= 0) {
+      throw new IllegalArgumentException("Number formats that use a multiplier or exponential "
+          + "notation cannot be parsed. Got: " + decimalFormat.toPattern());
+    }
+    DecimalFormatSymbols symbols = decimalFormat.getDecimalFormatSymbols();
+    String encodedZeroDigit = symbolEncoder.apply(String.valueOf(symbols.getZeroDigit()));
+    if (encodedZeroDigit.length() != 1) {
+      throw new IllegalArgumentException(
+          "Only number formats that use ASCII digits can be parsed from bytes.");
+    }
+    this.zeroDigit = encodedZeroDigit.charAt(0);
+    this.groupingSeparator =
+        symbolEncoder.apply(String.valueOf(symbols.getGroupingSeparator()));
+    this.groupingUsed = decimalFormat.isGroupingUsed();
+    this.decimalSeparator = symbolEncoder.apply(String.valueOf(symbols.getDecimalSeparator()));
+    this.positivePrefix = symbolEncoder.apply(decimalFormat.getPositivePrefix());
+    this.positiveSuffix = symbolEncoder.apply(decimalFormat.getPositiveSuffix());
+    this.negativePrefix = symbolEncoder.apply(decimalFormat.getNegativePrefix());
+    this.negativeSuffix = symbolEncoder.apply(decimalFormat.getNegativeSuffix());
+  }
+
+  private static SuffixTrie buildSuffixTrie(UnitSuffixProvider suffixProvider,
+      ChronoUnit[] unitsInDescOrder, UnaryOperator<String> symbolEncoder) {
+    // Map each suffix to the indexes of the units that use it, in ascending order.
+    Map<String, List<Integer>> unitIndexesBySuffix = new LinkedHashMap<>();
+    for (int i = 0; i < unitsInDescOrder.length; i++) {
+      ChronoUnit unit = unitsInDescOrder[i];
+      for (String suffix : UnitSuffixProviders.probeSuffixes(suffixProvider, unit)) {
+        List<Integer> unitIndexes = unitIndexesBySuffix
+            .computeIfAbsent(symbolEncoder.apply(suffix), k -> new ArrayList<>());
+        if (!unitIndexes.contains(i)) {
+          unitIndexes.add(i);
+        }
+      }
+    }
+
+    // Assign node numbers in order of creation, with the root as node 0.
+    List<TreeMap<Character, Integer>> childrenByNode = new ArrayList<>();
+    List<int[]> unitIndexesByNode = new ArrayList<>();
+    childrenByNode.add(new TreeMap<>());
+    unitIndexesByNode.add(null);
+    for (Map.Entry<String, List<Integer>> entry : unitIndexesBySuffix.entrySet()) {
+      int node = 0;
+      for (char c : entry.getKey().toCharArray()) {
+        Integer child = childrenByNode.get(node).get(c);
+        if (child == null) {
+          child = childrenByNode.size();
+          childrenByNode.get(node).put(c, child);
+          childrenByNode.add(new TreeMap<>());
+          unitIndexesByNode.add(null);
+        }
+        node = child;
+      }
+      unitIndexesByNode.set(node, entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    int numNodes = childrenByNode.size();
+    char[][] keys = new char[numNodes][];
+    int[][] children = new int[numNodes][];
+    for (int node = 0; node < numNodes; node++) {
+      TreeMap<Character, Integer> nodeChildren = childrenByNode.get(node);
+      keys[node] = new char[nodeChildren.size()];
+      children[node] = new int[nodeChildren.size()];
+      int i = 0;
+      for (Map.Entry<Character, Integer> child : nodeChildren.entrySet()) {
+        keys[node][i] = child.getKey();
+        children[node][i] = child.getValue();
+        i++;
+      }
+    }
+    return new SuffixTrie(keys, children, unitIndexesByNode.toArray(new int[numNodes][]));
+  }
+
+  /**
+   * A trie of unit suffixes, stored as arrays indexed by node number. The root is node 0, and the
+   * children of each node are ordered by char.
+   */
+  @Immutable
+  private static final class SuffixTrie {
+    static final int ROOT = 0;
+
+    private final char[][] keys;
+    private final int[][] children;
+    // The indexes of units that have the suffix ending at each node, or null if there are none.
+    private final int[][] unitIndexes;
+
+    SuffixTrie(char[][] keys, int[][] children, int[][] unitIndexes) {
+      this.keys = keys;
+      this.children = children;
+      this.unitIndexes = unitIndexes;
+    }
+
+    /** Get the child of a node for the specified char, or -1 if there is no such child. */
+    int child(int node, char c) {
+      int index = Arrays.binarySearch(keys[node], c);
+      return index >= 0 ? children[node][index] : -1;
+    }
+
+    int[] unitIndexes(int node) {
+      return unitIndexes[node];
+    }
+  }
+
+  /**
+   * A Duration that is being parsed, as seconds and nanoseconds that have the same sign. (Unlike
+   * Duration, this allows a negative value to be accumulated without its magnitude overflowing.)
+   * <p>
+   * If the text cannot be parsed, the reason is recorded here rather than thrown, so that callers
+   * that are searching for Durations in larger amounts of text don't pay for an exception at every
+   * position that doesn't contain a Duration.
+   */
+  static final class ParsedValue {
+    boolean negative;
+    long seconds;
+    long nanos;
+
+    // The end of the last complete part, and the value at that point.
+    private int lastPartEnd;
+    private long secondsAtLastPartEnd;
+    private long nanosAtLastPartEnd;
+
+    private String errorMessage;
+    private String errorExpectedText;
+    private int errorIndex;
+    private ArithmeticException errorCause;
+
+    void reset() {
+      negative = false;
+      seconds = 0;
+      nanos = 0;
+      lastPartEnd = -1;
+      errorMessage = null;
+      errorExpectedText = null;
+      errorCause = null;
+    }
+
+    void addNanos(long nanosToAdd) {
+      nanos += nanosToAdd;
+      seconds = Math.addExact(seconds, nanos / NANOS_PER_SECOND);
+      nanos = nanos % NANOS_PER_SECOND;
+    }
+
+    void markPartEnd(int pos) {
+      lastPartEnd = pos;
+      secondsAtLastPartEnd = seconds;
+      nanosAtLastPartEnd = nanos;
+    }
+
+    /**
+     * Return to the value as of the end of the last complete part, if there is one.
+     *
+     * @return The index after the last complete part, or -1 if no part was completed.
+     */
+    int restoreLastPart() {
+      seconds = secondsAtLastPartEnd;
+      nanos = nanosAtLastPartEnd;
+      return lastPartEnd;
+    }
+
+    /**
+     * Get the number of nanoseconds in this value.
+     *
+     * @throws ArithmeticException if the number of nanoseconds does not fit in a long.
+     */
+    long toNanos() {
+      return Math.addExact(Math.multiplyExact(seconds, NANOS_PER_SECOND), nanos);
+    }
+
+    DateTimeParseException toException(CharSequence text) {
+      String message = errorExpectedText == null ? errorMessage
+          : errorMessage + " '" + errorExpectedText + "'";
+      return new DateTimeParseException(message, text, errorIndex, errorCause);
+    }
+  }
+
+  /**
+   * Parse text representing a Duration.
+   *
+   * @param text The text to parse.
+   * @return The Duration that the text represents.
+   * @throws DateTimeParseException if the text cannot be parsed.
+   */
+  public Duration parse(CharSequence text) {
+    return parse(text, 0, text.length());
+  }
+
+  /**
+   * Parse a region of text representing a Duration.
+   *
+   * @param text The text containing the region to parse.
+   * @param start The index of the first char of the region.
+   * @param end The index after the last char of the region.
+   * @return The Duration that the region of text represents.
+   * @throws DateTimeParseException if the region of text cannot be parsed.
+   * @throws IndexOutOfBoundsException if the region is not within the text.
+   */
+  public Duration parse(CharSequence text, int start, int end) {
+    ParsedValue value = parseRegion(text, start, end);
+    try {
+      return Duration.ofSeconds(value.seconds, value.nanos);
+    } catch (ArithmeticException e) {
+      throw new DateTimeParseException(VALUE_TOO_LARGE, text, start, e);
+    }
+  }
+
+  /**
+   * Parse text representing a Duration, returning the number of nanoseconds in the Duration.
+   *
+   * @param text The text to parse.
+   * @return The number of nanoseconds that the text represents.
+   * @throws DateTimeParseException if the text cannot be parsed.
+   * @throws ArithmeticException if the number of nanoseconds does not fit in a long.
+   */
+  public long parseNanos(CharSequence text) {
+    return parseNanos(text, 0, text.length());
+  }
+
+  /**
+   * Parse a region of text representing a Duration, returning the number of nanoseconds in the
+   * Duration.
+   *
+   * @param text The text containing the region to parse.
+   * @param start The index of the first char of the region.
+   * @param end The index after the last char of the region.
+   * @return The number of nanoseconds that the region of text represents.
+   * @throws DateTimeParseException if the region of text cannot be parsed.
+   * @throws ArithmeticException if the number of nanoseconds does not fit in a long.
+   * @throws IndexOutOfBoundsException if the region is not within the text.
+   */
+  public long parseNanos(CharSequence text, int start, int end) {
+    return parseRegion(text, start, end).toNanos();
+  }
+
+  private ParsedValue parseRegion(CharSequence text, int start, int end) {
+    requireNonNull(text);
+    checkPositionIndexes(start, end, text.length());
+    ParsedValue value = new ParsedValue();
+    if (parseParts(text, start, end, false, value) < 0) {
+      throw value.toException(text);
+    }
+    return value;
+  }
+
+  /**
+   * Parse the parts of a Duration, starting at {@code start}.
+   *
+   * @param text The text containing the Duration.
+   * @param start The index of the first char of the Duration.
+   * @param end The index after the last char that may be parsed.
+   * @param allowTrailingText If true, parsing stops after the last part that is complete and
+   *        correctly delimited, and any text following it is ignored. If false, the Duration must
+   *        end at {@code end}.
+   * @param value The object that will hold the parsed value, or the reason that parsing failed.
+   * @return The index after the last char of the Duration, or -1 if no Duration could be parsed.
+   */
+  int parseParts(CharSequence text, int start, int end, boolean allowTrailingText,
+      ParsedValue value) {
+    value.reset();
+    int pos = start;
+    int previousUnitIndex = -1;
+
+    while (true) {
+      boolean isFirstPart = previousUnitIndex < 0;
+      boolean negativePart = false;
+      if (isFirstPart && !negativePrefix.isEmpty()
+          && regionMatches(text, pos, end, negativePrefix)) {
+        negativePart = true;
+        value.negative = true;
+        pos += negativePrefix.length();
+      } else if (regionMatches(text, pos, end, positivePrefix)) {
+        pos += positivePrefix.length();
+      }
+
+      // Integer digits, possibly with grouping separators between them. Like Long#parseLong, this
+      // accumulates the negated quantity, since Long.MIN_VALUE has no positive counterpart. A
+      // quantity that doesn't fit in a long (such as a large number of milliseconds) is parsed
+      // again once its unit is known.
+      int digitsStart = pos;
+      int numDigits = 0;
+      long negatedQuantity = 0;
+      boolean quantityFitsInLong = true;
+      while (pos < end) {
+        int digit = digitValue(text.charAt(pos));
+        if (digit >= 0) {
+          if (negatedQuantity < (Long.MIN_VALUE + digit) / 10
+              || (!value.negative && negatedQuantity * 10 - digit == Long.MIN_VALUE)) {
+            quantityFitsInLong = false;
+          }
+          negatedQuantity = negatedQuantity * 10 - digit;
+          numDigits++;
+          pos++;
+        } else if (groupingUsed && numDigits > 0 && isSeparatorBeforeDigit(text, pos, end,
+            groupingSeparator)) {
+          pos += groupingSeparator.length();
+        } else {
+          break;
+        }
+      }
+      if (numDigits == 0) {
+        return fail(value, allowTrailingText, "Expected a number", null, pos, null);
+      }
+      int digitsEnd = pos;
+
+      // Fraction digits.
+      int numFractionDigits = 0;
+      long fraction = 0;
+      if (isSeparatorBeforeDigit(text, pos, end, decimalSeparator)) {
+        pos += decimalSeparator.length();
+        int digit;
+        while (pos < end && (digit = digitValue(text.charAt(pos))) >= 0) {
+          if (numFractionDigits < MAX_FRACTION_DIGITS) {
+            fraction = fraction * 10 + digit;
+            numFractionDigits++;
+          }
+          pos++;
+        }
+      }
+
+      String numberSuffix = negativePart ? negativeSuffix : positiveSuffix;
+      if (!regionMatches(text, pos, end, numberSuffix)) {
+        return fail(value, allowTrailingText, "Expected", numberSuffix, pos, null);
+      }
+      pos += numberSuffix.length();
+
+      // Find the longest unit suffix, then the unit that it refers to.
+      int suffixStart = pos;
+      int node = SuffixTrie.ROOT;
+      int[] matchedUnitIndexes = suffixes.unitIndexes(node);
+      int matchEnd = pos;
+      for (int i = pos; i < end && (node = suffixes.child(node, text.charAt(i))) >= 0; i++) {
+        if (suffixes.unitIndexes(node) != null) {
+          matchedUnitIndexes = suffixes.unitIndexes(node);
+          matchEnd = i + 1;
+        }
+      }
+      if (matchedUnitIndexes == null) {
+        return fail(value, allowTrailingText, "Expected a unit suffix", null, suffixStart, null);
+      }
+      int unitIndex = -1;
+      for (int candidate : matchedUnitIndexes) {
+        if (candidate > previousUnitIndex) {
+          unitIndex = candidate;
+          break;
+        }
+      }
+      if (unitIndex < 0) {
+        return fail(value, allowTrailingText, "Units must be in descending order", null,
+            suffixStart, null);
+      }
+      pos = matchEnd;
+
+      try {
+        if (quantityFitsInLong) {
+          addQuantity(value, unitIndex, value.negative ? negatedQuantity : -negatedQuantity);
+        } else {
+          addLargeQuantity(value, unitIndex, text, digitsStart, digitsEnd);
+        }
+        if (numFractionDigits > 0) {
+          addFraction(value, unitIndex, fraction, numFractionDigits);
+        }
+      } catch (ArithmeticException e) {
+        return fail(value, allowTrailingText, VALUE_TOO_LARGE, null, start, e);
+      }
+      previousUnitIndex = unitIndex;
+      value.markPartEnd(pos);
+
+      if (pos == end) {
+        return pos;
+      }
+      if (numFractionDigits > 0) {
+        return fail(value, allowTrailingText, "Only the last part may have a fraction", null, pos,
+            null);
+      }
+      if (!regionMatches(text, pos, end, partDelimiter)) {
+        return fail(value, allowTrailingText, "Expected", partDelimiter, pos, null);
+      }
+      pos += partDelimiter.length();
+    }
+  }
+
+  /**
+   * Handle text that cannot be parsed as the next part of a Duration.
+   *
+   * @return The index after the last complete part if trailing text is allowed and there is a
+   *         complete part; otherwise -1, with the reason recorded in {@code value}.
+   */
+  private static int fail(ParsedValue value, boolean allowTrailingText, String message,
+      String expectedText, int index, ArithmeticException cause) {
+    if (allowTrailingText) {
+      int lastPartEnd = value.restoreLastPart();
+      if (lastPartEnd >= 0) {
+        return lastPartEnd;
+      }
+    }
+    value.errorMessage = message;
+    value.errorExpectedText = expectedText;
+    value.errorIndex = index;
+    value.errorCause = cause;
+    return -1;
+  }
+
+  /**
+   * Determine whether a char could be the first char of a Duration, for callers that are searching
+   * for Durations in larger amounts of text.
+   */
+  boolean mayStartDuration(char c) {
+    return digitValue(c) >= 0
+        || (!negativePrefix.isEmpty() && c == negativePrefix.charAt(0))
+        || (!positivePrefix.isEmpty() && c == positivePrefix.charAt(0));
+  }
+
+  private boolean isSeparatorBeforeDigit(CharSequence text, int pos, int end, String separator) {
+    int digitPos = pos + separator.length();
+    return digitPos < end && regionMatches(text, pos, end, separator)
+        && digitValue(text.charAt(digitPos)) >= 0;
+  }
+
+  /** Add a quantity of a unit, which must have the same sign as the value. */
+  private void addQuantity(ParsedValue value, int unitIndex, long quantity) {
+    long seconds = Math.multiplyExact(quantity, unitSeconds[unitIndex]);
+    value.seconds = Math.addExact(value.seconds, seconds);
+    long nanoAdjustment = unitNanoAdjustments[unitIndex];
+    if (nanoAdjustment != 0) {
+      long perSecond = NANOS_PER_SECOND / nanoAdjustment;
+      if (perSecond * nanoAdjustment == NANOS_PER_SECOND) {
+        // Avoid overflow for large quantities of a sub-second unit.
+        value.seconds = Math.addExact(value.seconds, quantity / perSecond);
+        value.addNanos((quantity % perSecond) * nanoAdjustment);
+      } else {
+        long nanos = Math.multiplyExact(quantity, nanoAdjustment);
+        value.seconds = Math.addExact(value.seconds, nanos / NANOS_PER_SECOND);
+        value.addNanos(nanos % NANOS_PER_SECOND);
+      }
+    }
+  }
+
+  /**
+   * Add a quantity of a unit that is too large to fit in a long, by parsing its digits again and
+   * accumulating the quantity as seconds and nanoseconds. The chars between the digits are grouping
+   * separators, which are skipped.
+   *
+   * @throws ArithmeticException if the number of seconds does not fit in a long.
+   */
+  private void addLargeQuantity(ParsedValue value, int unitIndex, CharSequence text,
+      int digitsStart, int digitsEnd) {
+    // Accumulate with the sign of the value, since Long.MIN_VALUE seconds has no positive
+    // counterpart.
+    long sign = value.negative ? -1 : 1;
+    long unitSecs = unitSeconds[unitIndex];
+    long unitNanos = unitNanoAdjustments[unitIndex];
+    long seconds = 0;
+    long nanos = 0;
+    for (int i = digitsStart; i < digitsEnd; i++) {
+      int digit = digitValue(text.charAt(i));
+      if (digit >= 0) {
+        // |nanos| < 10^9 and unitNanos < 10^9, so this can't overflow.
+        nanos = nanos * 10 + sign * digit * unitNanos;
+        seconds = Math.addExact(Math.multiplyExact(seconds, 10),
+            Math.addExact(Math.multiplyExact(sign * digit, unitSecs), nanos / NANOS_PER_SECOND));
+        nanos = nanos % NANOS_PER_SECOND;
+      }
+    }
+    value.seconds = Math.addExact(value.seconds, seconds);
+    value.addNanos(nanos);
+  }
+
+  private void addFraction(ParsedValue value, int unitIndex, long fraction,
+      int numFractionDigits) {
+    long divisor = POWERS_OF_TEN[numFractionDigits];
+    long unitNanos = unitTotalNanos[unitIndex];
+    if (unitNanos >= 0 && unitNanos <= Long.MAX_VALUE / divisor) {
+      // Since fraction < divisor, this product can't overflow.
+      long product = unitNanos * fraction;
+      long nanos = product / divisor;
+      long remainder = product % divisor;
+      // 2 * remainder < 2 * 10^18, which fits in a long.
+      if (remainder * 2 > divisor || (remainder * 2 == divisor && (nanos & 1) == 1)) {
+        nanos++;
+      }
+      value.addNanos(value.negative ? -nanos : nanos);
+      return;
+    }
+    BigInteger nanos = new BigDecimal(DurationFormatPlan.wholeDurationAsNanos(
+        unitsInDescOrder[unitIndex].getDuration()))
+            .multiply(BigDecimal.valueOf(fraction, numFractionDigits))
+            .setScale(0, RoundingMode.HALF_EVEN).toBigIntegerExact();
+    if (value.negative) {
+      nanos = nanos.negate();
+    }
+    BigInteger[] secondsAndNanos = nanos.divideAndRemainder(BigInteger.valueOf(NANOS_PER_SECOND));
+    value.seconds = Math.addExact(value.seconds, secondsAndNanos[0].longValueExact());
+    value.addNanos(secondsAndNanos[1].longValue());
+  }
+
+  private int digitValue(char c) {
+    int digit = c - zeroDigit;
+    if (digit >= 0 && digit <= 9) {
+      return digit;
+    }
+    digit = c - '0';
+    return (digit >= 0 && digit <= 9) ? digit : -1;
+  }
+
+  private static boolean regionMatches(CharSequence text, int pos, int end, String expected) {
+    int length = expected.length();
+    if (end - pos < length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (text.charAt(pos + i) != expected.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(format);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (other == this) {
+      return true;
+    }
+    if (!(other instanceof DurationParser)) {
+      return false;
+    }
+    DurationParser otherParser = (DurationParser) other;
+    return Objects.equals(otherParser.format, format);
+  }
+}
@@ -0,0 +1,73 @@
+package com.pervasivecode.utils.time;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Receives the parts of a Duration as {@link DurationFormatter} splits it up, in order from the
+ * largest unit to the smallest, so that the same decomposition can be written as text or captured
+ * as a {@link FormattedDuration}.
+ * <p>
+ * Part values are given as a sign and a magnitude that is split into a high part and a low part
+ * (see {@link DigitEmitter#toBigDecimal(long, long, int)}). Only the first part can be negative.
+ */
+interface DurationPartWriter {
+  /**
+   * Write a Duration whose value is zero, or which rounds to zero.
+   *
+   * @param unit The unit in which zero values are written.
+   * @param out The Appendable passed to the formatter, if any.
+   * @throws IOException if the Appendable throws an IOException.
+   */
+  void writeZero(ChronoUnit unit, Appendable out) throws IOException;
+
+  /**
+   * Write a part whose value is an integer.
+   *
+   * @param unit The unit of the part.
+   * @param negative Whether the part is negative.
+   * @param high The magnitude divided by ten to the power of {@code numLowDigits}, as an unsigned
+   *        long.
+   * @param low The rest of the magnitude.
+   * @param numLowDigits The number of decimal digits in the low part.
+   * @param isFirstPart Whether this is the first part.
+   * @param out The Appendable passed to the formatter, if any.
+   * @throws IOException if the Appendable throws an IOException.
+   */
+  void writeInteger(ChronoUnit unit, boolean negative, long high, long low, int numLowDigits,
+      boolean isFirstPart, Appendable out) throws IOException;
+
+  /**
+   * Write the last part, which has been rounded to {@code numFractionDigits} fraction digits.
+   *
+   * @param unit The unit of the part.
+   * @param negative Whether the part is negative.
+   * @param high The integer part of the magnitude divided by ten to the power of
+   *        {@code numLowDigits}, as an unsigned long.
+   * @param low The rest of the integer part of the magnitude.
+   * @param numLowDigits The number of decimal digits in the low part.
+   * @param scaledFraction The fraction part of the magnitude, multiplied by ten to the power of
+   *        {@code numFractionDigits}.
+   * @param numFractionDigits The number of fraction digits the part was rounded to.
+   * @param isFirstPart Whether this is the first part.
+   * @param out The Appendable passed to the formatter, if any.
+   * @throws IOException if the Appendable throws an IOException.
+   */
+  void writeDecimal(ChronoUnit unit, boolean negative, long high, long low, int numLowDigits,
+      long scaledFraction, int numFractionDigits, boolean isFirstPart, Appendable out)
+      throws IOException;
+
+  /**
+   * Write the last part, which has been rounded to more fraction digits than fit in a long, or
+   * which is in a unit that is too large to divide using long arithmetic.
+   *
+   * @param unit The unit of the part.
+   * @param roundedValue The value of the part, including its sign.
+   * @param isFirstPart Whether this is the first part.
+   * @param out The Appendable passed to the formatter, if any.
+   * @throws IOException if the Appendable throws an IOException.
+   */
+  void writeBigDecimal(ChronoUnit unit, BigDecimal roundedValue, boolean isFirstPart,
+      Appendable out) throws IOException;
+}
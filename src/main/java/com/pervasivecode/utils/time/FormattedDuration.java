@@ -0,0 +1,227 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * The parts of a {@link Duration}, as a {@link DurationFormatter} would format it, without the
+ * text: a sign, and a sequence of parts, each of which is a {@link ChronoUnit} and a value.
+ * <p>
+ * The parts follow the same rules as {@link DurationFormatter#format(Duration)}: leading and
+ * trailing parts with a value of zero are left out, only the last part can have a fraction, and
+ * only the first part of a negative Duration is negative. Part values are magnitudes, so a
+ * formatted value of "-1m 30s" has the parts (MINUTES, 1) and (SECONDS, 30), and
+ * {@link #isNegative()} returns true. A Duration that is zero (or that rounds to zero) has a single
+ * part in the {@link DurationFormat#unitForZeroDuration() unitForZeroDuration}, with a value of
+ * zero.
+ * <p>
+ * This is meant for serializers that write the numbers themselves, along with suffixes or unit
+ * codes that they have cached. Instances can be reused for any number of Durations, so that
+ * filling them in does not create any objects.
+ * <p>
+ * Instances are mutable and not thread-safe.
+ */
+@NotThreadSafe
+public final class FormattedDuration {
+  private static final int MAX_PARTS = ChronoUnit.values().length;
+
+  private final ChronoUnit[] units = new ChronoUnit[MAX_PARTS];
+  private final long[] highs = new long[MAX_PARTS];
+  private final long[] lows = new long[MAX_PARTS];
+  private final int[] numLowDigits = new int[MAX_PARTS];
+  private final DurationPartWriter writer = new PartCollector();
+  private int numParts = 0;
+  private boolean negative = false;
+  private long scaledFraction = 0;
+  private int numFractionDigits = 0;
+  // Only used for a last part that was rounded using BigDecimal arithmetic.
+  private BigDecimal bigLastPartMagnitude = null;
+
+  /** Create an empty FormattedDuration, to be filled in by a {@link DurationFormatter}. */
+  public FormattedDuration() {}
+
+  /**
+   * Determine whether the formatted value is negative. If so, the first part is negative, and the
+   * rest are positive.
+   *
+   * @return True if the formatted value is negative.
+   */
+  public boolean isNegative() {
+    return negative;
+  }
+
+  /**
+   * Get the number of parts in the formatted value.
+   *
+   * @return The number of parts.
+   */
+  public int numParts() {
+    return numParts;
+  }
+
+  /**
+   * Get the unit of a part.
+   *
+   * @param index The index of the part, where the part with the largest unit is at index 0.
+   * @return The unit of the part.
+   * @throws IndexOutOfBoundsException if there is no part at the specified index.
+   */
+  public ChronoUnit unit(int index) {
+    checkElementIndex(index, numParts);
+    return units[index];
+  }
+
+  /**
+   * Get the integer value of a part. For the last part, this does not include its fraction.
+   *
+   * @param index The index of the part, where the part with the largest unit is at index 0.
+   * @return The magnitude of the integer value of the part.
+   * @throws IndexOutOfBoundsException if there is no part at the specified index.
+   * @throws ArithmeticException if the value is too large to be represented as a long. (See
+   *         {@link #bigValue(int)}.)
+   */
+  public long value(int index) {
+    checkElementIndex(index, numParts);
+    if (isBigLastPart(index)) {
+      return bigLastPartMagnitude.setScale(0, RoundingMode.DOWN).longValueExact();
+    }
+    long high = highs[index];
+    if (high < 0) {
+      // An unsigned value of at least 2^63.
+      throw new ArithmeticException("Part value is too large for a long");
+    }
+    if (numLowDigits[index] == 0) {
+      return high;
+    }
+    return Math.addExact(
+        Math.multiplyExact(high, DigitEmitter.powerOfTen(numLowDigits[index])), lows[index]);
+  }
+
+  /**
+   * Get the value of a part as a BigDecimal, including the fraction of the last part.
+   *
+   * @param index The index of the part, where the part with the largest unit is at index 0.
+   * @return The magnitude of the value of the part.
+   * @throws IndexOutOfBoundsException if there is no part at the specified index.
+   */
+  public BigDecimal bigValue(int index) {
+    checkElementIndex(index, numParts);
+    if (isBigLastPart(index)) {
+      return bigLastPartMagnitude;
+    }
+    BigDecimal value = DigitEmitter.toBigDecimal(highs[index], lows[index], numLowDigits[index]);
+    if (index == numParts - 1 && numFractionDigits > 0) {
+      value = value.add(BigDecimal.valueOf(scaledFraction, numFractionDigits));
+    }
+    return value;
+  }
+
+  /**
+   * Get the fraction of the last part, which was rounded to {@link #numFractionDigits()} digits, as
+   * an integer. For example, with three fraction digits, a last part of 1.25 seconds has a fraction
+   * of 250.
+   *
+   * @return The fraction of the last part, multiplied by ten to the power of
+   *         {@link #numFractionDigits()}.
+   * @throws ArithmeticException if the fraction has too many digits to be represented as a long.
+   *         (See {@link #bigValue(int)}.)
+   */
+  public long fraction() {
+    if (bigLastPartMagnitude != null) {
+      return bigLastPartMagnitude.remainder(BigDecimal.ONE).movePointRight(numFractionDigits)
+          .longValueExact();
+    }
+    return scaledFraction;
+  }
+
+  /**
+   * Get the number of fraction digits to which the last part was rounded. This is zero if the last
+   * part is not a fraction, since it was truncated or since it is not the smallest unit.
+   *
+   * @return The number of digits in {@link #fraction()}.
+   */
+  public int numFractionDigits() {
+    return numFractionDigits;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("FormattedDuration{");
+    if (negative) {
+      sb.append('-');
+    }
+    for (int i = 0; i < numParts; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      sb.append(bigValue(i).toPlainString()).append(' ').append(units[i]);
+    }
+    return sb.append('}').toString();
+  }
+
+  /** Get the writer that DurationFormatter uses to fill in this instance. */
+  DurationPartWriter writer() {
+    return writer;
+  }
+
+  /** Remove all parts, so that a DurationFormatter can fill in this instance again. */
+  void reset() {
+    numParts = 0;
+    negative = false;
+    scaledFraction = 0;
+    numFractionDigits = 0;
+    bigLastPartMagnitude = null;
+  }
+
+  private boolean isBigLastPart(int index) {
+    return bigLastPartMagnitude != null && index == numParts - 1;
+  }
+
+  private void addPart(ChronoUnit unit, boolean negativePart, long high, long low,
+      int numLowDigitsOfPart, boolean isFirstPart) {
+    if (isFirstPart) {
+      negative = negativePart;
+    }
+    units[numParts] = unit;
+    highs[numParts] = high;
+    lows[numParts] = low;
+    numLowDigits[numParts] = numLowDigitsOfPart;
+    numParts++;
+  }
+
+  /** Adds the parts written by a DurationFormatter to the enclosing instance. */
+  private final class PartCollector implements DurationPartWriter {
+    @Override
+    public void writeZero(ChronoUnit unit, Appendable out) {
+      reset();
+      addPart(unit, false, 0, 0, 0, true);
+    }
+
+    @Override
+    public void writeInteger(ChronoUnit unit, boolean negativePart, long high, long low,
+        int numLowDigitsOfPart, boolean isFirstPart, Appendable out) {
+      addPart(unit, negativePart, high, low, numLowDigitsOfPart, isFirstPart);
+    }
+
+    @Override
+    public void writeDecimal(ChronoUnit unit, boolean negativePart, long high, long low,
+        int numLowDigitsOfPart, long scaledFractionOfPart, int numFractionDigitsOfPart,
+        boolean isFirstPart, Appendable out) {
+      addPart(unit, negativePart, high, low, numLowDigitsOfPart, isFirstPart);
+      scaledFraction = scaledFractionOfPart;
+      numFractionDigits = numFractionDigitsOfPart;
+    }
+
+    @Override
+    public void writeBigDecimal(ChronoUnit unit, BigDecimal roundedValue, boolean isFirstPart,
+        Appendable out) {
+      addPart(unit, roundedValue.signum() < 0, 0, 0, 0, isFirstPart);
+      bigLastPartMagnitude = roundedValue.abs();
+      numFractionDigits = roundedValue.scale();
+    }
+  }
+}
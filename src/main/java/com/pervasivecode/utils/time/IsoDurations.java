@@ -0,0 +1,492 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.util.Objects.requireNonNull;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Formatting and parsing of the ISO-8601 duration representation that {@link Duration#toString()}
+ * and {@link Duration#parse(CharSequence)} use, such as "PT1H10M0.5S".
+ * <p>
+ * Formatted values are the same as those of {@link Duration#toString()} (as of Java 9, which fixed
+ * the representation of some negative Durations that have a fraction of a second, such as
+ * "PT-59.999999999S"), and any text that {@link Duration#parse(CharSequence)} accepts is parsed to
+ * the same Duration. Unlike those methods, values are written directly into a StringBuilder or
+ * ByteBuffer using the same digit-writing code as {@link DurationFormatter}, and text is parsed in
+ * a single pass without using regular expressions or creating substrings.
+ */
+public final class IsoDurations {
+  private IsoDurations() {}
+
+  /**
+   * The maximum length of a formatted value, in chars or (since formatted values only contain ASCII
+   * chars) in bytes of UTF-8. The longest values look like
+   * "PT-2562047788015214H-59M-59.999999999S".
+   */
+  public static final int MAX_FORMATTED_LENGTH = 38;
+
+  private static final long NANOS_PER_SECOND = DurationFormatPlan.NANOS_PER_SECOND;
+  private static final long SECONDS_PER_MINUTE = 60;
+  private static final long SECONDS_PER_HOUR = 60 * SECONDS_PER_MINUTE;
+  private static final long SECONDS_PER_DAY = 24 * SECONDS_PER_HOUR;
+  private static final int NUM_FRACTION_DIGITS = 9;
+
+  private static final DigitEmitter DIGITS = new DigitEmitter(
+      new DecimalFormat("0", DecimalFormatSymbols.getInstance(Locale.ROOT)), NUM_FRACTION_DIGITS);
+
+  private static final String VALUE_TOO_LARGE = "Value is too large to be a Duration";
+
+  // The time units that can follow the 'T', in the order in which they must appear.
+  private static final int NO_TIME_UNIT = 0;
+  private static final int HOURS_UNIT = 1;
+  private static final int MINUTES_UNIT = 2;
+  private static final int SECONDS_UNIT = 3;
+
+  /**
+   * Format a Duration in the ISO-8601 representation that {@link Duration#toString()} uses.
+   *
+   * @param duration The Duration to format.
+   * @return The formatted representation of the Duration.
+   */
+  public static String format(Duration duration) {
+    return formatTo(duration, new StringBuilder(MAX_FORMATTED_LENGTH)).toString();
+  }
+
+  /**
+   * Format a Duration in the ISO-8601 representation, appending it to a StringBuilder.
+   *
+   * @param duration The Duration to format.
+   * @param out The StringBuilder to which the formatted representation will be appended.
+   * @return The same StringBuilder instance that was passed in as {@code out}.
+   */
+  public static StringBuilder formatTo(Duration duration, StringBuilder out) {
+    try {
+      appendTo(duration.getSeconds(), duration.getNano(), out);
+    } catch (IOException e) {
+      // StringBuilder#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Format a Duration in the ISO-8601 representation, writing it into a ByteBuffer as ASCII
+   * (which is also UTF-8) encoded bytes, without creating a String.
+   * <p>
+   * The formatted representation is written starting at the buffer's position, and the position is
+   * advanced past it. {@link #MAX_FORMATTED_LENGTH} bytes of space is always enough.
+   *
+   * @param duration The Duration to format.
+   * @param out The ByteBuffer into which the encoded bytes will be written.
+   * @return The same ByteBuffer instance that was passed in as {@code out}.
+   * @throws BufferOverflowException if there is not enough space remaining in the buffer. In this
+   *         case the buffer's position is not changed, though bytes after the position may have
+   *         been overwritten.
+   */
+  public static ByteBuffer formatTo(Duration duration, ByteBuffer out) {
+    return formatTo(duration.getSeconds(), duration.getNano(), out);
+  }
+
+  /**
+   * Format a number of nanoseconds in the ISO-8601 representation. This is the same as formatting
+   * {@code Duration.ofNanos(nanos)}.
+   *
+   * @param nanos The number of nanoseconds to format.
+   * @return The formatted representation of the number of nanoseconds.
+   */
+  public static String formatNanos(long nanos) {
+    return formatNanosTo(nanos, new StringBuilder(MAX_FORMATTED_LENGTH)).toString();
+  }
+
+  /**
+   * Format a number of nanoseconds in the ISO-8601 representation, appending it to a StringBuilder.
+   *
+   * @param nanos The number of nanoseconds to format.
+   * @param out The StringBuilder to which the formatted representation will be appended.
+   * @return The same StringBuilder instance that was passed in as {@code out}.
+   */
+  public static StringBuilder formatNanosTo(long nanos, StringBuilder out) {
+    try {
+      appendTo(Math.floorDiv(nanos, NANOS_PER_SECOND),
+          (int) Math.floorMod(nanos, NANOS_PER_SECOND), out);
+    } catch (IOException e) {
+      // StringBuilder#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Format a number of nanoseconds in the ISO-8601 representation, writing it into a ByteBuffer as
+   * ASCII encoded bytes, without creating a String.
+   *
+   * @param nanos The number of nanoseconds to format.
+   * @param out The ByteBuffer into which the encoded bytes will be written.
+   * @return The same ByteBuffer instance that was passed in as {@code out}.
+   * @throws BufferOverflowException if there is not enough space remaining in the buffer. In this
+   *         case the buffer's position is not changed, though bytes after the position may have
+   *         been overwritten.
+   * @see #formatTo(Duration, ByteBuffer)
+   */
+  public static ByteBuffer formatNanosTo(long nanos, ByteBuffer out) {
+    return formatTo(Math.floorDiv(nanos, NANOS_PER_SECOND),
+        (int) Math.floorMod(nanos, NANOS_PER_SECOND), out);
+  }
+
+  private static ByteBuffer formatTo(long seconds, int nanos, ByteBuffer out) {
+    int start = out.position();
+    try {
+      appendTo(seconds, nanos, new Utf8ByteBufferAppendable(out, ImmutableMap.of()));
+    } catch (BufferOverflowException e) {
+      out.position(start);
+      throw e;
+    } catch (IOException e) {
+      // Utf8ByteBufferAppendable#append never throws IOException.
+      throw new AssertionError(e);
+    }
+    return out;
+  }
+
+  /**
+   * Append the ISO-8601 representation of a Duration, the same way that {@link Duration#toString()}
+   * does: as hours, minutes, and seconds, each with the sign of the whole Duration, and with as
+   * many fraction digits as are needed.
+   */
+  private static void appendTo(long seconds, int nanos, Appendable out) throws IOException {
+    if (seconds == 0 && nanos == 0) {
+      out.append("PT0S");
+      return;
+    }
+    // A negative Duration with a fraction is written as a negative number of whole seconds and a
+    // negative fraction, so its whole seconds are one closer to zero than getSeconds().
+    boolean negativeWithFraction = seconds < 0 && nanos > 0;
+    long effectiveSeconds = negativeWithFraction ? seconds + 1 : seconds;
+    long hours = effectiveSeconds / SECONDS_PER_HOUR;
+    long minutes = (effectiveSeconds % SECONDS_PER_HOUR) / SECONDS_PER_MINUTE;
+    long secs = effectiveSeconds % SECONDS_PER_MINUTE;
+
+    out.append('P').append('T');
+    if (hours != 0) {
+      appendInteger(hours, out);
+      out.append('H');
+    }
+    if (minutes != 0) {
+      appendInteger(minutes, out);
+      out.append('M');
+    }
+    if (secs == 0 && nanos == 0) {
+      return;
+    }
+    if (nanos == 0) {
+      appendInteger(secs, out);
+    } else if (negativeWithFraction) {
+      out.append('-');
+      appendInteger(-secs, out);
+      appendFraction(NANOS_PER_SECOND - nanos, out);
+    } else {
+      appendInteger(secs, out);
+      appendFraction(nanos, out);
+    }
+    out.append('S');
+  }
+
+  private static void appendInteger(long value, Appendable out) throws IOException {
+    if (out instanceof StringBuilder) {
+      // StringBuilder#append(long) is faster than writing one digit at a time.
+      ((StringBuilder) out).append(value);
+    } else {
+      DIGITS.appendInteger(value < 0, 0, Math.abs(value), 0, out);
+    }
+  }
+
+  /** Append a nonzero fraction of a second, without trailing zeros. */
+  private static void appendFraction(long nanos, Appendable out) throws IOException {
+    long fraction = nanos;
+    int numDigits = NUM_FRACTION_DIGITS;
+    while (fraction % 10 == 0) {
+      fraction /= 10;
+      numDigits--;
+    }
+    out.append('.');
+    for (int i = numDigits - 1; i >= 0; i--) {
+      out.append((char) ('0' + (fraction / DigitEmitter.powerOfTen(i)) % 10));
+    }
+  }
+
+  /**
+   * Parse text in the ISO-8601 duration representation that {@link Duration#parse(CharSequence)}
+   * accepts, such as "PT1H10M0.5S" or "-P2DT-3M".
+   *
+   * @param text The text to parse.
+   * @return The Duration that the text represents.
+   * @throws DateTimeParseException if the text cannot be parsed.
+   */
+  public static Duration parse(CharSequence text) {
+    return parse(text, 0, text.length());
+  }
+
+  /**
+   * Parse a region of text in the ISO-8601 duration representation that
+   * {@link Duration#parse(CharSequence)} accepts.
+   *
+   * @param text The text containing the region to parse.
+   * @param start The index of the first char of the region.
+   * @param end The index after the last char of the region.
+   * @return The Duration that the region of text represents.
+   * @throws DateTimeParseException if the region of text cannot be parsed.
+   * @throws IndexOutOfBoundsException if the region is not within the text.
+   */
+  public static Duration parse(CharSequence text, int start, int end) {
+    long seconds = parseSeconds(text, start, end);
+    try {
+      Duration duration = Duration.ofSeconds(seconds, fractionNanos(text, start, end));
+      return text.charAt(start) == '-' ? duration.negated() : duration;
+    } catch (ArithmeticException e) {
+      throw new DateTimeParseException(VALUE_TOO_LARGE, text, start, e);
+    }
+  }
+
+  /**
+   * Parse text in the ISO-8601 duration representation, returning the number of nanoseconds in the
+   * Duration.
+   *
+   * @param text The text to parse.
+   * @return The number of nanoseconds that the text represents.
+   * @throws DateTimeParseException if the text cannot be parsed.
+   * @throws ArithmeticException if the number of nanoseconds does not fit in a long.
+   */
+  public static long parseNanos(CharSequence text) {
+    return parseNanos(text, 0, text.length());
+  }
+
+  /**
+   * Parse a region of text in the ISO-8601 duration representation, returning the number of
+   * nanoseconds in the Duration.
+   *
+   * @param text The text containing the region to parse.
+   * @param start The index of the first char of the region.
+   * @param end The index after the last char of the region.
+   * @return The number of nanoseconds that the region of text represents.
+   * @throws DateTimeParseException if the region of text cannot be parsed.
+   * @throws ArithmeticException if the number of nanoseconds does not fit in a long.
+   * @throws IndexOutOfBoundsException if the region is not within the text.
+   */
+  public static long parseNanos(CharSequence text, int start, int end) {
+    long seconds = parseSeconds(text, start, end);
+    long nanos = Math.addExact(Math.multiplyExact(seconds, NANOS_PER_SECOND),
+        fractionNanos(text, start, end));
+    return text.charAt(start) == '-' ? Math.negateExact(nanos) : nanos;
+  }
+
+  /**
+   * Parse a region of text the way that {@link Duration#parse(CharSequence)} does: an optional sign
+   * and a 'P', then an optional number of days, then a 'T' followed by at least one of hours,
+   * minutes, and seconds (in that order), each of which may have its own sign. Only the seconds
+   * may have a fraction, of up to 9 digits. Letters may be upper or lower case.
+   * <p>
+   * The sign before the 'P' and the fraction are not included in the result, so that no object is
+   * needed to hold the parts of the value. (See {@link #fractionNanos(CharSequence, int, int)}.)
+   *
+   * @return The sum of the days, hours, minutes, and whole seconds, in seconds.
+   */
+  private static long parseSeconds(CharSequence text, int start, int end) {
+    requireNonNull(text);
+    checkPositionIndexes(start, end, text.length());
+    int pos = start;
+    if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+      pos++;
+    }
+    if (!isLetter(text, pos, end, 'P')) {
+      throw new DateTimeParseException("Expected 'P'", text, pos);
+    }
+    pos++;
+
+    long daysAsSeconds = 0;
+    long hoursAsSeconds = 0;
+    long minutesAsSeconds = 0;
+    long seconds = 0;
+    boolean hasDays = false;
+    if (pos < end && !isLetter(text, pos, end, 'T')) {
+      int numberStart = pos;
+      pos = numberEnd(text, pos, end);
+      if (!isLetter(text, pos, end, 'D')) {
+        throw new DateTimeParseException("Expected 'D'", text, pos);
+      }
+      daysAsSeconds = parseNumber(text, numberStart, pos, SECONDS_PER_DAY, start);
+      hasDays = true;
+      pos++;
+    }
+
+    if (pos < end) {
+      if (!isLetter(text, pos, end, 'T')) {
+        throw new DateTimeParseException("Expected 'T'", text, pos);
+      }
+      pos++;
+      int previousUnit = NO_TIME_UNIT;
+      while (pos < end) {
+        int numberStart = pos;
+        pos = numberEnd(text, pos, end);
+        int numberEnd = pos;
+        int unit;
+        if (pos < end && (text.charAt(pos) == '.' || text.charAt(pos) == ',')) {
+          pos++;
+          int fractionStart = pos;
+          while (pos < end && isDigit(text.charAt(pos))) {
+            if (pos - fractionStart == NUM_FRACTION_DIGITS) {
+              throw new DateTimeParseException("Too many fraction digits", text, pos);
+            }
+            pos++;
+          }
+          if (!isLetter(text, pos, end, 'S')) {
+            throw new DateTimeParseException("Expected 'S'", text, pos);
+          }
+          unit = SECONDS_UNIT;
+        } else if (isLetter(text, pos, end, 'H')) {
+          unit = HOURS_UNIT;
+        } else if (isLetter(text, pos, end, 'M')) {
+          unit = MINUTES_UNIT;
+        } else if (isLetter(text, pos, end, 'S')) {
+          unit = SECONDS_UNIT;
+        } else {
+          throw new DateTimeParseException("Expected 'H', 'M', or 'S'", text, pos);
+        }
+        if (unit <= previousUnit) {
+          throw new DateTimeParseException("Units are out of order", text, pos);
+        }
+        if (unit == HOURS_UNIT) {
+          hoursAsSeconds = parseNumber(text, numberStart, numberEnd, SECONDS_PER_HOUR, start);
+        } else if (unit == MINUTES_UNIT) {
+          minutesAsSeconds = parseNumber(text, numberStart, numberEnd, SECONDS_PER_MINUTE, start);
+        } else {
+          seconds = parseNumber(text, numberStart, numberEnd, 1, start);
+        }
+        previousUnit = unit;
+        pos++;
+      }
+      // Duration#parse only rejects an upper case 'T' that has nothing after it.
+      if (previousUnit == NO_TIME_UNIT && (text.charAt(pos - 1) == 'T' || !hasDays)) {
+        throw new DateTimeParseException("Expected a number", text, pos);
+      }
+    } else if (!hasDays) {
+      throw new DateTimeParseException("Expected a number", text, pos);
+    }
+
+    try {
+      // This is the order in which Duration#parse adds the parts, which matters if the parts have
+      // different signs and one of the partial sums overflows.
+      return Math.addExact(daysAsSeconds,
+          Math.addExact(hoursAsSeconds, Math.addExact(minutesAsSeconds, seconds)));
+    } catch (ArithmeticException e) {
+      throw new DateTimeParseException(VALUE_TOO_LARGE, text, start, e);
+    }
+  }
+
+  /**
+   * Get the fraction of a second at the end of a region of text that has been successfully parsed
+   * by {@link #parseSeconds(CharSequence, int, int)}, with the sign of the number of seconds that
+   * it follows.
+   *
+   * @return The fraction in nanoseconds, or zero if there is no fraction.
+   */
+  private static long fractionNanos(CharSequence text, int start, int end) {
+    // The fraction can only be between a '.' or ',' and the final 'S'.
+    int fractionEnd = end - 1;
+    int pos = fractionEnd - 1;
+    while (pos > start && isDigit(text.charAt(pos))) {
+      pos--;
+    }
+    char separator = text.charAt(pos);
+    if (separator != '.' && separator != ',') {
+      return 0;
+    }
+    int fractionStart = pos + 1;
+    long fraction = 0;
+    for (int i = fractionStart; i < fractionEnd; i++) {
+      fraction = fraction * 10 + (text.charAt(i) - '0');
+    }
+    fraction *= DigitEmitter.powerOfTen(NUM_FRACTION_DIGITS - (fractionEnd - fractionStart));
+
+    // Find the sign of the number of whole seconds.
+    pos--;
+    while (isDigit(text.charAt(pos))) {
+      pos--;
+    }
+    return text.charAt(pos) == '-' ? -fraction : fraction;
+  }
+
+  /**
+   * Find the end of an integer with an optional sign.
+   *
+   * @return The index after the last digit of the integer.
+   */
+  private static int numberEnd(CharSequence text, int start, int end) {
+    int pos = start;
+    if (pos < end && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+      pos++;
+    }
+    int digitsStart = pos;
+    while (pos < end && isDigit(text.charAt(pos))) {
+      pos++;
+    }
+    if (pos == digitsStart) {
+      throw new DateTimeParseException("Expected a number", text, pos);
+    }
+    return pos;
+  }
+
+  /**
+   * Parse an integer with an optional sign, which has been found by
+   * {@link #numberEnd(CharSequence, int, int)}, and multiply it by {@code multiplier}.
+   */
+  private static long parseNumber(CharSequence text, int numberStart, int numberEnd,
+      long multiplier, int start) {
+    int pos = numberStart;
+    boolean negative = text.charAt(pos) == '-';
+    if (negative || text.charAt(pos) == '+') {
+      pos++;
+    }
+    // Like Long#parseLong, this accumulates the negated number, since Long.MIN_VALUE has no
+    // positive counterpart.
+    long negatedNumber = 0;
+    for (; pos < numberEnd; pos++) {
+      int digit = text.charAt(pos) - '0';
+      if (negatedNumber < (Long.MIN_VALUE + digit) / 10) {
+        throw new DateTimeParseException("Number is too large", text, pos);
+      }
+      negatedNumber = negatedNumber * 10 - digit;
+    }
+    if (!negative && negatedNumber == Long.MIN_VALUE) {
+      throw new DateTimeParseException("Number is too large", text, numberEnd - 1);
+    }
+    return multiplyExact(negative ? negatedNumber : -negatedNumber, multiplier, text, start);
+  }
+
+  private static long multiplyExact(long number, long multiplier, CharSequence text, int start) {
+    try {
+      return Math.multiplyExact(number, multiplier);
+    } catch (ArithmeticException e) {
+      throw new DateTimeParseException(VALUE_TOO_LARGE, text, start, e);
+    }
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /** Check whether the char at {@code pos} is the specified ASCII letter, in either case. */
+  private static boolean isLetter(CharSequence text, int pos, int end, char upperCaseLetter) {
+    if (pos >= end) {
+      return false;
+    }
+    char c = text.charAt(pos);
+    return c == upperCaseLetter || c == upperCaseLetter + ('a' - 'A');
+  }
+}
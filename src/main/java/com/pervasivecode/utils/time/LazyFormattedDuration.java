@@ -0,0 +1,62 @@
+package com.pervasivecode.utils.time;
+
+import java.time.Duration;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A CharSequence that formats a Duration with a {@link DurationFormatter} the first time its text
+ * is needed, and then keeps the formatted String.
+ * <p>
+ * Only the formatter and the seconds and nanoseconds of the Duration are held until then, so that
+ * creating an instance is cheap. This makes it suitable as an argument to a logging call that will
+ * usually be filtered out.
+ * <p>
+ * Instances are thread-safe. If several threads need the text at the same time, the Duration may be
+ * formatted more than once, but the result is always the same.
+ */
+@ThreadSafe
+final class LazyFormattedDuration implements CharSequence {
+  private final DurationFormatter formatter;
+  private final long seconds;
+  private final int nanos;
+  // Like String's cached hash code, this is safe to compute in more than one thread.
+  private String formatted = null;
+
+  /**
+   * Create a LazyFormattedDuration.
+   *
+   * @param formatter The formatter that will format the Duration.
+   * @param seconds The seconds of the Duration, as returned by {@link Duration#getSeconds()}.
+   * @param nanos The nanoseconds of the Duration, as returned by {@link Duration#getNano()}.
+   */
+  LazyFormattedDuration(DurationFormatter formatter, long seconds, int nanos) {
+    this.formatter = formatter;
+    this.seconds = seconds;
+    this.nanos = nanos;
+  }
+
+  @Override
+  public String toString() {
+    String result = formatted;
+    if (result == null) {
+      result = formatter.format(Duration.ofSeconds(seconds, nanos));
+      formatted = result;
+    }
+    return result;
+  }
+
+  @Override
+  public int length() {
+    return toString().length();
+  }
+
+  @Override
+  public char charAt(int index) {
+    return toString().charAt(index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return toString().subSequence(start, end);
+  }
+}
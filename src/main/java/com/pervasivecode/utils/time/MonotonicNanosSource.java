@@ -0,0 +1,112 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link CurrentNanosSource} that wraps another CurrentNanosSource, and makes every value that
+ * it returns unique, even if the wrapped source returns the same value twice or steps backward.
+ * <p>
+ * There are two modes:
+ * <ul>
+ * <li>By default, the values returned across all threads are strictly increasing. Each value is the
+ * wrapped source's value, or one more than the previous value returned if that is larger. This is
+ * enforced without locking, using a single compare-and-set of a shared counter per value.
+ * <li>In {@linkplain #striped(CurrentNanosSource, int) striped} mode, each thread reserves a range
+ * of values from the shared counter, and returns values from its own range until the range is
+ * used up or the wrapped source's value passes the end of the range. So threads only update the
+ * shared counter once per range, rather than all contending for it on every call. Values are still
+ * unique across all threads, and strictly increasing in each thread, but values returned by
+ * different threads are not necessarily in the order in which they were returned. The values can
+ * also be ahead of the wrapped source by up to the range size for each thread that is using this
+ * source.
+ * </ul>
+ * Striped mode is meant for many threads getting values at the same time on several processors.
+ * Its benefit there has not been measured: on a single processor, it was slower than the default
+ * mode, since each call also reads a ThreadLocal. Use {@code MonotonicNanosSourceBenchmark} to
+ * compare the modes on the target hardware before choosing striped mode.
+ * <p>
+ * Instances are thread-safe.
+ */
+public final class MonotonicNanosSource implements CurrentNanosSource {
+  /** A range of values reserved by one thread, in striped mode. */
+  private static final class Range {
+    /** The next value that this thread may return. */
+    long next;
+    /** The end of this thread's range (exclusive). */
+    long end;
+  }
+
+  private final CurrentNanosSource source;
+  /** The highest value returned, or (in striped mode) the end of the highest reserved range. */
+  private final AtomicLong last;
+  private final int rangeSize;
+  private final ThreadLocal<Range> ranges;
+
+  /**
+   * Create a MonotonicNanosSource whose values are strictly increasing across all threads.
+   *
+   * @param source The source of the current time.
+   */
+  public MonotonicNanosSource(CurrentNanosSource source) {
+    this(source, 1);
+  }
+
+  private MonotonicNanosSource(CurrentNanosSource source, int rangeSize) {
+    this.source = checkNotNull(source);
+    this.last = new AtomicLong(Long.MIN_VALUE);
+    this.rangeSize = rangeSize;
+    this.ranges = (rangeSize > 1) ? ThreadLocal.withInitial(Range::new) : null;
+  }
+
+  /**
+   * Create a MonotonicNanosSource in striped mode, whose values are unique across all threads and
+   * strictly increasing in each thread.
+   *
+   * @param source The source of the current time.
+   * @param rangeSize The number of values that each thread reserves at a time, such as 1,024. This
+   *        is also the most that the values returned by each thread can be ahead of the source.
+   * @return A MonotonicNanosSource in striped mode.
+   * @throws IllegalArgumentException if rangeSize is less than 2.
+   */
+  public static MonotonicNanosSource striped(CurrentNanosSource source, int rangeSize) {
+    checkArgument(rangeSize > 1, "rangeSize must be at least 2. Got: %s", rangeSize);
+    return new MonotonicNanosSource(source, rangeSize);
+  }
+
+  @Override
+  public long currentTimeNanoPrecision() {
+    long now = source.currentTimeNanoPrecision();
+    if (ranges != null) {
+      return nextInRange(now);
+    }
+    while (true) {
+      long previous = last.get();
+      long next = (now > previous) ? now : previous + 1;
+      if (last.compareAndSet(previous, next)) {
+        return next;
+      }
+    }
+  }
+
+  private long nextInRange(long now) {
+    Range range = ranges.get();
+    if (now < range.end && range.next < range.end) {
+      long value = Math.max(now, range.next);
+      range.next = value + 1;
+      return value;
+    }
+    // Reserve a new range, starting at the current time if no other thread has reserved it yet.
+    while (true) {
+      long previousEnd = last.get();
+      long start = (now > previousEnd) ? now : previousEnd;
+      long end = start + rangeSize;
+      if (last.compareAndSet(previousEnd, end)) {
+        range.next = start + 1;
+        range.end = end;
+        return start;
+      }
+    }
+  }
+}
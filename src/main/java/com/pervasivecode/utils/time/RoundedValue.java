@@ -0,0 +1,254 @@
+package com.pervasivecode.utils.time;
+
+import java.math.BigDecimal;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The magnitude of a Duration in one of the units of a {@link DurationFormatPlan}, as an integer
+ * part and a fraction with a fixed number of decimal digits, computed from the seconds and
+ * nanoseconds of the magnitude using long arithmetic. This is how {@link DurationFormatter} and
+ * {@link AdaptiveDurationFormatter} compute the value of a rounded part.
+ * <p>
+ * The integer part is split into a high part and a low part (see
+ * {@link DigitEmitter#toBigDecimal(long, long, int)}), since a value in a unit shorter than a
+ * second can be larger than a long. For units of seconds or longer, the low part is always zero.
+ * <p>
+ * Only units that are a whole number of seconds or a whole number of nanoseconds less than a
+ * second, and that are shorter than {@code Long.MAX_VALUE / 10} seconds, are supported (see
+ * {@link DurationFormatPlan#roundWithLongArithmetic}).
+ * <p>
+ * Instances are mutable, and are meant to be used for one value at a time by one thread.
+ */
+final class RoundedValue {
+  private static final long NANOS_PER_SECOND = DurationFormatPlan.NANOS_PER_SECOND;
+
+  private final DurationFormatPlan plan;
+
+  private long unitSeconds;
+  private int unitNanos;
+  private long unitsPerSecond;
+
+  /** The magnitude that was split. */
+  private long splitSeconds;
+  private int splitNanos;
+
+  /** What is left over after the integer part and the fraction digits, less than one unit. */
+  private long remainderSeconds;
+  private long remainderNanos;
+
+  /** The integer part, as an unsigned high part and a low part. */
+  long high;
+  long low;
+  int numLowDigits;
+
+  /** The fraction, multiplied by ten to the power of {@link #numFractionDigits}. */
+  long scaledFraction;
+  int numFractionDigits;
+
+  RoundedValue(DurationFormatPlan plan) {
+    this.plan = plan;
+  }
+
+  /**
+   * Split a magnitude into a whole number of units and a remainder, with no fraction digits yet.
+   *
+   * @param unitIndex The index in {@link DurationFormatPlan#unitsInDescOrder} of the unit.
+   * @param seconds The number of whole seconds in the magnitude, as an unsigned long.
+   * @param nanos The nanosecond-of-second of the magnitude.
+   * @return This RoundedValue.
+   */
+  RoundedValue split(int unitIndex, long seconds, int nanos) {
+    unitSeconds = plan.unitSeconds[unitIndex];
+    unitNanos = plan.unitNanos[unitIndex];
+    unitsPerSecond = plan.unitsPerSecond[unitIndex];
+    splitSeconds = seconds;
+    splitNanos = nanos;
+    if (unitNanos == 0) {
+      high = Long.divideUnsigned(seconds, unitSeconds);
+      low = 0;
+      numLowDigits = 0;
+      remainderSeconds = Long.remainderUnsigned(seconds, unitSeconds);
+      remainderNanos = nanos;
+    } else {
+      high = seconds;
+      low = nanos / unitNanos;
+      numLowDigits = plan.unitsPerSecondDigits[unitIndex];
+      remainderSeconds = 0;
+      remainderNanos = nanos % unitNanos;
+    }
+    scaledFraction = 0;
+    numFractionDigits = 0;
+    return this;
+  }
+
+  /**
+   * Compute the fraction digits of the value by long division, and then round the last digit half
+   * to even, or truncate it.
+   *
+   * @param numFractionDigits The number of fraction digits, which must be at most
+   *        {@link DigitEmitter#MAX_LONG_FRACTION_DIGITS}.
+   * @param roundHalfEven Whether to round the last digit. If false, the remainder is discarded.
+   * @return This RoundedValue.
+   */
+  RoundedValue round(int numFractionDigits, boolean roundHalfEven) {
+    // Since the remainder is always less than one unit, which is less than Long.MAX_VALUE / 10
+    // seconds, this can't overflow.
+    long fractionScale = 1;
+    for (int i = 0; i < numFractionDigits; i++) {
+      remainderNanos *= 10;
+      if (unitNanos == 0) {
+        remainderSeconds = remainderSeconds * 10 + remainderNanos / NANOS_PER_SECOND;
+        remainderNanos %= NANOS_PER_SECOND;
+        scaledFraction = scaledFraction * 10 + remainderSeconds / unitSeconds;
+        remainderSeconds %= unitSeconds;
+      } else {
+        scaledFraction = scaledFraction * 10 + remainderNanos / unitNanos;
+        remainderNanos %= unitNanos;
+      }
+      fractionScale *= 10;
+    }
+    this.numFractionDigits = numFractionDigits;
+
+    if (roundHalfEven && isMoreThanHalfAfterLastDigit(fractionScale)) {
+      scaledFraction++;
+      if (scaledFraction == fractionScale) {
+        scaledFraction = 0;
+        if (numLowDigits == 0) {
+          high++;
+        } else if (++low == unitsPerSecond) {
+          low = 0;
+          high++;
+        }
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Determine whether what is left over after the last digit is more than half of one of that
+   * digit, or exactly half and the last digit is odd, by comparing twice the remainder to one unit.
+   */
+  private boolean isMoreThanHalfAfterLastDigit(long fractionScale) {
+    long twiceRemainderNanos = remainderNanos * 2;
+    long twiceRemainderSeconds = remainderSeconds * 2 + twiceRemainderNanos / NANOS_PER_SECOND;
+    twiceRemainderNanos %= NANOS_PER_SECOND;
+    int comparison = Long.compare(twiceRemainderSeconds, unitSeconds);
+    if (comparison == 0) {
+      comparison = Long.compare(twiceRemainderNanos, unitNanos);
+    }
+    // Ten to the power of numLowDigits is even, so only the low part matters if there is one.
+    long lastDigit = (fractionScale > 1) ? scaledFraction : (numLowDigits > 0 ? low : high);
+    return comparison > 0 || (comparison == 0 && (lastDigit & 1) != 0);
+  }
+
+  boolean isZero() {
+    return high == 0 && low == 0 && scaledFraction == 0;
+  }
+
+  /** Get the number of whole seconds in the remainder, after {@link #split(int, long, int)}. */
+  long remainderSeconds() {
+    return remainderSeconds;
+  }
+
+  /** Get the nanosecond-of-second of the remainder, after {@link #split(int, long, int)}. */
+  int remainderNanos() {
+    return (int) remainderNanos;
+  }
+
+  /**
+   * Get the number of whole seconds in a magnitude after the part of it that was split is replaced
+   * by the integer part of this value.
+   *
+   * @param seconds The number of whole seconds in the magnitude, as an unsigned long.
+   * @param nanos The nanosecond-of-second of the magnitude.
+   * @return The number of whole seconds in the result, as an unsigned long.
+   */
+  long replacedSeconds(long seconds, int nanos) {
+    long wholeSeconds = (unitNanos == 0) ? high * unitSeconds : high;
+    long nanosDifference = (long) nanos - splitNanos + wholeNanos();
+    return seconds - splitSeconds + wholeSeconds + Math.floorDiv(nanosDifference, NANOS_PER_SECOND);
+  }
+
+  /**
+   * Get the nanosecond-of-second of a magnitude after the part of it that was split is replaced by
+   * the integer part of this value.
+   *
+   * @param nanos The nanosecond-of-second of the magnitude.
+   * @return The nanosecond-of-second of the result.
+   */
+  int replacedNanos(int nanos) {
+    return (int) Math.floorMod((long) nanos - splitNanos + wholeNanos(), NANOS_PER_SECOND);
+  }
+
+  private int wholeNanos() {
+    return (unitNanos == 0) ? 0 : (int) (low * unitNanos);
+  }
+
+  /** Get the suffix for this value, looked up at the scale it was rounded to. */
+  String suffixFor(ChronoUnit unit, boolean negative) {
+    return suffixFor(plan, unit, negative, high, low, numLowDigits, scaledFraction,
+        numFractionDigits);
+  }
+
+  /**
+   * Get the suffix for an integer value, given as a sign and a magnitude that is split into a high
+   * part and a low part.
+   */
+  static String suffixFor(DurationFormatPlan plan, ChronoUnit unit, boolean negative, long high,
+      long low, int numLowDigits) {
+    if (numLowDigits == 0 || high == 0) {
+      long magnitude = (high == 0) ? low : high;
+      // A negative value's magnitude can be 2^63, which is Long.MIN_VALUE when negated.
+      if (magnitude >= 0 || (negative && magnitude == Long.MIN_VALUE)) {
+        return plan.suffixFor(unit, negative ? -magnitude : magnitude);
+      }
+    } else {
+      long scale = DigitEmitter.powerOfTen(numLowDigits);
+      if (high >= 0 && high <= (Long.MAX_VALUE - low) / scale) {
+        long magnitude = high * scale + low;
+        return plan.suffixFor(unit, negative ? -magnitude : magnitude);
+      }
+    }
+    BigDecimal magnitude = DigitEmitter.toBigDecimal(high, low, numLowDigits);
+    return plan.suffixProvider.suffixFor(unit, negative ? magnitude.negate() : magnitude);
+  }
+
+  /**
+   * Get the suffix for a value that was rounded to {@code numFractionDigits} fraction digits. A
+   * value with fraction digits is looked up at the scale it was rounded to, such as 1.000 rather
+   * than 1, even if the fraction is zero.
+   */
+  static String suffixFor(DurationFormatPlan plan, ChronoUnit unit, boolean negative, long high,
+      long low, int numLowDigits, long scaledFraction, int numFractionDigits) {
+    if (numFractionDigits == 0) {
+      return suffixFor(plan, unit, negative, high, low, numLowDigits);
+    }
+    return plan.suffixProvider.suffixFor(unit,
+        toBigDecimal(negative, high, low, numLowDigits, scaledFraction, numFractionDigits));
+  }
+
+  /**
+   * Get a value, given as a sign, a magnitude that is split into a high part and a low part, and a
+   * scaled fraction, as a BigDecimal whose scale is the number of fraction digits.
+   */
+  static BigDecimal toBigDecimal(boolean negative, long high, long low, int numLowDigits,
+      long scaledFraction, int numFractionDigits) {
+    long magnitude = -1;
+    if (numLowDigits == 0 || high == 0) {
+      magnitude = (high == 0) ? low : high;
+    } else {
+      long scale = DigitEmitter.powerOfTen(numLowDigits);
+      if (high >= 0 && high <= (Long.MAX_VALUE - low) / scale) {
+        magnitude = high * scale + low;
+      }
+    }
+    long fractionScale = DigitEmitter.powerOfTen(numFractionDigits);
+    if (magnitude >= 0 && magnitude <= (Long.MAX_VALUE - scaledFraction) / fractionScale) {
+      long unscaledValue = magnitude * fractionScale + scaledFraction;
+      return BigDecimal.valueOf(negative ? -unscaledValue : unscaledValue, numFractionDigits);
+    }
+    BigDecimal value = DigitEmitter.toBigDecimal(high, low, numLowDigits)
+        .add(BigDecimal.valueOf(scaledFraction, numFractionDigits));
+    return negative ? value.negate() : value;
+  }
+}
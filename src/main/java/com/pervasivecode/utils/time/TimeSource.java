@@ -10,7 +10,8 @@ import java.time.Instant;
  * real-world delays in the middle of the test.
  * <p>
  * When your code needs an implementation of TimeSource that uses real-world time, just use a lambda
- * expression of {@code ()->Instant.now()}.
+ * expression of {@code ()->Instant.now()}. If the current time is read very frequently and does not
+ * need to be more precise than a few milliseconds, use a {@link CoarseTimeSource} instead.
  */
 public interface TimeSource {
   /**
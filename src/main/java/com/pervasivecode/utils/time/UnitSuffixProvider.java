@@ -16,8 +16,8 @@ public interface UnitSuffixProvider {
   /**
    * Get the appropriate suffix to use for the specified unit and magnitude.
    * <p>
-   * This method will only be called if the magnitude cannot be represented as an int. Otherwise,
-   * the {@link #suffixFor(ChronoUnit, int)} method will be used.
+   * This method will only be called if the magnitude cannot be represented as a long, or has a
+   * fractional part. Otherwise, the {@link #suffixFor(ChronoUnit, long)} method will be used.
    *
    * @param unit The unit of the value being formatted.
    * @param magnitude The value being formatted.
@@ -28,12 +28,33 @@ public interface UnitSuffixProvider {
   /**
    * Get the appropriate suffix to use for the specified unit and magnitude.
    * <p>
-   * This method will only be called if the magnitude can accurately be represented as an int.
-   * Otherwise, the {@link #suffixFor(ChronoUnit, BigDecimal)} method will be used.
+   * This method will only be called if the magnitude can accurately be represented as an int, and
+   * {@link #suffixFor(ChronoUnit, long)} has not been overridden.
    *
    * @param unit The unit of the value being formatted.
    * @param magnitude The value being formatted.
    * @return The String suffix to use for a time value with this unit and magnitude.
    */
   public String suffixFor(ChronoUnit unit, int magnitude);
+
+  /**
+   * Get the appropriate suffix to use for the specified unit and magnitude.
+   * <p>
+   * This method will only be called if the magnitude can accurately be represented as a long.
+   * Otherwise, the {@link #suffixFor(ChronoUnit, BigDecimal)} method will be used.
+   * <p>
+   * The default implementation calls {@link #suffixFor(ChronoUnit, int)} if the magnitude can be
+   * represented as an int, and {@link #suffixFor(ChronoUnit, BigDecimal)} otherwise.
+   * Implementations can override this method to look up suffixes without converting the magnitude.
+   *
+   * @param unit The unit of the value being formatted.
+   * @param magnitude The value being formatted.
+   * @return The String suffix to use for a time value with this unit and magnitude.
+   */
+  public default String suffixFor(ChronoUnit unit, long magnitude) {
+    if (magnitude > Integer.MAX_VALUE || magnitude < Integer.MIN_VALUE) {
+      return suffixFor(unit, BigDecimal.valueOf(magnitude));
+    }
+    return suffixFor(unit, (int) magnitude);
+  }
 }
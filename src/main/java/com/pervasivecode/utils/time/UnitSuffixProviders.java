@@ -3,7 +3,9 @@ package com.pervasivecode.utils.time;
 import static java.util.Objects.requireNonNull;
 import java.math.BigDecimal;
 import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Factory methods for UnitSuffixProvider instances that behave in ways that are appropriate for
@@ -14,6 +16,54 @@ public class UnitSuffixProviders {
 
   private static final BigDecimal BIG_NEGATIVE_ONE = BigDecimal.ONE.negate();
 
+  /** The smallest and largest whole quantities that {@link #probeSuffixes} asks for. */
+  static final int MIN_PROBED_WHOLE_QUANTITY = -2;
+  static final int MAX_PROBED_WHOLE_QUANTITY = 100;
+  private static final BigDecimal[] PROBED_FRACTIONAL_QUANTITIES = {new BigDecimal("0"),
+      new BigDecimal("0.5"), new BigDecimal("1"), new BigDecimal("1.5"), new BigDecimal("2.5")};
+
+  /**
+   * Find the suffixes that a UnitSuffixProvider uses for a unit, by asking it for the suffixes of
+   * quantities from -2 through 100 and a few fractional quantities.
+   * <p>
+   * Since a UnitSuffixProvider can return a different suffix for any quantity, this is not
+   * guaranteed to find every suffix, but it does find every suffix that is used by the providers
+   * in this class and by typical plural rules.
+   *
+   * @param suffixProvider The provider of suffixes.
+   * @param unit The unit whose suffixes should be found.
+   * @return The distinct non-null suffixes, in the order in which they were found.
+   */
+  static Set<String> probeSuffixes(UnitSuffixProvider suffixProvider, ChronoUnit unit) {
+    Set<String> suffixes = new LinkedHashSet<>();
+    for (long quantity = MIN_PROBED_WHOLE_QUANTITY; quantity <= MAX_PROBED_WHOLE_QUANTITY;
+        quantity++) {
+      addIfNotNull(suffixes, suffixProvider.suffixFor(unit, quantity));
+    }
+    for (BigDecimal quantity : PROBED_FRACTIONAL_QUANTITIES) {
+      addIfNotNull(suffixes, suffixProvider.suffixFor(unit, quantity));
+    }
+    return suffixes;
+  }
+
+  private static void addIfNotNull(Set<String> suffixes, String suffix) {
+    if (suffix != null) {
+      suffixes.add(suffix);
+    }
+  }
+
+  /**
+   * Copy a map of suffixes into an array indexed by {@link ChronoUnit#ordinal()}, so that looking
+   * up a suffix is just an array access.
+   */
+  private static String[] suffixesByOrdinal(Map<ChronoUnit, String> unitSuffixes) {
+    String[] suffixes = new String[ChronoUnit.values().length];
+    for (Map.Entry<ChronoUnit, String> entry : unitSuffixes.entrySet()) {
+      suffixes[entry.getKey().ordinal()] = entry.getValue();
+    }
+    return suffixes;
+  }
+
   /**
    * Get a UnitSuffixProvider that provides unit suffixes that are fixed regardless of the magnitude
    * of the value being formatted.
@@ -22,22 +72,28 @@ public class UnitSuffixProviders {
    * suffix regardless of their magnitude.
    *
    * @param unitSuffixes A map of units of time to the suffix to use when formatting values in those
-   *        units.
+   *        units. The contents of this map are copied when this method is called, so later changes
+   *        to the map will not affect the returned UnitSuffixProvider.
    * @return A UnitSuffixProvider that simply returns the appropriate value from unitSuffixes.
    *
    */
   public static UnitSuffixProvider fixedSuffixPerUnit(Map<ChronoUnit, String> unitSuffixes) {
-    requireNonNull(unitSuffixes);
+    String[] suffixes = suffixesByOrdinal(requireNonNull(unitSuffixes));
     return new UnitSuffixProvider() {
 
       @Override
       public String suffixFor(ChronoUnit unit, @SuppressWarnings("unused") BigDecimal magnitude) {
-        return unitSuffixes.get(unit);
+        return suffixes[unit.ordinal()];
       }
 
       @Override
       public String suffixFor(ChronoUnit unit, @SuppressWarnings("unused") int magnitude) {
-        return unitSuffixes.get(unit);
+        return suffixes[unit.ordinal()];
+      }
+
+      @Override
+      public String suffixFor(ChronoUnit unit, @SuppressWarnings("unused") long magnitude) {
+        return suffixes[unit.ordinal()];
       }
     };
   }
@@ -87,8 +143,8 @@ public class UnitSuffixProviders {
    */
   public static UnitSuffixProvider singularAndPlural(Map<ChronoUnit, String> singularUnitSuffixes,
       Map<ChronoUnit, String> pluralUnitSuffixes, boolean negativeOneIsSingular) {
-    requireNonNull(singularUnitSuffixes);
-    requireNonNull(pluralUnitSuffixes);
+    String[] singularSuffixes = suffixesByOrdinal(requireNonNull(singularUnitSuffixes));
+    String[] pluralSuffixes = suffixesByOrdinal(requireNonNull(pluralUnitSuffixes));
 
     return new UnitSuffixProvider() {
 
@@ -107,8 +163,14 @@ public class UnitSuffixProviders {
         return suffixFor(unit, singular);
       }
 
+      @Override
+      public String suffixFor(ChronoUnit unit, long magnitude) {
+        boolean singular = magnitude == 1 || (negativeOneIsSingular && magnitude == -1);
+        return suffixFor(unit, singular);
+      }
+
       private String suffixFor(ChronoUnit unit, boolean singular) {
-        return (singular ? singularUnitSuffixes : pluralUnitSuffixes).get(unit);
+        return (singular ? singularSuffixes : pluralSuffixes)[unit.ordinal()];
       }
     };
   }
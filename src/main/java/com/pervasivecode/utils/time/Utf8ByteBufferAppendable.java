@@ -0,0 +1,98 @@
+package com.pervasivecode.utils.time;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * An Appendable that encodes the text appended to it as UTF-8, writing the bytes directly into a
+ * ByteBuffer.
+ * <p>
+ * Strings that are appended repeatedly (such as unit suffixes and part delimiters) can be encoded
+ * ahead of time and supplied in a map, so that appending them is just a bulk copy of their bytes.
+ * <p>
+ * Like {@link String#getBytes(java.nio.charset.Charset)}, unpaired surrogate chars are encoded as
+ * '?'. A high surrogate at the end of the text is only encoded when {@link #finish()} is called.
+ */
+final class Utf8ByteBufferAppendable implements Appendable {
+  private static final byte REPLACEMENT_BYTE = '?';
+
+  private final ByteBuffer out;
+  private final Map<String, byte[]> preEncodedStrings;
+  private char pendingHighSurrogate = 0;
+
+  /**
+   * Create an Appendable that writes UTF-8 encoded text into a ByteBuffer.
+   *
+   * @param out The buffer into which encoded bytes will be written.
+   * @param preEncodedStrings A map of Strings to their UTF-8 encoded bytes. Strings that are in this
+   *        map will be written by copying the bytes from the map.
+   */
+  Utf8ByteBufferAppendable(ByteBuffer out, Map<String, byte[]> preEncodedStrings) {
+    this.out = out;
+    this.preEncodedStrings = preEncodedStrings;
+  }
+
+  @Override
+  public Utf8ByteBufferAppendable append(CharSequence csq) {
+    if (csq instanceof String && pendingHighSurrogate == 0) {
+      byte[] bytes = preEncodedStrings.get(csq);
+      if (bytes != null) {
+        out.put(bytes);
+        return this;
+      }
+    }
+    return append(csq, 0, csq.length());
+  }
+
+  @Override
+  public Utf8ByteBufferAppendable append(CharSequence csq, int start, int end) {
+    for (int i = start; i < end; i++) {
+      append(csq.charAt(i));
+    }
+    return this;
+  }
+
+  @Override
+  public Utf8ByteBufferAppendable append(char c) {
+    if (pendingHighSurrogate != 0) {
+      char highSurrogate = pendingHighSurrogate;
+      pendingHighSurrogate = 0;
+      if (Character.isLowSurrogate(c)) {
+        putCodePoint(Character.toCodePoint(highSurrogate, c));
+        return this;
+      }
+      out.put(REPLACEMENT_BYTE);
+    }
+
+    if (c < 0x80) {
+      out.put((byte) c);
+    } else if (c < 0x800) {
+      out.put((byte) (0xC0 | (c >> 6)));
+      out.put((byte) (0x80 | (c & 0x3F)));
+    } else if (Character.isHighSurrogate(c)) {
+      pendingHighSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      out.put(REPLACEMENT_BYTE);
+    } else {
+      out.put((byte) (0xE0 | (c >> 12)));
+      out.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+      out.put((byte) (0x80 | (c & 0x3F)));
+    }
+    return this;
+  }
+
+  private void putCodePoint(int codePoint) {
+    out.put((byte) (0xF0 | (codePoint >> 18)));
+    out.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+    out.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+    out.put((byte) (0x80 | (codePoint & 0x3F)));
+  }
+
+  /** Encode a high surrogate that was the last char appended, since no low surrogate followed. */
+  void finish() {
+    if (pendingHighSurrogate != 0) {
+      pendingHighSurrogate = 0;
+      out.put(REPLACEMENT_BYTE);
+    }
+  }
+}
@@ -0,0 +1,359 @@
+package com.pervasivecode.utils.time;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.concurrent.Immutable;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Calendar arithmetic on the local date-times of one time zone, following the same rules as
+ * {@link java.time.ZonedDateTime}, but using tables of the zone's offset transitions and of the
+ * lengths of months that are built once, so that each operation is a table lookup rather than a
+ * {@link ZoneRules} lookup or {@link LocalDateTime} arithmetic.
+ * <p>
+ * Local date-times are given as a number of seconds since 1970-01-01T00:00 local time (the
+ * "local epoch second"). Zone offsets are a whole number of seconds, so the nanosecond-of-second
+ * of a local date-time is the same as that of the instant, and is handled by callers.
+ * <p>
+ * The tables cover the years {@value #FIRST_CACHED_YEAR} through {@value #LAST_CACHED_YEAR}.
+ * Values outside of that range are handled using ZoneRules and LocalDate, with the same results.
+ * <p>
+ * Instances are immutable and thread-safe. Instances are shared by ZoneId, for up to
+ * {@value #MAX_CACHED_ZONES} of the most recently used zones.
+ */
+@Immutable
+final class ZoneCalendar {
+  static final int FIRST_CACHED_YEAR = 1900;
+  static final int LAST_CACHED_YEAR = 2100;
+
+  static final long SECONDS_PER_DAY = 86_400;
+
+  private static final long FIRST_CACHED_PROLEPTIC_MONTH = FIRST_CACHED_YEAR * 12L;
+  private static final long FIRST_CACHED_EPOCH_SECOND =
+      LocalDate.of(FIRST_CACHED_YEAR, 1, 1).toEpochDay() * SECONDS_PER_DAY;
+  private static final long END_CACHED_EPOCH_SECOND =
+      LocalDate.of(LAST_CACHED_YEAR + 1, 1, 1).toEpochDay() * SECONDS_PER_DAY;
+
+  /**
+   * The epoch day of the first day of each month of the cached years, and of the month after them,
+   * indexed by proleptic month (year * 12 + month - 1) minus {@link #FIRST_CACHED_PROLEPTIC_MONTH}.
+   */
+  private static final long[] MONTH_START_EPOCH_DAYS;
+  static {
+    int numMonths = (LAST_CACHED_YEAR - FIRST_CACHED_YEAR + 1) * 12;
+    MONTH_START_EPOCH_DAYS = new long[numMonths + 1];
+    LocalDate monthStart = LocalDate.of(FIRST_CACHED_YEAR, 1, 1);
+    for (int i = 0; i <= numMonths; i++) {
+      MONTH_START_EPOCH_DAYS[i] = monthStart.toEpochDay();
+      monthStart = monthStart.plusMonths(1);
+    }
+  }
+
+  /**
+   * The most shared instances to keep. Callers may use any number of distinct ZoneIds (such as
+   * arbitrary fixed offsets), so the least recently used ones are dropped beyond this limit.
+   */
+  @VisibleForTesting
+  static final int MAX_CACHED_ZONES = 100;
+
+  private static final LoadingCache<ZoneId, ZoneCalendar> INSTANCES = CacheBuilder.newBuilder() //
+      .maximumSize(MAX_CACHED_ZONES) //
+      .build(CacheLoader.from((ZoneId zone) -> new ZoneCalendar(zone.getRules())));
+
+  private final ZoneRules rules;
+
+  /** The range of instants, in epoch seconds, whose offsets are in the transition table. */
+  private final long cacheStartSecond;
+  private final long cacheEndSecond;
+
+  /**
+   * The instants at which the offset changes within the cached range, in ascending order, and the
+   * offsets in effect around them: offsetSeconds[i] is in effect until transitionSeconds[i], and
+   * offsetSeconds[i + 1] is in effect from then on.
+   */
+  private final long[] transitionSeconds;
+  private final int[] offsetSeconds;
+
+  /**
+   * The range of local epoch seconds around each transition that is either skipped (in a gap) or
+   * repeated (in an overlap). Local date-times from localEnds[i] up to localStarts[i + 1] have the
+   * single valid offset offsetSeconds[i + 1].
+   */
+  private final long[] localStarts;
+  private final long[] localEnds;
+
+  private ZoneCalendar(ZoneRules rules) {
+    this.rules = rules;
+    if (rules.isFixedOffset()) {
+      this.cacheStartSecond = Long.MIN_VALUE;
+      this.cacheEndSecond = Long.MAX_VALUE;
+      this.transitionSeconds = new long[0];
+      this.offsetSeconds = new int[] {rules.getOffset(Instant.EPOCH).getTotalSeconds()};
+      this.localStarts = new long[0];
+      this.localEnds = new long[0];
+      return;
+    }
+
+    long[] transitions = new long[16];
+    int[] offsets = new int[17];
+    Instant cacheStart = Instant.ofEpochSecond(FIRST_CACHED_EPOCH_SECOND);
+    offsets[0] = rules.getOffset(cacheStart).getTotalSeconds();
+    int numTransitions = 0;
+    ZoneOffsetTransition transition = rules.nextTransition(cacheStart);
+    while (transition != null && transition.toEpochSecond() < END_CACHED_EPOCH_SECOND) {
+      if (numTransitions == transitions.length) {
+        transitions = Arrays.copyOf(transitions, numTransitions * 2);
+        offsets = Arrays.copyOf(offsets, numTransitions * 2 + 1);
+      }
+      transitions[numTransitions] = transition.toEpochSecond();
+      offsets[numTransitions + 1] = transition.getOffsetAfter().getTotalSeconds();
+      numTransitions++;
+      transition = rules.nextTransition(transition.getInstant());
+    }
+    long[] starts = new long[numTransitions];
+    long[] ends = new long[numTransitions];
+    boolean localRangesAreOrdered = true;
+    for (int i = 0; i < numTransitions; i++) {
+      int before = offsets[i];
+      int after = offsets[i + 1];
+      starts[i] = transitions[i] + Math.min(before, after);
+      ends[i] = transitions[i] + Math.max(before, after);
+      if (i > 0 && starts[i] < ends[i - 1]) {
+        localRangesAreOrdered = false;
+      }
+    }
+
+    if (localRangesAreOrdered) {
+      this.cacheStartSecond = FIRST_CACHED_EPOCH_SECOND;
+      this.cacheEndSecond = END_CACHED_EPOCH_SECOND;
+    } else {
+      // Transitions that are closer together than their offset changes can't be looked up by
+      // local date-time, so only use ZoneRules. This does not happen in any known time zone.
+      this.cacheStartSecond = 0;
+      this.cacheEndSecond = 0;
+    }
+    this.transitionSeconds = Arrays.copyOf(transitions, numTransitions);
+    this.offsetSeconds = Arrays.copyOf(offsets, numTransitions + 1);
+    this.localStarts = starts;
+    this.localEnds = ends;
+  }
+
+  /**
+   * Get the shared ZoneCalendar for a time zone, creating it if it is not cached.
+   *
+   * @param zone The time zone.
+   * @return The ZoneCalendar for the time zone.
+   */
+  static ZoneCalendar of(ZoneId zone) {
+    return INSTANCES.getUnchecked(zone);
+  }
+
+  @VisibleForTesting
+  static long numCachedZones() {
+    INSTANCES.cleanUp();
+    return INSTANCES.size();
+  }
+
+  /**
+   * Get the offset from UTC in effect at an instant, like {@link ZoneRules#getOffset(Instant)}.
+   *
+   * @param epochSecond The instant, in seconds since the epoch.
+   * @return The offset, in seconds.
+   */
+  int offsetAt(long epochSecond) {
+    if (epochSecond < cacheStartSecond || epochSecond >= cacheEndSecond) {
+      return rules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+    }
+    // The number of transitions at or before the instant.
+    int low = 0;
+    int high = transitionSeconds.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (transitionSeconds[mid] <= epochSecond) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return offsetSeconds[low];
+  }
+
+  /**
+   * Get the instant of a local date-time, resolving it the way that
+   * {@link java.time.ZonedDateTime#ofLocal(LocalDateTime, ZoneId, ZoneOffset)} does: a local
+   * date-time in a gap is moved later by the length of the gap, and one in an overlap uses the
+   * preferred offset if it is valid, or else the earlier offset.
+   * <p>
+   * The offset of the resolved date-time is {@code offsetAt(epochSecond)}.
+   *
+   * @param localSecond The local date-time, in local epoch seconds.
+   * @param preferredOffset The offset to use in an overlap, in seconds, if it is valid.
+   * @return The instant, in seconds since the epoch.
+   */
+  long epochSecondOf(long localSecond, int preferredOffset) {
+    // Offsets are at most 18 hours, so the instant is within this range if the local date-time is.
+    long maxOffset = ZoneOffset.MAX.getTotalSeconds();
+    if (localSecond - maxOffset < cacheStartSecond || localSecond + maxOffset >= cacheEndSecond) {
+      return epochSecondUsingRules(localSecond, preferredOffset);
+    }
+    // The number of transitions whose skipped or repeated range starts at or before localSecond.
+    int low = 0;
+    int high = localStarts.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (localStarts[mid] <= localSecond) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    int index = low - 1;
+    if (index < 0 || localSecond >= localEnds[index]) {
+      return localSecond - offsetSeconds[low];
+    }
+    int before = offsetSeconds[index];
+    int after = offsetSeconds[index + 1];
+    if (after > before) {
+      // In a gap, moving the local date-time later by (after - before) and using the offset after
+      // the gap gives the same instant as using the offset before the gap.
+      return localSecond - before;
+    }
+    return localSecond - (preferredOffset == after ? after : before);
+  }
+
+  private long epochSecondUsingRules(long localSecond, int preferredOffset) {
+    LocalDateTime localDateTime = LocalDateTime.ofEpochSecond(localSecond, 0, ZoneOffset.UTC);
+    List<ZoneOffset> validOffsets = rules.getValidOffsets(localDateTime);
+    if (validOffsets.isEmpty()) {
+      ZoneOffsetTransition gap = rules.getTransition(localDateTime);
+      return localSecond - gap.getOffsetBefore().getTotalSeconds();
+    }
+    for (ZoneOffset offset : validOffsets) {
+      if (offset.getTotalSeconds() == preferredOffset) {
+        return localSecond - preferredOffset;
+      }
+    }
+    return localSecond - validOffsets.get(0).getTotalSeconds();
+  }
+
+  /**
+   * Get the proleptic month (year * 12 + month - 1) that contains a day.
+   *
+   * @param epochDay The day, as a number of days since 1970-01-01.
+   * @return The proleptic month.
+   */
+  static long prolepticMonthOf(long epochDay) {
+    if (epochDay < MONTH_START_EPOCH_DAYS[0]
+        || epochDay >= MONTH_START_EPOCH_DAYS[MONTH_START_EPOCH_DAYS.length - 1]) {
+      LocalDate date = LocalDate.ofEpochDay(epochDay);
+      return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+    // Estimate the month using the average length of a month (146097 days per 4800 months), and
+    // then correct the estimate, which is at most a few days off.
+    long averageMonthIndex = (epochDay - MONTH_START_EPOCH_DAYS[0]) * 4800 / 146097;
+    int index = (int) Math.min(averageMonthIndex + 2, MONTH_START_EPOCH_DAYS.length - 2);
+    while (MONTH_START_EPOCH_DAYS[index] > epochDay) {
+      index--;
+    }
+    return FIRST_CACHED_PROLEPTIC_MONTH + index;
+  }
+
+  /**
+   * Get the first day of a month.
+   *
+   * @param prolepticMonth The month, as year * 12 + month - 1.
+   * @return The first day of the month, as a number of days since 1970-01-01.
+   */
+  static long monthStartEpochDay(long prolepticMonth) {
+    long index = prolepticMonth - FIRST_CACHED_PROLEPTIC_MONTH;
+    if (index < 0 || index >= MONTH_START_EPOCH_DAYS.length) {
+      int year = Math.toIntExact(Math.floorDiv(prolepticMonth, 12));
+      return LocalDate.of(year, (int) Math.floorMod(prolepticMonth, 12) + 1, 1).toEpochDay();
+    }
+    return MONTH_START_EPOCH_DAYS[(int) index];
+  }
+
+  /**
+   * Add a number of months to a local date-time, like {@link LocalDateTime#plusMonths(long)}: if
+   * the day of the month is past the end of the resulting month, the last day of that month is
+   * used.
+   *
+   * @param localSecond The local date-time, in local epoch seconds.
+   * @param months The number of months to add.
+   * @return The resulting local date-time, in local epoch seconds.
+   */
+  static long plusMonths(long localSecond, long months) {
+    long epochDay = Math.floorDiv(localSecond, SECONDS_PER_DAY);
+    long secondOfDay = Math.floorMod(localSecond, SECONDS_PER_DAY);
+    long month = prolepticMonthOf(epochDay);
+    long dayOfMonth = epochDay - monthStartEpochDay(month);
+    long resultMonth = Math.addExact(month, months);
+    long resultMonthStart = monthStartEpochDay(resultMonth);
+    long resultMonthLength = monthStartEpochDay(resultMonth + 1) - resultMonthStart;
+    long resultDay = resultMonthStart + Math.min(dayOfMonth, resultMonthLength - 1);
+    return resultDay * SECONDS_PER_DAY + secondOfDay;
+  }
+
+  /**
+   * Get the number of whole months from one local date-time to a later one, like
+   * {@link LocalDateTime#until(java.time.temporal.Temporal, java.time.temporal.TemporalUnit)}.
+   *
+   * @param fromSecond The earlier local date-time, in local epoch seconds.
+   * @param fromNano The nanosecond-of-second of the earlier local date-time.
+   * @param toSecond The later local date-time, in local epoch seconds.
+   * @param toNano The nanosecond-of-second of the later local date-time.
+   * @return The number of whole months.
+   */
+  static long monthsUntil(long fromSecond, int fromNano, long toSecond, int toNano) {
+    long fromDay = Math.floorDiv(fromSecond, SECONDS_PER_DAY);
+    long toDay = wholeDaysEnd(fromSecond, fromNano, toSecond, toNano);
+    long fromMonth = prolepticMonthOf(fromDay);
+    long toMonth = prolepticMonthOf(toDay);
+    long fromPacked = fromMonth * 32 + (fromDay - monthStartEpochDay(fromMonth));
+    long toPacked = toMonth * 32 + (toDay - monthStartEpochDay(toMonth));
+    return (toPacked - fromPacked) / 32;
+  }
+
+  /**
+   * Get the number of whole days from one local date-time to a later one, like
+   * {@link LocalDateTime#until(java.time.temporal.Temporal, java.time.temporal.TemporalUnit)}.
+   *
+   * @param fromSecond The earlier local date-time, in local epoch seconds.
+   * @param fromNano The nanosecond-of-second of the earlier local date-time.
+   * @param toSecond The later local date-time, in local epoch seconds.
+   * @param toNano The nanosecond-of-second of the later local date-time.
+   * @return The number of whole days.
+   */
+  static long daysUntil(long fromSecond, int fromNano, long toSecond, int toNano) {
+    return wholeDaysEnd(fromSecond, fromNano, toSecond, toNano)
+        - Math.floorDiv(fromSecond, SECONDS_PER_DAY);
+  }
+
+  /**
+   * Get the epoch day of the later local date-time, or of the day before it if its time of day is
+   * earlier than that of the earlier local date-time, so that only whole days are counted.
+   */
+  private static long wholeDaysEnd(long fromSecond, int fromNano, long toSecond, int toNano) {
+    long fromDay = Math.floorDiv(fromSecond, SECONDS_PER_DAY);
+    long toDay = Math.floorDiv(toSecond, SECONDS_PER_DAY);
+    if (toDay > fromDay) {
+      long fromSecondOfDay = fromSecond - fromDay * SECONDS_PER_DAY;
+      long toSecondOfDay = toSecond - toDay * SECONDS_PER_DAY;
+      if (toSecondOfDay < fromSecondOfDay
+          || (toSecondOfDay == fromSecondOfDay && toNano < fromNano)) {
+        toDay--;
+      }
+    }
+    return toDay;
+  }
+}
@@ -0,0 +1,181 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.ERAS;
+import static java.time.temporal.ChronoUnit.FOREVER;
+import static java.time.temporal.ChronoUnit.HALF_DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static java.time.temporal.ChronoUnit.WEEKS;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import org.junit.Test;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.truth.Truth;
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public class AdaptiveDurationFormatterTest {
+  private static final DurationFormat ROUNDING_FORMAT =
+      DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+          .setLargestUnit(DAYS) //
+          .setRemainderHandling(DurationRemainderHandling.ROUND_HALF_EVEN) //
+          .build();
+
+  private static void checkFormattedDuration(AdaptiveDurationFormatter formatter,
+      Duration duration, String expected) {
+    assertThat(formatter.format(duration)).isEqualTo(expected);
+    if (duration.getSeconds() < Long.MAX_VALUE / 1_000_000_000L
+        && duration.getSeconds() > Long.MIN_VALUE / 1_000_000_000L) {
+      assertThat(formatter.formatNanos(duration.toNanos())).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void format_shouldUseLargestUnitWithValueOfAtLeastOne() {
+    AdaptiveDurationFormatter formatter = new AdaptiveDurationFormatter(ROUNDING_FORMAT, 4);
+    checkFormattedDuration(formatter, Duration.ofMillis(1_370), "1.370s");
+    checkFormattedDuration(formatter, Duration.ofNanos(412_345), "412.3µs");
+    checkFormattedDuration(formatter, Duration.ofSeconds(7_204), "2.001h");
+    checkFormattedDuration(formatter, Duration.ofMillis(-15), "-15.00ms");
+    checkFormattedDuration(formatter, Duration.ofNanos(7), "7.000ns");
+    checkFormattedDuration(formatter, Duration.ofMinutes(1), "1.000m");
+    checkFormattedDuration(formatter, Duration.ofHours(36), "1.500d");
+    checkFormattedDuration(formatter, Duration.ofDays(123_456), "123,456d");
+    checkFormattedDuration(formatter, Duration.ZERO, "0s");
+  }
+
+  @Test
+  public void format_withRoundingToPowerOfTen_shouldDropOneFractionDigit() {
+    AdaptiveDurationFormatter formatter = new AdaptiveDurationFormatter(ROUNDING_FORMAT, 4);
+    checkFormattedDuration(formatter, Duration.ofNanos(999_960_000), "1,000ms");
+    checkFormattedDuration(formatter, Duration.ofNanos(9_999_500), "10.00ms");
+    checkFormattedDuration(formatter, Duration.ofNanos(9_998_500), "9.998ms");
+    checkFormattedDuration(formatter, Duration.ofNanos(-9_999_500), "-10.00ms");
+  }
+
+  @Test
+  public void format_withTruncation_shouldNotRound() {
+    DurationFormat format = DurationFormat.builder(ROUNDING_FORMAT) //
+        .setRemainderHandling(DurationRemainderHandling.TRUNCATE) //
+        .build();
+    AdaptiveDurationFormatter formatter = new AdaptiveDurationFormatter(format, 3);
+    checkFormattedDuration(formatter, Duration.ofNanos(999_960_000), "999ms");
+    checkFormattedDuration(formatter, Duration.ofMillis(1_999), "1.99s");
+    checkFormattedDuration(formatter, Duration.ofMillis(-1_999), "-1.99s");
+  }
+
+  @Test
+  public void format_withValueSmallerThanSmallestUnit_shouldUseSmallestUnit() {
+    DurationFormat format = DurationFormat.builder(ROUNDING_FORMAT) //
+        .setSmallestUnit(MILLIS) //
+        .setUnitForZeroDuration(MILLIS) //
+        .build();
+    AdaptiveDurationFormatter formatter = new AdaptiveDurationFormatter(format, 3);
+    checkFormattedDuration(formatter, Duration.ofNanos(123_456), "0.12ms");
+    checkFormattedDuration(formatter, Duration.ofNanos(4_999), "0ms");
+    checkFormattedDuration(formatter, Duration.ofNanos(5_001), "0.01ms");
+  }
+
+  @Test
+  public void format_withSuppressedUnits_shouldSkipThem() {
+    DurationFormat format = DurationFormat.builder(ROUNDING_FORMAT) //
+        .setLargestUnit(WEEKS) //
+        .setSuppressedUnits(ImmutableSet.of(DAYS, HALF_DAYS, HOURS)) //
+        .build();
+    AdaptiveDurationFormatter formatter = new AdaptiveDurationFormatter(format, 2);
+    checkFormattedDuration(formatter, Duration.ofHours(2), "120m");
+    checkFormattedDuration(formatter, Duration.ofDays(3), "4,320m");
+    checkFormattedDuration(formatter, Duration.ofDays(10), "1.4w");
+  }
+
+  @Test
+  public void format_withDurationsAtTheLimitsOfDuration_shouldWork() {
+    AdaptiveDurationFormatter formatter = new AdaptiveDurationFormatter(ROUNDING_FORMAT, 18);
+    checkFormattedDuration(formatter, Duration.ofSeconds(Long.MIN_VALUE),
+        "-106,751,991,167,300.646d");
+    checkFormattedDuration(formatter, Duration.ofNanos(Long.MAX_VALUE),
+        "106,751.991167300646d");
+    checkFormattedDuration(formatter, Duration.ofNanos(1), "1.00000000000000000ns");
+  }
+
+  @Test
+  public void format_withLocale_shouldUseNumberSymbols() {
+    DurationFormat format = DurationFormat.builder(ROUNDING_FORMAT) //
+        .setNumberFormat(NumberFormat.getInstance(Locale.GERMANY)) //
+        .build();
+    AdaptiveDurationFormatter formatter = new AdaptiveDurationFormatter(format, 4);
+    checkFormattedDuration(formatter, Duration.ofMillis(1_370), "1,370s");
+    checkFormattedDuration(formatter, Duration.ofDays(12_345), "12.345d");
+  }
+
+  @Test
+  public void formatTo_shouldAppend() throws IOException {
+    AdaptiveDurationFormatter formatter = new AdaptiveDurationFormatter(ROUNDING_FORMAT, 4);
+    StringBuilder sb = new StringBuilder("took ");
+    Truth.assertThat(formatter.formatTo(Duration.ofMillis(1_370), sb)).isSameAs(sb);
+    Truth.assertThat(formatter.formatNanosTo(412_345, sb.append(", "))).isSameAs(sb);
+    Appendable appendable = sb.append(", ");
+    formatter.formatTo(Duration.ofMillis(-1), appendable);
+    formatter.formatNanosTo(1, appendable.append(", "));
+    Truth.assertThat(sb.toString()).isEqualTo("took 1.370s, 412.3µs, -1.000ms, 1.000ns");
+  }
+
+  @Test
+  public void format_shouldGetSuffixForRoundedValue() {
+    // Echo the quantity that the suffix is for, so the test can see how it was looked up.
+    UnitSuffixProvider echoingSuffixProvider = new UnitSuffixProvider() {
+      @Override
+      public String suffixFor(ChronoUnit unit, BigDecimal magnitude) {
+        return "[" + magnitude.toPlainString() + "]";
+      }
+
+      @Override
+      public String suffixFor(ChronoUnit unit, int magnitude) {
+        return "(" + magnitude + ")";
+      }
+    };
+    DurationFormat format = DurationFormat.builder(ROUNDING_FORMAT) //
+        .setUnitSuffixProvider(echoingSuffixProvider) //
+        .build();
+    AdaptiveDurationFormatter formatter = new AdaptiveDurationFormatter(format, 4);
+    checkFormattedDuration(formatter, Duration.ofMinutes(1), "1.000[1.000]");
+    checkFormattedDuration(formatter, Duration.ofNanos(-412_345), "-412.3[-412.3]");
+    checkFormattedDuration(formatter, Duration.ofNanos(999_960_000), "1,000(1000)");
+    checkFormattedDuration(formatter, Duration.ofDays(123_456), "123,456(123456)");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroSignificantDigits_shouldThrow() {
+    new AdaptiveDurationFormatter(ROUNDING_FORMAT, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withTooManySignificantDigits_shouldThrow() {
+    new AdaptiveDurationFormatter(ROUNDING_FORMAT,
+        AdaptiveDurationFormatter.MAX_SIGNIFICANT_DIGITS + 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withForever_shouldThrow() {
+    UnitSuffixProvider suffixProvider =
+        UnitSuffixProviders.fixedSuffixPerUnit(ImmutableMap.of(FOREVER, "∞", ERAS, "e"));
+    DurationFormat format = DurationFormat.builder(ROUNDING_FORMAT) //
+        .setUnitSuffixProvider(suffixProvider) //
+        .setLargestUnit(FOREVER) //
+        .setSmallestUnit(ERAS) //
+        .setUnitForZeroDuration(ERAS) //
+        .build();
+    new AdaptiveDurationFormatter(format, 4);
+  }
+
+  @Test
+  public void equalsAndHashCode_shouldWork() {
+    EqualsVerifier.forClass(AdaptiveDurationFormatter.class).verify();
+  }
+}
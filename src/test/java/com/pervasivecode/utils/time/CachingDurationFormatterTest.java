@@ -0,0 +1,90 @@
+package com.pervasivecode.utils.time;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class CachingDurationFormatterTest {
+  private static CachingDurationFormatter newCachingFormatter(long maximumSize) {
+    return new CachingDurationFormatter(
+        new DurationFormatter(DurationFormats.getUsDefaultInstance()), maximumSize);
+  }
+
+  @Test
+  public void format_withRepeatedValue_shouldReturnSameInstance() {
+    CachingDurationFormatter formatter = newCachingFormatter(100);
+    String first = formatter.format(Duration.ofMillis(250));
+    Truth.assertThat(first).isEqualTo("250ms");
+    Truth.assertThat(formatter.format(Duration.ofMillis(250))).isSameAs(first);
+    Truth.assertThat(formatter.formatNanos(250_000_000L)).isSameAs(first);
+    Truth.assertThat(formatter.formatNanos(-1_370_000_000L)).isEqualTo("-1s 370ms");
+
+    Truth.assertThat(formatter.hitCount()).isEqualTo(2);
+    Truth.assertThat(formatter.missCount()).isEqualTo(2);
+    Truth.assertThat(formatter.evictionCount()).isEqualTo(0);
+    Truth.assertThat(formatter.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void format_withMoreValuesThanMaximumSize_shouldEvict() {
+    CachingDurationFormatter formatter = newCachingFormatter(10);
+    for (int i = 0; i < 100; i++) {
+      Truth.assertThat(formatter.formatNanos(i)).isEqualTo(i == 0 ? "0s" : i + "ns");
+    }
+    Truth.assertThat(formatter.size()).isAtMost(10L);
+    Truth.assertThat(formatter.evictionCount()).isAtLeast(90L);
+    Truth.assertThat(formatter.missCount()).isEqualTo(100);
+
+    formatter.clear();
+    Truth.assertThat(formatter.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void format_withMaximumSizeOfZero_shouldNotCache() {
+    CachingDurationFormatter formatter = newCachingFormatter(0);
+    formatter.format(Duration.ofSeconds(1));
+    formatter.format(Duration.ofSeconds(1));
+    Truth.assertThat(formatter.hitCount()).isEqualTo(0);
+    Truth.assertThat(formatter.missCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void format_fromManyThreads_shouldWork() throws Exception {
+    CachingDurationFormatter formatter = newCachingFormatter(1000);
+    // Format each value once first. Concurrent requests for a value that isn't cached yet each
+    // count as a miss, even though only one of them formats it, so this makes the counts exact.
+    for (int i = 0; i < 8; i++) {
+      formatter.format(Duration.ofMillis(i * 250));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            long millis = (i % 8) * 250;
+            Truth.assertThat(formatter.formatNanos(millis * 1_000_000))
+                .isEqualTo(formatter.formatter().format(Duration.ofMillis(millis)));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    Truth.assertThat(formatter.missCount()).isEqualTo(8);
+    Truth.assertThat(formatter.hitCount()).isEqualTo(40_000);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withNegativeMaximumSize_shouldThrow() {
+    newCachingFormatter(-1);
+  }
+}
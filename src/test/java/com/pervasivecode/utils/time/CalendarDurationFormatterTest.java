@@ -0,0 +1,358 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.DECADES;
+import static java.time.temporal.ChronoUnit.HALF_DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+import static java.time.temporal.ChronoUnit.MONTHS;
+import static java.time.temporal.ChronoUnit.NANOS;
+import static java.time.temporal.ChronoUnit.WEEKS;
+import static java.time.temporal.ChronoUnit.YEARS;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public class CalendarDurationFormatterTest {
+  private static final ZoneId UTC = ZoneOffset.UTC;
+  private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+  private static final DurationFormat US_FORMAT = DurationFormats.getUsDefaultInstance();
+
+  private static final DurationFormat ROUNDING_FORMAT = DurationFormat.builder(US_FORMAT) //
+      .setRemainderHandling(DurationRemainderHandling.ROUND_HALF_EVEN) //
+      .build();
+
+  private static Instant instant(String localDateTime, ZoneId zone) {
+    return LocalDateTime.parse(localDateTime).atZone(zone).toInstant();
+  }
+
+  private static void checkFormattedSpan(CalendarDurationFormatter formatter, Instant start,
+      Instant end, String expected) {
+    assertThat(formatter.format(start, end)).isEqualTo(expected);
+  }
+
+  @Test
+  public void format_shouldUseExactCalendarMonths() {
+    CalendarDurationFormatter formatter = new CalendarDurationFormatter(US_FORMAT, UTC);
+    checkFormattedSpan(formatter, instant("2020-02-01T00:00", UTC),
+        instant("2020-03-01T00:00", UTC), "1mo");
+    checkFormattedSpan(formatter, instant("2019-02-01T00:00", UTC),
+        instant("2019-03-01T00:00", UTC), "1mo");
+    checkFormattedSpan(formatter, instant("2019-01-31T00:00", UTC),
+        instant("2019-03-01T00:00", UTC), "1mo 0w 1d");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2019-01-19T01:02:03.004", UTC), "2w 4d 1h 2m 3s 4ms");
+    checkFormattedSpan(formatter, instant("2016-02-29T00:00", UTC),
+        instant("2017-03-28T00:00", UTC), "1y 0mo 4w");
+    checkFormattedSpan(formatter, instant("2016-02-29T12:00", UTC),
+        instant("2020-02-29T11:59:59.999999999", UTC),
+        "3y 11mo 4w 2d 23h 59m 59s 999ms 999µs 999ns");
+
+    // The same spans, formatted as a Duration, use estimated lengths of months and years.
+    assertThat(new DurationFormatter(US_FORMAT).format(Duration.ofDays(29))).isEqualTo("4w 1d");
+  }
+
+  @Test
+  public void format_withMiddleZeroParts_shouldShowZeroParts() {
+    CalendarDurationFormatter formatter = new CalendarDurationFormatter(US_FORMAT, UTC);
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-01-02T00:00", UTC), "1y 0mo 0w 1d");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2019-02-01T00:00:01", UTC), "1mo 0w 0d 0h 0m 1s");
+  }
+
+  @Test
+  public void format_acrossDaylightSavingTimeChange_shouldUseLocalDays() {
+    CalendarDurationFormatter formatter = new CalendarDurationFormatter(US_FORMAT, NEW_YORK);
+    // 2019-03-10 was 23 hours long in New York.
+    Instant start = instant("2019-03-09T12:00", NEW_YORK);
+    checkFormattedSpan(formatter, start, instant("2019-03-10T12:00", NEW_YORK), "1d");
+    assertThat(Duration.between(start, instant("2019-03-10T12:00", NEW_YORK)))
+        .isEqualTo(Duration.ofHours(23));
+    checkFormattedSpan(formatter, start, instant("2019-03-10T11:30", NEW_YORK), "22h 30m");
+    // 2019-11-03 was 25 hours long.
+    checkFormattedSpan(formatter, instant("2019-11-02T12:00", NEW_YORK),
+        instant("2019-11-03T12:00", NEW_YORK), "1d");
+    checkFormattedSpan(formatter, instant("2019-11-02T12:00", NEW_YORK),
+        instant("2019-11-03T12:00", NEW_YORK).minusSeconds(1), "24h 59m 59s");
+  }
+
+  @Test
+  public void format_withEndBeforeStart_shouldFormatNegativeSpan() {
+    CalendarDurationFormatter formatter = new CalendarDurationFormatter(US_FORMAT, UTC);
+    checkFormattedSpan(formatter, instant("2019-03-01T00:00", UTC),
+        instant("2019-01-31T00:00", UTC), "-1mo 0w 1d");
+    checkFormattedSpan(formatter, instant("2019-03-01T00:00:01", UTC),
+        instant("2019-03-01T00:00", UTC), "-1s");
+  }
+
+  @Test
+  public void format_withSameStartAndEnd_shouldUseUnitForZeroDuration() {
+    CalendarDurationFormatter formatter = new CalendarDurationFormatter(US_FORMAT, UTC);
+    Instant instant = instant("2019-03-01T00:00", UTC);
+    checkFormattedSpan(formatter, instant, instant, "0s");
+  }
+
+  @Test
+  public void format_withoutSmallerCalendarUnits_shouldUseLargerUnits() {
+    DurationFormat format = DurationFormat.builder(US_FORMAT) //
+        .setSuppressedUnits(ImmutableSet.of(MONTHS, WEEKS, HALF_DAYS)) //
+        .build();
+    CalendarDurationFormatter formatter = new CalendarDurationFormatter(format, UTC);
+    checkFormattedSpan(formatter, instant("2016-02-29T00:00", UTC),
+        instant("2017-03-28T00:00", UTC), "1y 28d");
+    checkFormattedSpan(formatter, instant("2016-01-01T00:00", UTC),
+        instant("2016-12-31T00:00", UTC), "365d");
+  }
+
+  @Test
+  public void format_withMaxParts_shouldRoundByLengthOfNextUnit() {
+    DurationFormat format = DurationFormat.builder(ROUNDING_FORMAT).setMaxParts(1).build();
+    CalendarDurationFormatter formatter = new CalendarDurationFormatter(format, UTC);
+    // 4 days out of 7 rounds up.
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2019-01-19T00:00", UTC), "3w");
+    // 15 days out of 28 rounds up in February, but 15 days out of 31 rounds down in March.
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2019-02-16T00:00", UTC), "2mo");
+    checkFormattedSpan(formatter, instant("2019-02-01T00:00", UTC),
+        instant("2019-04-16T00:00", UTC), "2mo");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2019-01-01T06:00", UTC), "6h");
+    checkFormattedSpan(formatter, instant("2019-02-16T00:00", UTC),
+        instant("2019-01-01T00:00", UTC), "-2mo");
+  }
+
+  @Test
+  public void format_withTrailingZeroParts_shouldOmitThem() {
+    DurationFormat format = DurationFormat.builder(US_FORMAT) //
+        .setSmallestUnit(DAYS) //
+        .setUnitForZeroDuration(DAYS) //
+        .build();
+    CalendarDurationFormatter formatter = new CalendarDurationFormatter(format, UTC);
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-01-01T00:00", UTC), "1y");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2019-02-01T00:00", UTC), "1mo");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-01-01T12:00", UTC), "1y");
+    checkFormattedSpan(formatter, instant("2020-01-01T00:00", UTC),
+        instant("2019-01-01T00:00", UTC), "-1y");
+
+    // The same as DurationFormatter, for a span whose days are all 24 hours long.
+    checkFormattedSpan(new CalendarDurationFormatter(US_FORMAT, UTC),
+        instant("2019-01-01T00:00", UTC), instant("2019-01-15T00:00", UTC), "2w");
+    assertThat(new DurationFormatter(US_FORMAT).format(Duration.ofDays(14))).isEqualTo("2w");
+  }
+
+  @Test
+  public void format_withMaxPartsAndTruncation_shouldOmitTrailingZeroParts() {
+    DurationFormat format = DurationFormat.builder(US_FORMAT).setMaxParts(2).build();
+    CalendarDurationFormatter formatter = new CalendarDurationFormatter(format, UTC);
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-01-01T00:00", UTC), "1y");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-01-06T00:00", UTC), "1y");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-02-06T00:00", UTC), "1y 1mo");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-12-31T00:00", UTC), "1y 11mo");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2019-01-01T23:59:59", UTC), "23h 59m");
+  }
+
+  @Test
+  public void format_withMaxPartsAndRounding_shouldCarryIntoLargerParts() {
+    DurationFormat format = DurationFormat.builder(ROUNDING_FORMAT).setMaxParts(2).build();
+    CalendarDurationFormatter formatter = new CalendarDurationFormatter(format, UTC);
+    // 1y 11mo 3w: 3 weeks out of the 31 days of December rounds up to 12 months.
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-12-22T00:00", UTC), "2y");
+    checkFormattedSpan(formatter, instant("2020-12-22T00:00", UTC),
+        instant("2019-01-01T00:00", UTC), "-2y");
+    // 4w 2d 23h: rounding up to 3 days reaches the end of January.
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2019-01-31T23:00", UTC), "1mo");
+    // 23h 59m 40s: rounding up to 24 hours reaches the end of the day.
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2019-01-01T23:59:40", UTC), "1d");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-01-01T00:00", UTC), "1y");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-01-17T00:00", UTC), "1y 1mo");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-01-15T00:00", UTC), "1y");
+
+    format = DurationFormat.builder(ROUNDING_FORMAT).setMaxParts(3).build();
+    formatter = new CalendarDurationFormatter(format, UTC);
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-12-22T00:00", UTC), "1y 11mo 3w");
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", UTC),
+        instant("2020-12-31T20:00", UTC), "2y");
+
+    // 22h 40m rounds up to 23 hours, which is a whole day on 2019-03-10 in New York.
+    format = DurationFormat.builder(ROUNDING_FORMAT).setMaxParts(1).build();
+    checkFormattedSpan(new CalendarDurationFormatter(format, NEW_YORK),
+        instant("2019-03-09T12:00", NEW_YORK), instant("2019-03-10T11:40", NEW_YORK), "1d");
+  }
+
+  @Test
+  public void format_withFractionalSmallestUnit_shouldUseLengthOfLocalDay() {
+    DurationFormat format = DurationFormat.builder(ROUNDING_FORMAT) //
+        .setSmallestUnit(DAYS) //
+        .setUnitForZeroDuration(DAYS) //
+        .setNumFractionalDigits(1) //
+        .build();
+    CalendarDurationFormatter formatter = new CalendarDurationFormatter(format, NEW_YORK);
+    checkFormattedSpan(formatter, instant("2019-01-01T00:00", NEW_YORK),
+        instant("2019-01-02T12:00", NEW_YORK), "1.5d");
+    // 11.5 hours of a 23-hour day.
+    checkFormattedSpan(formatter, instant("2019-03-10T00:00", NEW_YORK),
+        instant("2019-03-10T12:30", NEW_YORK), "0.5d");
+    checkFormattedSpan(formatter, instant("2019-03-10T00:00", NEW_YORK),
+        instant("2019-03-10T00:30", NEW_YORK), "0d");
+  }
+
+  @Test
+  public void formatTo_shouldAppend() throws IOException {
+    CalendarDurationFormatter formatter = new CalendarDurationFormatter(US_FORMAT, UTC);
+    Instant start = instant("2019-01-31T00:00", UTC);
+    Instant end = instant("2019-03-01T00:00", UTC);
+    StringBuilder sb = new StringBuilder("took ");
+    assertThat(formatter.formatTo(start, end, sb)).isSameAs(sb);
+    assertThat(sb.toString()).isEqualTo("took 1mo 0w 1d");
+
+    StringWriter writer = new StringWriter();
+    assertThat(formatter.formatTo(start, end, (Appendable) writer)).isSameAs(writer);
+    assertThat(writer.toString()).isEqualTo("1mo 0w 1d");
+  }
+
+  /**
+   * Compare the parts of random spans in several time zones against the parts computed using
+   * ZonedDateTime, including instants outside of the years for which ZoneCalendar caches its
+   * tables.
+   */
+  @Test
+  public void formatToParts_shouldMatchZonedDateTimeArithmetic() {
+    DurationFormat format = DurationFormat.builder(US_FORMAT) //
+        .setSuppressedUnits(ImmutableSet.of(WEEKS, HALF_DAYS)) //
+        .build();
+    ImmutableSet<ZoneId> zones = ImmutableSet.of(UTC, NEW_YORK, ZoneId.of("Europe/London"),
+        ZoneId.of("Australia/Lord_Howe"), ZoneId.of("Pacific/Apia"),
+        ZoneId.of("America/St_Johns"), ZoneOffset.ofHoursMinutes(5, 30));
+    long minSecond = instant("1850-01-01T00:00", UTC).getEpochSecond();
+    long maxSecond = instant("2150-01-01T00:00", UTC).getEpochSecond();
+    long[] maxSpans = {3_600 * 3, 86_400 * 3, 86_400 * 70, 86_400 * 800L, 86_400 * 36_500L};
+    Random random = new Random(0x5EED);
+    FormattedDuration parts = new FormattedDuration();
+
+    for (ZoneId zone : zones) {
+      CalendarDurationFormatter formatter = new CalendarDurationFormatter(format, zone);
+      for (int i = 0; i < 10_000; i++) {
+        long startSecond = minSecond + Math.floorMod(random.nextLong(), maxSecond - minSecond);
+        Instant start = Instant.ofEpochSecond(startSecond, random.nextInt(1_000_000_000));
+        long maxSpan = maxSpans[random.nextInt(maxSpans.length)];
+        Instant end = Instant.ofEpochSecond(startSecond + Math.floorMod(random.nextLong(), maxSpan),
+            random.nextInt(1_000_000_000));
+
+        Map<ChronoUnit, Long> expected = expectedParts(start, end, zone);
+        String message = zone + " " + start + " " + end;
+        assertThat(partValues(formatter.formatToParts(start, end, parts))).named(message)
+            .isEqualTo(expected);
+        assertThat(parts.isNegative()).named(message).isEqualTo(start.isAfter(end));
+        assertThat(partValues(formatter.formatToParts(end, start, parts))).named(message)
+            .isEqualTo(expected);
+        assertThat(parts.isNegative()).named(message).isEqualTo(end.isAfter(start));
+      }
+    }
+  }
+
+  /**
+   * Split the span from start to end (or from end to start) into years, months, days, and the
+   * time units, ignoring any zero parts.
+   */
+  private static Map<ChronoUnit, Long> expectedParts(Instant start, Instant end, ZoneId zone) {
+    ZonedDateTime from = (start.isAfter(end) ? end : start).atZone(zone);
+    ZonedDateTime to = (start.isAfter(end) ? start : end).atZone(zone);
+    long months = from.until(to, MONTHS);
+    ZonedDateTime monthAnchor = from.plusMonths(months);
+    while (months > 0 && monthAnchor.isAfter(to)) {
+      months--;
+      monthAnchor = from.plusMonths(months);
+    }
+    long days = monthAnchor.until(to, DAYS);
+    ZonedDateTime dayAnchor = monthAnchor.plusDays(days);
+    while (days > 0 && dayAnchor.isAfter(to)) {
+      days--;
+      dayAnchor = monthAnchor.plusDays(days);
+    }
+    Duration rest = Duration.between(dayAnchor, to);
+
+    Map<ChronoUnit, Long> parts = new TreeMap<>();
+    putIfNonzero(parts, YEARS, months / 12);
+    putIfNonzero(parts, MONTHS, months % 12);
+    putIfNonzero(parts, DAYS, days);
+    putIfNonzero(parts, HOURS, rest.toHours());
+    putIfNonzero(parts, ChronoUnit.MINUTES, rest.toMinutes() % 60);
+    putIfNonzero(parts, ChronoUnit.SECONDS, rest.getSeconds() % 60);
+    putIfNonzero(parts, ChronoUnit.MILLIS, rest.getNano() / 1_000_000L);
+    putIfNonzero(parts, ChronoUnit.MICROS, rest.getNano() / 1_000L % 1_000);
+    putIfNonzero(parts, NANOS, rest.getNano() % 1_000L);
+    if (parts.isEmpty()) {
+      parts.put(ChronoUnit.SECONDS, 0L);
+    }
+    return parts;
+  }
+
+  private static void putIfNonzero(Map<ChronoUnit, Long> parts, ChronoUnit unit, long value) {
+    if (value != 0) {
+      parts.put(unit, value);
+    }
+  }
+
+  private static Map<ChronoUnit, Long> partValues(FormattedDuration parts) {
+    Map<ChronoUnit, Long> values = new TreeMap<>();
+    for (int i = 0; i < parts.numParts(); i++) {
+      long value = Math.abs(parts.value(i));
+      if (value != 0 || parts.numParts() == 1) {
+        values.put(parts.unit(i), value);
+      }
+    }
+    return values;
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withUnitLargerThanYears_shouldThrow() {
+    UnitSuffixProvider suffixProvider =
+        UnitSuffixProviders.fixedSuffixPerUnit(ImmutableMap.of(DECADES, "dec", YEARS, "y"));
+    DurationFormat format = DurationFormat.builder(US_FORMAT) //
+        .setUnitSuffixProvider(suffixProvider) //
+        .setLargestUnit(DECADES) //
+        .setSmallestUnit(YEARS) //
+        .setUnitForZeroDuration(YEARS) //
+        .build();
+    new CalendarDurationFormatter(format, UTC);
+  }
+
+  @Test
+  public void equals_shouldWork() {
+    EqualsVerifier.forClass(CalendarDurationFormatter.class) //
+        .withPrefabValues(ZoneId.class, UTC, NEW_YORK) //
+        .withPrefabValues(ZoneCalendar.class, ZoneCalendar.of(UTC), ZoneCalendar.of(NEW_YORK)) //
+        .verify();
+  }
+}
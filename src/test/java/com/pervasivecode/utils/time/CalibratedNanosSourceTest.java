@@ -0,0 +1,183 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.truth.Truth.assertThat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import com.pervasivecode.utils.time.testing.FakePeriodicRunner;
+import com.pervasivecode.utils.time.testing.FakeTimeSource;
+
+public class CalibratedNanosSourceTest {
+  private static final long START_TICKS = 123_456_789L;
+
+  private long ticks;
+  private FakeTimeSource wallClock;
+  private FakePeriodicRunner runner;
+  private long startEpochNanos;
+
+  private static long epochNanos(Instant instant) {
+    return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+  }
+
+  private CalibratedNanosSource newSource(int maxSlewPartsPerMillion) {
+    return new CalibratedNanosSource(() -> ticks, wallClock, runner, maxSlewPartsPerMillion);
+  }
+
+  @Before
+  public void setup() {
+    ticks = START_TICKS;
+    wallClock = new FakeTimeSource(false);
+    runner = new FakePeriodicRunner();
+    startEpochNanos = epochNanos(wallClock.now());
+  }
+
+  @Test
+  public void currentTimeNanoPrecision_shouldAdvanceWithTicker() {
+    CalibratedNanosSource source = newSource(500);
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(startEpochNanos);
+    ticks += 1_234_567;
+    // The wall clock is not read again until the source is recalibrated.
+    wallClock.advance(Duration.ofSeconds(10));
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(startEpochNanos + 1_234_567);
+  }
+
+  @Test
+  public void recalibrate_withSlowTicker_shouldSlewForward() {
+    CalibratedNanosSource source = newSource(1_000);
+    source.start();
+    // The ticker is 1ms behind the wall clock after one minute.
+    ticks += 60_000_000_000L;
+    wallClock.advance(Duration.ofMillis(60_001));
+    runner.runOnce();
+    long recalibratedAt = startEpochNanos + 60_000_000_000L;
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(recalibratedAt);
+
+    // At 1,000 parts per million, the 1ms difference is made up over the next second.
+    ticks += 500_000_000L;
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(recalibratedAt + 500_500_000L);
+    ticks += 500_000_000L;
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(recalibratedAt + 1_001_000_000L);
+    ticks += 500_000_000L;
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(recalibratedAt + 1_501_000_000L);
+    assertThat(source.currentTimeNanoPrecision())
+        .isEqualTo(epochNanos(wallClock.now()) + 1_500_000_000L);
+  }
+
+  @Test
+  public void recalibrate_withWallClockStepBackward_shouldNotGoBackward() {
+    CalibratedNanosSource source = newSource(100_000);
+    source.start();
+    ticks += 1_000_000_000L;
+    wallClock.advance(Duration.ofMillis(-5_000));
+    runner.runOnce();
+
+    long previous = source.currentTimeNanoPrecision();
+    assertThat(previous).isEqualTo(startEpochNanos + 1_000_000_000L);
+    // At 100,000 parts per million, the values advance at 90% of the ticker's rate until the
+    // 6-second difference has been made up after 60 seconds.
+    for (int i = 0; i < 70; i++) {
+      ticks += 1_000_000_000L;
+      long current = source.currentTimeNanoPrecision();
+      assertThat(current - previous).isEqualTo(i < 60 ? 900_000_000L : 1_000_000_000L);
+      previous = current;
+    }
+    assertThat(previous).isEqualTo(epochNanos(wallClock.now()) + 70_000_000_000L);
+  }
+
+  @Test
+  public void recalibrate_duringSlew_shouldContinueFromCurrentValue() {
+    CalibratedNanosSource source = newSource(1_000);
+    source.start();
+    ticks += 1_000_000_000L;
+    wallClock.advance(Duration.ofMillis(1_010));
+    runner.runOnce();
+    ticks += 1_000_000_000L;
+    long beforeSecondRecalibration = source.currentTimeNanoPrecision();
+    assertThat(beforeSecondRecalibration).isEqualTo(startEpochNanos + 2_001_000_000L);
+
+    // The remaining 9ms is still slewed, from the current value.
+    wallClock.advance(Duration.ofMillis(1_000));
+    runner.runOnce();
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(beforeSecondRecalibration);
+    ticks += 9_000_000_000L;
+    assertThat(source.currentTimeNanoPrecision())
+        .isEqualTo(epochNanos(wallClock.now()) + 9_000_000_000L);
+  }
+
+  @Test
+  public void recalibrate_withConcurrentReads_shouldNotGoBackward() {
+    // A ticker that advances by one second per read, and a wall clock that also reads the source,
+    // as another thread could while the source is being recalibrated.
+    long[] maxValueDuringRecalibration = {Long.MIN_VALUE};
+    CalibratedNanosSource[] reader = new CalibratedNanosSource[1];
+    long[] ticksPerRead = {0};
+    TimeSource readingWallClock = () -> {
+      if (reader[0] != null) {
+        maxValueDuringRecalibration[0] =
+            Math.max(maxValueDuringRecalibration[0], reader[0].currentTimeNanoPrecision());
+      }
+      return wallClock.now();
+    };
+    CalibratedNanosSource source = new CalibratedNanosSource(() -> ticks += ticksPerRead[0],
+        readingWallClock, runner, 900_000);
+    source.start();
+    // Slew forward at 1.9 times the ticker's rate...
+    ticks += 1_000_000_000_000L;
+    wallClock.advance(Duration.ofSeconds(3_000));
+    runner.runOnce();
+
+    // ...and then backward at 0.1 times the ticker's rate.
+    reader[0] = source;
+    ticksPerRead[0] = 1_000_000_000L;
+    wallClock.advance(Duration.ofSeconds(-5_000));
+    runner.runOnce();
+    assertThat(maxValueDuringRecalibration[0]).isGreaterThan(Long.MIN_VALUE);
+    assertThat(source.currentTimeNanoPrecision()).isGreaterThan(maxValueDuringRecalibration[0]);
+  }
+
+  @Test
+  public void stop_shouldStopRecalibrating() {
+    CalibratedNanosSource source = newSource(500);
+    source.start();
+    assertThat(runner.started).isTrue();
+    source.stop();
+    assertThat(runner.started).isFalse();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withZeroSlewRate_shouldThrow() {
+    newSource(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withSlewRateOfOneMillionPartsPerMillion_shouldThrow() {
+    newSource(1_000_000);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void create_withZeroInterval_shouldThrow() {
+    CalibratedNanosSource.create(new SimplePeriodicRunnerFactory(), Duration.ZERO);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void create_withNegativeInterval_shouldThrow() {
+    CalibratedNanosSource.create(new SimplePeriodicRunnerFactory(), Duration.ofMillis(-1));
+  }
+
+  @Test
+  public void create_shouldBeCloseToSystemClock() throws InterruptedException {
+    SimplePeriodicRunnerFactory factory = new SimplePeriodicRunnerFactory();
+    try {
+      CalibratedNanosSource source = CalibratedNanosSource.create(factory, Duration.ofMillis(10));
+      source.start();
+      Thread.sleep(50);
+      long difference = source.currentTimeNanoPrecision() - epochNanos(Instant.now());
+      assertThat(Math.abs(difference)).isLessThan(TimeUnit.SECONDS.toNanos(1));
+      source.stop();
+    } finally {
+      factory.shutdownGracefully(1, TimeUnit.SECONDS);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import com.pervasivecode.utils.time.testing.FakePeriodicRunner;
+import com.pervasivecode.utils.time.testing.FakeTimeSource;
+
+public class CoarseTimeSourceTest {
+  private FakeTimeSource clock;
+  private FakePeriodicRunner runner;
+  private CoarseTimeSource timeSource;
+
+  @Before
+  public void setup() {
+    clock = new FakeTimeSource(false);
+    runner = new FakePeriodicRunner();
+    timeSource = new CoarseTimeSource(clock, runner);
+  }
+
+  @Test
+  public void now_beforeStart_shouldReturnTimeWhenCreated() {
+    Instant created = clock.now();
+    clock.advance(Duration.ofMillis(5));
+    assertThat(timeSource.now()).isEqualTo(created);
+    assertThat(timeSource.currentTimeMillis()).isEqualTo(created.toEpochMilli());
+  }
+
+  @Test
+  public void now_shouldOnlyChangeOnEachTick() {
+    timeSource.start();
+    assertThat(runner.started).isTrue();
+
+    clock.advance(Duration.ofMillis(7));
+    Instant expected = clock.now();
+    assertThat(timeSource.now()).isNotEqualTo(expected);
+    runner.runOnce();
+    assertThat(timeSource.now()).isEqualTo(expected);
+    assertThat(timeSource.currentTimeMillis()).isEqualTo(expected.toEpochMilli());
+
+    clock.advance(Duration.ofMillis(3));
+    assertThat(timeSource.now()).isEqualTo(expected);
+    runner.runOnce();
+    assertThat(timeSource.now()).isEqualTo(clock.now());
+  }
+
+  @Test
+  public void start_shouldRefreshRightAway() {
+    timeSource.start();
+    timeSource.stop();
+    assertThat(runner.started).isFalse();
+
+    clock.advance(Duration.ofSeconds(30));
+    assertThat(timeSource.now()).isNotEqualTo(clock.now());
+    timeSource.start();
+    assertThat(timeSource.now()).isEqualTo(clock.now());
+  }
+
+  @Test
+  public void start_whenStarted_shouldThrow() {
+    timeSource.start();
+    try {
+      timeSource.start();
+      fail("Expected start() to throw when already started.");
+    } catch (IllegalStateException ise) {
+      assertThat(ise).hasMessageThat().contains("already been started");
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void stop_whenNotStarted_shouldThrow() {
+    timeSource.stop();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void create_withSubMillisecondTick_shouldThrow() {
+    CoarseTimeSource.create(new SimplePeriodicRunnerFactory(), Duration.ofNanos(500_000));
+  }
+
+  @Test
+  public void create_shouldRefreshFromSystemClock() throws InterruptedException {
+    SimplePeriodicRunnerFactory factory = new SimplePeriodicRunnerFactory();
+    try {
+      CoarseTimeSource systemTimeSource = CoarseTimeSource.create(factory, Duration.ofMillis(1));
+      systemTimeSource.start();
+      Instant first = systemTimeSource.now();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (systemTimeSource.now().equals(first) && System.nanoTime() < deadline) {
+        Thread.sleep(1);
+      }
+      assertThat(systemTimeSource.now()).isGreaterThan(first);
+      systemTimeSource.stop();
+    } finally {
+      factory.shutdownGracefully(1, TimeUnit.SECONDS);
+    }
+  }
+}
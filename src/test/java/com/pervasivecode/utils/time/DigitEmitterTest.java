@@ -0,0 +1,116 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.truth.Truth.assertThat;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Locale;
+import org.junit.Test;
+
+public class DigitEmitterTest {
+  private static final Locale[] LOCALES = {Locale.US, Locale.GERMANY, Locale.FRANCE,
+      new Locale("de", "CH"), new Locale("ar", "EG"), new Locale("fa", "IR")};
+
+  private static final long[] LONG_VALUES = {0, 1, -1, 7, 999, 1000, -1000, 123_456_789,
+      -987_654_321_012L, Long.MAX_VALUE, Long.MIN_VALUE};
+
+  private static final String[] DECIMAL_VALUES =
+      {"0", "0.0004", "-0.0004", "0.5", "1.5", "2.5", "-2.5", "1234.5678", "-0.07", "100.0001"};
+
+  private static String appendInteger(DigitEmitter emitter, long value) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    // The magnitude of Long.MIN_VALUE is 2^63, which is Long.MIN_VALUE as an unsigned long.
+    emitter.appendInteger(value < 0, value < 0 ? -value : value, 0, 0, sb);
+    return sb.toString();
+  }
+
+  private static String appendInteger(DigitEmitter emitter, BigInteger value, int numLowDigits)
+      throws IOException {
+    StringBuilder sb = new StringBuilder();
+    BigInteger[] highAndLow = value.abs().divideAndRemainder(BigInteger.TEN.pow(numLowDigits));
+    emitter.appendInteger(value.signum() < 0, highAndLow[0].longValue(),
+        highAndLow[1].longValueExact(), numLowDigits, sb);
+    return sb.toString();
+  }
+
+  private static String appendDecimal(DigitEmitter emitter, BigDecimal roundedValue)
+      throws IOException {
+    StringBuilder sb = new StringBuilder();
+    emitter.appendDecimal(roundedValue, sb);
+    return sb.toString();
+  }
+
+  private static String appendScaledDecimal(DigitEmitter emitter, BigDecimal roundedValue)
+      throws IOException {
+    StringBuilder sb = new StringBuilder();
+    BigDecimal magnitude = roundedValue.abs();
+    long integerMagnitude = magnitude.longValue();
+    long scaledFraction = magnitude.subtract(BigDecimal.valueOf(integerMagnitude))
+        .movePointRight(roundedValue.scale()).longValueExact();
+    emitter.appendDecimal(roundedValue.signum() < 0, integerMagnitude, 0, 0, scaledFraction, sb);
+    return sb.toString();
+  }
+
+  private static NumberFormat wholeNumberFormat(NumberFormat numberFormat) {
+    NumberFormat nf = (NumberFormat) numberFormat.clone();
+    nf.setMaximumFractionDigits(0);
+    return nf;
+  }
+
+  private static NumberFormat fractionalNumberFormat(NumberFormat numberFormat, int numDigits) {
+    NumberFormat nf = (NumberFormat) numberFormat.clone();
+    nf.setMinimumFractionDigits(0);
+    nf.setMaximumFractionDigits(numDigits);
+    nf.setRoundingMode(RoundingMode.HALF_EVEN);
+    return nf;
+  }
+
+  private static void checkSameAsNumberFormat(NumberFormat numberFormat) throws IOException {
+    for (int numDigits = 0; numDigits <= 3; numDigits++) {
+      DigitEmitter emitter = new DigitEmitter(numberFormat, numDigits);
+      NumberFormat whole = wholeNumberFormat(numberFormat);
+      NumberFormat fractional = fractionalNumberFormat(numberFormat, numDigits);
+
+      for (long value : LONG_VALUES) {
+        assertThat(appendInteger(emitter, value)).isEqualTo(whole.format(value));
+        BigInteger bigValue = BigInteger.valueOf(value).multiply(BigInteger.valueOf(1000));
+        assertThat(appendInteger(emitter, bigValue, 3)).isEqualTo(whole.format(bigValue));
+        BigInteger lowDigits = BigInteger.valueOf(value < 0 ? -123 : 123);
+        bigValue = BigInteger.valueOf(value).multiply(BigInteger.TEN.pow(9)).add(lowDigits);
+        assertThat(appendInteger(emitter, bigValue, 9)).isEqualTo(whole.format(bigValue));
+      }
+      for (String value : DECIMAL_VALUES) {
+        BigDecimal decimal = new BigDecimal(value);
+        BigDecimal rounded = decimal.setScale(numDigits, RoundingMode.HALF_EVEN);
+        String expected = fractional.format(rounded);
+        assertThat(appendDecimal(emitter, rounded)).isEqualTo(expected);
+        assertThat(appendScaledDecimal(emitter, rounded)).isEqualTo(expected);
+      }
+    }
+  }
+
+  @Test
+  public void append_shouldMatchNumberFormat() throws IOException {
+    for (Locale locale : LOCALES) {
+      checkSameAsNumberFormat(NumberFormat.getInstance(locale));
+    }
+  }
+
+  @Test
+  public void append_withoutGrouping_shouldMatchNumberFormat() throws IOException {
+    NumberFormat numberFormat = NumberFormat.getInstance(Locale.US);
+    numberFormat.setGroupingUsed(false);
+    checkSameAsNumberFormat(numberFormat);
+  }
+
+  @Test
+  public void append_withUnusualDecimalFormats_shouldMatchNumberFormat() throws IOException {
+    checkSameAsNumberFormat(new DecimalFormat("#,####0.###;(#)"));
+    checkSameAsNumberFormat(NumberFormat.getPercentInstance(Locale.US));
+    checkSameAsNumberFormat(NumberFormat.getCurrencyInstance(Locale.US));
+    checkSameAsNumberFormat(new DecimalFormat("000"));
+  }
+}
@@ -0,0 +1,151 @@
+package com.pervasivecode.utils.time;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.NumberFormat;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.truth.Truth;
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public class DurationExtractorTest {
+  private static final String LOG_TEXT = "" //
+      + "GET /a 200 took 1s 370ms\n" //
+      + "GET /b 200 took 15µs, retried after -1m 30s\n" //
+      + "v4mp 12:00 build 1234 took 2h 0m\n" // "4m", "12", "1234" and "0m" aren't Durations.
+      + "GET /c 200 took 999ns";
+
+  private static List<Long> extractFromBytes(DurationExtractor extractor, String text) {
+    List<Long> values = new ArrayList<>();
+    long count = extractor.extractNanos(ByteBuffer.wrap(text.getBytes(UTF_8)), values::add);
+    Truth.assertThat(count).isEqualTo(values.size());
+    return values;
+  }
+
+  @Test
+  public void extractNanos_withByteBuffer_shouldFindDurations() {
+    DurationExtractor extractor = new DurationExtractor(DurationFormats.getUsDefaultInstance());
+    Truth.assertThat(extractFromBytes(extractor, LOG_TEXT))
+        .containsExactly(1_370_000_000L, 15_000L, -90_000_000_000L, 7_200_000_000_000L, 999L)
+        .inOrder();
+  }
+
+  @Test
+  public void extractNanos_withByteBuffer_shouldNotChangePositionOrLimit() {
+    DurationExtractor extractor = new DurationExtractor(DurationFormats.getUsDefaultInstance());
+    ByteBuffer bytes = ByteBuffer.wrap("1s 2s 3s 4s".getBytes(UTF_8));
+    bytes.position(3).limit(8);
+    List<Long> values = new ArrayList<>();
+    extractor.extractNanos(bytes, values::add);
+    Truth.assertThat(values).containsExactly(2_000_000_000L, 3_000_000_000L).inOrder();
+    Truth.assertThat(bytes.position()).isEqualTo(3);
+    Truth.assertThat(bytes.limit()).isEqualTo(8);
+  }
+
+  @Test
+  public void extractNanos_withNonAsciiSymbols_shouldFindDurations() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setUnitSuffixProvider(UnitSuffixProviders.singularAndPlural( //
+            ImmutableMap.of(ChronoUnit.MINUTES, " Minute", ChronoUnit.SECONDS,
+                " Sekunde"), //
+            ImmutableMap.of(ChronoUnit.MINUTES, " Minuten", ChronoUnit.SECONDS,
+                " Sekunden"))) //
+        .setPartDelimiter(" und ") //
+        .setNumberFormat(NumberFormat.getInstance(Locale.FRANCE)) //
+        .setLargestUnit(ChronoUnit.MINUTES) //
+        .setSmallestUnit(ChronoUnit.SECONDS) //
+        .setNumFractionalDigits(2) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(format);
+    String text = "Dauer: " + formatter.formatNanos(61_500_000_000L) + "; Pause: "
+        + formatter.formatNanos(1_234_000_000_000L) + ".";
+    Truth.assertThat(text).isEqualTo(
+        "Dauer: 1 Minute und 1,5 Sekunden; Pause: 20 Minuten und 34 Sekunden.");
+    // A France format's grouping separator is not ASCII.
+    String grouped = formatter.formatNanos(123_456_000_000_000L);
+    Truth.assertThat(grouped).contains(" ");
+
+    DurationExtractor extractor = new DurationExtractor(format);
+    Truth.assertThat(extractFromBytes(extractor, text + grouped))
+        .containsExactly(61_500_000_000L, 1_234_000_000_000L, 123_456_000_000_000L).inOrder();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withNonAsciiDigits_shouldThrow() {
+    new DurationExtractor(DurationFormat.builder(DurationFormats.getUsDefaultInstance())
+        .setNumberFormat(NumberFormat.getInstance(Locale.forLanguageTag("ar-EG"))).build());
+  }
+
+  private static Path writeRandomLog(DurationFormatter formatter, List<Long> expectedValues)
+      throws IOException {
+    Random random = new Random(42);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 2_000; i++) {
+      long nanos = random.nextLong() >> (20 + random.nextInt(44));
+      expectedValues.add(nanos);
+      text.append("request ").append(i).append(" took ");
+      formatter.formatNanosTo(nanos, text);
+      text.append(random.nextBoolean() ? "\n" : " total\n");
+    }
+    Path file = Files.createTempFile("DurationExtractorTest", ".log");
+    file.toFile().deleteOnExit();
+    Files.write(file, text.toString().getBytes(UTF_8));
+    return file;
+  }
+
+  @Test
+  public void extractNanos_withFileChannel_shouldFindDurationsInEveryChunk() throws IOException {
+    DurationFormat format = DurationFormats.getUsDefaultInstance();
+    List<Long> expectedValues = new ArrayList<>();
+    Path file = writeRandomLog(new DurationFormatter(format), expectedValues);
+
+    // Small chunks force Durations to be found across many chunk boundaries.
+    DurationExtractor extractor = new DurationExtractor(format, 1000);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      List<Long> values = new ArrayList<>();
+      Truth.assertThat(extractor.extractNanos(channel, values::add))
+          .isEqualTo(expectedValues.size());
+      Truth.assertThat(values).containsExactlyElementsIn(expectedValues).inOrder();
+
+      List<Long> parallelValues = Collections.synchronizedList(new ArrayList<>());
+      ForkJoinPool pool = new ForkJoinPool(4);
+      try {
+        Truth.assertThat(extractor.extractNanos(channel, parallelValues::add, pool))
+            .isEqualTo(expectedValues.size());
+      } finally {
+        pool.shutdown();
+      }
+      Truth.assertThat(parallelValues).containsExactlyElementsIn(expectedValues);
+    }
+  }
+
+  @Test
+  public void extractNanos_withLinesLongerThanChunks_shouldScanWholeFile() throws IOException {
+    Path file = Files.createTempFile("DurationExtractorTest", ".log");
+    file.toFile().deleteOnExit();
+    Files.write(file, "1s 2s 3s 4s 5s 6s 7s 8s 9s".getBytes(UTF_8));
+    DurationExtractor extractor = new DurationExtractor(DurationFormats.getUsDefaultInstance(), 9);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // Each chunk happens to end between two Durations.
+      Truth.assertThat(extractor.extractNanos(channel, nanos -> {
+      })).isEqualTo(9L);
+    }
+  }
+
+  @Test
+  public void equalsAndHashCode_shouldWork() {
+    EqualsVerifier.forClass(DurationExtractor.class).verify();
+  }
+}
@@ -0,0 +1,54 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.time.temporal.ChronoUnit.HOURS;
+import static java.time.temporal.ChronoUnit.MILLENNIA;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static java.time.temporal.ChronoUnit.MINUTES;
+import static java.time.temporal.ChronoUnit.SECONDS;
+import java.time.temporal.ChronoUnit;
+import org.junit.Test;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class DurationFormatPlanTest {
+  @Test
+  public void plan_shouldListUnitsInDescendingOrder() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setLargestUnit(HOURS) //
+        .setSmallestUnit(MILLIS) //
+        .setSuppressedUnits(ImmutableSet.of(MINUTES)) //
+        .setNumFractionalDigits(2) //
+        .build();
+    DurationFormatPlan plan = new DurationFormatPlan(format);
+
+    assertThat(plan.unitsInDescOrder).asList().containsExactly(HOURS, SECONDS, MILLIS).inOrder();
+    assertThat(plan.unitSeconds).asList().containsExactly(3_600L, 1L, 0L).inOrder();
+    assertThat(plan.unitNanos).asList().containsExactly(0, 0, 1_000_000).inOrder();
+    assertThat(plan.unitsPerSecond[2]).isEqualTo(1000L);
+    assertThat(plan.unitsPerSecondDigits[2]).isEqualTo(3);
+    assertThat(plan.roundWithLongArithmetic).asList().containsExactly(true, true, true).inOrder();
+    assertThat(plan.smallestUnitIndex).isEqualTo(2);
+    assertThat(plan.roundSmallestUnit).isTrue();
+    assertThat(plan.numFractionalDigits).isEqualTo(2);
+    assertThat(plan.formattedZero).isEqualTo("0s");
+  }
+
+  @Test
+  public void plan_withUnitsLongerThanLongNanos_shouldWork() {
+    UnitSuffixProvider suffixProvider = UnitSuffixProviders.fixedSuffixPerUnit(
+        ImmutableMap.of(MILLENNIA, "ka", ChronoUnit.CENTURIES, "c", ChronoUnit.DECADES, "dec"));
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setUnitSuffixProvider(suffixProvider) //
+        .setLargestUnit(MILLENNIA) //
+        .setSmallestUnit(ChronoUnit.DECADES) //
+        .setUnitForZeroDuration(ChronoUnit.DECADES) //
+        .build();
+    DurationFormatPlan plan = new DurationFormatPlan(format);
+
+    assertThat(plan.unitSeconds[0]).isEqualTo(31_556_952_000L);
+    assertThat(plan.unitNanos[0]).isEqualTo(0);
+    assertThat(plan.roundSmallestUnit).isFalse();
+    assertThat(plan.formattedZero).isEqualTo("0dec");
+  }
+}
@@ -133,6 +133,18 @@ public class DurationFormatTest {
     }
   }
 
+  @Test
+  public void build_withZeroMaxParts_shouldThrow() {
+    try {
+      validBuilder() //
+          .setMaxParts(0) //
+          .build();
+      Truth.assert_().fail("Expected an exception here.");
+    } catch (IllegalStateException ise) {
+      assertThat(ise).hasMessageThat().contains("maxParts");
+    }
+  }
+
   @Test
   public void build_withSaneValues_shouldWork() {
     validBuilder().build();
@@ -0,0 +1,121 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.pervasivecode.utils.time.DurationFormatStyle.LONG;
+import static com.pervasivecode.utils.time.DurationFormatStyle.SHORT;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class DurationFormatsTest {
+  private static final Duration ONE_HOUR_TEN_MINUTES_ONE_SECOND =
+      Duration.ofHours(1).plusMinutes(10).plusSeconds(1);
+
+  private static String format(Locale locale, DurationFormatStyle style, Duration duration) {
+    return DurationFormats.getFormatter(locale, style).format(duration);
+  }
+
+  @Test
+  public void getInstance_shouldReturnNewInstance() {
+    DurationFormat format = DurationFormats.getInstance(Locale.GERMANY, LONG);
+    assertThat(DurationFormats.getInstance(Locale.GERMANY, LONG)).isNotSameAs(format);
+    assertThat(DurationFormats.getInstance(Locale.GERMANY, LONG)).isEqualTo(format);
+    assertThat(DurationFormats.getInstance(Locale.GERMANY, SHORT)).isNotEqualTo(format);
+    assertThat(DurationFormats.getUsDefaultInstance())
+        .isNotSameAs(DurationFormats.getUsDefaultInstance());
+    assertThat(DurationFormats.getUsDefaultInstance())
+        .isEqualTo(DurationFormats.getInstance(Locale.US, SHORT));
+  }
+
+  @Test
+  public void getFormatter_shouldReturnSharedInstance() {
+    assertThat(DurationFormats.getFormatter(Locale.US, SHORT))
+        .isSameAs(DurationFormats.getFormatter(Locale.US, SHORT));
+    assertThat(DurationFormats.getFormatter(Locale.US, SHORT))
+        .isEqualTo(new DurationFormatter(DurationFormats.getUsDefaultInstance()));
+  }
+
+  @Test
+  public void getInstance_whenNumberFormatIsModified_shouldNotAffectOtherCallers() {
+    Duration duration = ChronoUnit.YEARS.getDuration().multipliedBy(1_234);
+    DurationFormat format = DurationFormats.getUsDefaultInstance();
+    format.numberFormat().setGroupingUsed(false);
+    assertThat(new DurationFormatter(format).format(duration)).isEqualTo("1234y");
+
+    assertThat(format(Locale.US, SHORT, duration)).isEqualTo("1,234y");
+    assertThat(new DurationFormatter(DurationFormats.getUsDefaultInstance()).format(duration))
+        .isEqualTo("1,234y");
+  }
+
+  @Test
+  public void getFormatter_withManyLocales_shouldLimitCacheSize() {
+    for (int i = 0; i < DurationFormats.MAX_CACHED_FORMATTERS * 3; i++) {
+      Locale locale = new Locale.Builder().setLanguage("en").setRegion("US")
+          .setExtension(Locale.PRIVATE_USE_EXTENSION, "t" + i).build();
+      assertThat(DurationFormats.getFormatter(locale, SHORT).format(Duration.ofSeconds(61)))
+          .isEqualTo("1m 1s");
+    }
+    assertThat(DurationFormats.numCachedFormatters(SHORT))
+        .isAtMost((long) DurationFormats.MAX_CACHED_FORMATTERS);
+  }
+
+  @Test
+  public void getFormatter_withShortStyle_shouldWork() {
+    Duration duration = ONE_HOUR_TEN_MINUTES_ONE_SECOND;
+    assertThat(format(Locale.US, SHORT, duration)).isEqualTo("1h 10m 1s");
+    assertThat(format(Locale.GERMANY, SHORT, duration)).isEqualTo("1h 10min 1s");
+    assertThat(format(Locale.FRANCE, SHORT, duration)).isEqualTo("1h 10min 1s");
+    assertThat(format(new Locale("es", "ES"), SHORT, Duration.ofDays(8))).isEqualTo("1sem 1d");
+    assertThat(format(Locale.GERMANY, SHORT, ChronoUnit.YEARS.getDuration().multipliedBy(1_234)))
+        .isEqualTo("1.234J");
+  }
+
+  @Test
+  public void getFormatter_withLongStyle_shouldWork() {
+    Duration duration = ONE_HOUR_TEN_MINUTES_ONE_SECOND;
+    assertThat(format(Locale.UK, LONG, duration)).isEqualTo("1 hour, 10 minutes, 1 second");
+    assertThat(format(Locale.GERMAN, LONG, duration))
+        .isEqualTo("1 Stunde, 10 Minuten, 1 Sekunde");
+    assertThat(format(Locale.CANADA_FRENCH, LONG, duration))
+        .isEqualTo("1 heure, 10 minutes, 1 seconde");
+    assertThat(format(new Locale("es"), LONG, duration))
+        .isEqualTo("1 hora, 10 minutos, 1 segundo");
+    assertThat(format(Locale.US, LONG, Duration.ZERO)).isEqualTo("0 seconds");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void getInstance_withUnsupportedLocale_shouldThrow() {
+    DurationFormats.getInstance(Locale.JAPAN, SHORT);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void getFormatter_withUnsupportedLocale_shouldThrow() {
+    DurationFormats.getFormatter(Locale.JAPAN, SHORT);
+  }
+
+  @Test
+  public void getFormatter_fromManyThreads_shouldReturnSameInstance() throws Exception {
+    Locale locale = Locale.forLanguageTag("de-AT");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<DurationFormatter>> results = new ArrayList<>();
+      Callable<DurationFormatter> task = () -> DurationFormats.getFormatter(locale, LONG);
+      for (int i = 0; i < 20; i++) {
+        results.add(executor.submit(task));
+      }
+      DurationFormatter first = results.get(0).get();
+      for (Future<DurationFormatter> result : results) {
+        assertThat(result.get()).isSameAs(first);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
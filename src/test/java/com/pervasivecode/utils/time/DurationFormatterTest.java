@@ -9,13 +9,30 @@ import static java.time.temporal.ChronoUnit.MINUTES;
 import static java.time.temporal.ChronoUnit.NANOS;
 import static java.time.temporal.ChronoUnit.SECONDS;
 import static java.time.temporal.ChronoUnit.WEEKS;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
 import org.junit.Test;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Bytes;
 import com.google.common.truth.Truth;
 import nl.jqno.equalsverifier.EqualsVerifier;
 
@@ -258,6 +275,180 @@ public class DurationFormatterTest {
     checkFormattedDuration(formatter, Duration.ofMillis(59_999), "0m");
   }
 
+  @Test
+  public void format_withNegativeDurationThatRoundsToZero_shouldFormatAsZero() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setLargestUnit(HOURS) //
+        .setSmallestUnit(SECONDS) //
+        .setNumFractionalDigits(2) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(format);
+    checkFormattedDuration(formatter, Duration.ofMillis(-4), "0s");
+    checkFormattedDuration(formatter, Duration.ofMillis(-5), "0s");
+    checkFormattedDuration(formatter, Duration.ofMillis(-6), "-0.01s");
+    checkFormattedDuration(formatter, Duration.ofMinutes(-1).minusMillis(4), "-1m");
+  }
+
+  @Test
+  public void format_withFractionOfUnitThatIsNotAPowerOfTenNanos_shouldRound() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setLargestUnit(DAYS) //
+        .setSmallestUnit(HOURS) //
+        .setUnitForZeroDuration(HOURS) //
+        .setNumFractionalDigits(3) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(format);
+    checkFormattedDuration(formatter, Duration.ofMinutes(20), "0.333h");
+    checkFormattedDuration(formatter, Duration.ofMinutes(40), "0.667h");
+    checkFormattedDuration(formatter, Duration.ofMinutes(-40), "-0.667h");
+    checkFormattedDuration(formatter, Duration.ofDays(1).plusMinutes(150), "1d 2.5h");
+    checkFormattedDuration(formatter, Duration.ofDays(1).plusMillis(1_800), "1d");
+    checkFormattedDuration(formatter, Duration.ofDays(1).plusMillis(5_400), "1d 0.002h");
+    checkFormattedDuration(formatter, Duration.ofSeconds(Long.MAX_VALUE),
+        "106,751,991,167,300d 15.502h");
+  }
+
+  @Test
+  public void format_withRoundedSmallestUnit_shouldGetSuffixForRoundedValue() {
+    // Echo the quantity that the suffix is for, so the test can see how it was looked up.
+    UnitSuffixProvider echoingSuffixProvider = new UnitSuffixProvider() {
+      @Override
+      public String suffixFor(ChronoUnit unit, BigDecimal magnitude) {
+        return "[" + magnitude.toPlainString() + "]";
+      }
+
+      @Override
+      public String suffixFor(ChronoUnit unit, int magnitude) {
+        return "(" + magnitude + ")";
+      }
+    };
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setUnitSuffixProvider(echoingSuffixProvider) //
+        .setLargestUnit(MINUTES) //
+        .setSmallestUnit(SECONDS) //
+        .setNumFractionalDigits(3) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(format);
+    checkFormattedDuration(formatter, Duration.ofSeconds(61), "1(1) 1[1.000]");
+    checkFormattedDuration(formatter, Duration.ofMillis(-61_500), "-1(-1) 1.5[1.500]");
+    checkFormattedDuration(formatter, Duration.ofSeconds(Long.MAX_VALUE),
+        "153,722,867,280,912,930[153722867280912930] 7[7.000]");
+  }
+
+  @Test
+  public void format_withManyFractionalDigits_shouldBeExact() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setLargestUnit(MINUTES) //
+        .setSmallestUnit(MINUTES) //
+        .setUnitForZeroDuration(MINUTES) //
+        .setNumFractionalDigits(20) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(format);
+    checkFormattedDuration(formatter, Duration.ofNanos(1), "0.00000000001666666667m");
+    checkFormattedDuration(formatter, Duration.ofSeconds(90), "1.5m");
+  }
+
+  @Test
+  public void format_withMaxParts_shouldTruncateLastPart() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setMaxParts(2) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(format);
+    Duration twoWeeksThreeDays = Duration.ofDays(17);
+    checkFormattedDuration(formatter, twoWeeksThreeDays.plusHours(13).plusMinutes(5), "2w 3d");
+    checkFormattedDuration(formatter, Duration.ofDays(-17).minusHours(13), "-2w 3d");
+    // A last part that truncates to zero is omitted.
+    checkFormattedDuration(formatter, Duration.ofHours(1).plusSeconds(59), "1h");
+    checkFormattedDuration(formatter, Duration.ofHours(1).plusMinutes(59).plusSeconds(40),
+        "1h 59m");
+    // Months are not a whole number of weeks, so the weeks can be zero even if days are left over.
+    checkFormattedDuration(formatter, Duration.ofDays(33), "1mo");
+    checkFormattedDuration(formatter, Duration.ofDays(366), "1y");
+    checkFormattedDuration(formatter, Duration.ofMillis(1_500), "1s 500ms");
+    checkFormattedDuration(formatter, Duration.ofDays(14), "2w");
+    checkFormattedDuration(formatter, Duration.ZERO, "0s");
+  }
+
+  @Test
+  public void format_withMaxParts_shouldRoundLastPart() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setMaxParts(2) //
+        .setRemainderHandling(DurationRemainderHandling.ROUND_HALF_EVEN) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(format);
+    Duration twoWeeksThreeDays = Duration.ofDays(17);
+    checkFormattedDuration(formatter, twoWeeksThreeDays.plusHours(13), "2w 4d");
+    checkFormattedDuration(formatter, twoWeeksThreeDays.plusHours(12), "2w 4d");
+    checkFormattedDuration(formatter, Duration.ofDays(16).plusHours(12), "2w 2d");
+    checkFormattedDuration(formatter, Duration.ofDays(-17).minusHours(13), "-2w 4d");
+    // A last part that rounds to zero is omitted.
+    checkFormattedDuration(formatter, Duration.ofHours(1).plusSeconds(29), "1h");
+    checkFormattedDuration(formatter, Duration.ofSeconds(Long.MAX_VALUE, 999_999_999),
+        "292,277,024,626y 11mo");
+
+    DurationFormat onePartFormat = DurationFormat.builder(format) //
+        .setMaxParts(1) //
+        .build();
+    DurationFormatter onePartFormatter = new DurationFormatter(onePartFormat);
+    checkFormattedDuration(onePartFormatter, Duration.ofMinutes(90), "2h");
+    checkFormattedDuration(onePartFormatter, Duration.ofMillis(1_234_567), "21m");
+    checkFormattedDuration(onePartFormatter, Duration.ofMillis(-1_234_567), "-21m");
+  }
+
+  @Test
+  public void format_withRemainderSmallerThanSmallestUnit_shouldOmitTrailingZeroParts() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setSmallestUnit(SECONDS) //
+        .build();
+    checkFormattedDuration(new DurationFormatter(format), Duration.ofMillis(3_600_300), "1h");
+    checkFormattedDuration(new DurationFormatter(format), Duration.ofMillis(3_601_300), "1h 0m 1s");
+
+    DurationFormat roundingFormat = DurationFormat.builder(format) //
+        .setRemainderHandling(DurationRemainderHandling.ROUND_HALF_EVEN) //
+        .build();
+    checkFormattedDuration(new DurationFormatter(roundingFormat), Duration.ofMillis(3_600_300),
+        "1h");
+    checkFormattedDuration(new DurationFormatter(roundingFormat), Duration.ofMillis(3_600_700),
+        "1h 0m 1s");
+  }
+
+  @Test
+  public void format_withMaxParts_shouldCarryRoundedLastPartIntoLargerParts() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setMaxParts(2) //
+        .setRemainderHandling(DurationRemainderHandling.ROUND_HALF_EVEN) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(format);
+    checkFormattedDuration(formatter, Duration.ofHours(1).plusMinutes(59).plusSeconds(40), "2h");
+    checkFormattedDuration(formatter, Duration.ofDays(20).plusHours(13), "3w");
+    checkFormattedDuration(formatter, Duration.ofDays(-20).minusHours(13), "-3w");
+    checkFormattedDuration(formatter, Duration.ofDays(20).plusHours(11), "2w 6d");
+    // Rounding up can also make the first part a larger unit, so that the last part is larger too.
+    checkFormattedDuration(formatter, Duration.ofMillis(3_599_600), "1h");
+    checkFormattedDuration(formatter, Duration.ofMillis(3_599_400), "59m 59s");
+    checkFormattedDuration(formatter, Duration.ofNanos(59_999_999_600L), "1m");
+
+    DurationFormat threePartFormat = DurationFormat.builder(format) //
+        .setMaxParts(3) //
+        .build();
+    DurationFormatter threePartFormatter = new DurationFormatter(threePartFormat);
+    checkFormattedDuration(threePartFormatter, Duration.ofDays(13).plusHours(23).plusMinutes(31),
+        "2w");
+    checkFormattedDuration(threePartFormatter, Duration.ofDays(1).plusSeconds(90), "1d 0h 2m");
+  }
+
+  @Test
+  public void format_withMaxPartsIncludingSmallestUnit_shouldUseFractionalDigits() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setSmallestUnit(SECONDS) //
+        .setNumFractionalDigits(2) //
+        .setMaxParts(2) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(format);
+    checkFormattedDuration(formatter, Duration.ofMillis(61_235), "1m 1.24s");
+    checkFormattedDuration(formatter, Duration.ofMillis(3_661_235), "1h 1m");
+  }
+
   @Test
   public void format_withJustWholeMinutes_shouldWork() {
     DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
@@ -313,6 +504,416 @@ public class DurationFormatterTest {
     checkFormattedDuration(formatter, Duration.ofDays(-1200000), "-103,680,000,000,000,000,000ns");
   }
 
+  @Test
+  public void format_withDurationsNearTheLimitsOfLongNanos_shouldWork() {
+    DurationFormatter formatter = new DurationFormatter(DurationFormats.getUsDefaultInstance());
+    checkFormattedDuration(formatter, Duration.ofNanos(Long.MAX_VALUE),
+        "292y 3mo 1w 2d 20h 53m 34s 854ms 775µs 807ns");
+    checkFormattedDuration(formatter, Duration.ofNanos(Long.MAX_VALUE).plusNanos(1),
+        "292y 3mo 1w 2d 20h 53m 34s 854ms 775µs 808ns");
+    checkFormattedDuration(formatter, Duration.ofNanos(Long.MIN_VALUE).plusNanos(1),
+        "-292y 3mo 1w 2d 20h 53m 34s 854ms 775µs 807ns");
+    checkFormattedDuration(formatter, Duration.ofNanos(Long.MIN_VALUE),
+        "-292y 3mo 1w 2d 20h 53m 34s 854ms 775µs 808ns");
+  }
+
+  @Test
+  public void format_withDurationsAtTheLimitsOfDuration_shouldWork() {
+    Duration max = Duration.ofSeconds(Long.MAX_VALUE, 999_999_999);
+    Duration min = Duration.ofSeconds(Long.MIN_VALUE);
+
+    DurationFormat roundedSeconds = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setLargestUnit(SECONDS) //
+        .setSmallestUnit(SECONDS) //
+        .setRemainderHandling(DurationRemainderHandling.ROUND_HALF_EVEN) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(roundedSeconds);
+    checkFormattedDuration(formatter, max, "9,223,372,036,854,775,808s");
+    checkFormattedDuration(formatter, min, "-9,223,372,036,854,775,808s");
+
+    DurationFormat justMillis = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setLargestUnit(MILLIS) //
+        .setSmallestUnit(MILLIS) //
+        .setUnitForZeroDuration(MILLIS) //
+        .build();
+    formatter = new DurationFormatter(justMillis);
+    checkFormattedDuration(formatter, max, "9,223,372,036,854,775,807,999ms");
+    checkFormattedDuration(formatter, min, "-9,223,372,036,854,775,808,000ms");
+
+    UnitSuffixProvider suffixProvider = UnitSuffixProviders
+        .fixedSuffixPerUnit(ImmutableMap.of(ChronoUnit.FOREVER, "∞", ChronoUnit.ERAS, "e"));
+    DurationFormat forever = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setUnitSuffixProvider(suffixProvider) //
+        .setLargestUnit(ChronoUnit.FOREVER) //
+        .setSmallestUnit(ChronoUnit.ERAS) //
+        .setUnitForZeroDuration(ChronoUnit.ERAS) //
+        .setNumFractionalDigits(3) //
+        .build();
+    formatter = new DurationFormatter(forever);
+    checkFormattedDuration(formatter, max, "1∞");
+    checkFormattedDuration(formatter, min, "-1∞");
+    checkFormattedDuration(formatter, Duration.ofSeconds(Long.MAX_VALUE), "292.277e");
+  }
+
+  @Test
+  public void formatTo_withStringBuilder_shouldAppend() {
+    DurationFormatter formatter = new DurationFormatter(DurationFormats.getUsDefaultInstance());
+    StringBuilder sb = new StringBuilder("took ");
+    Truth.assertThat(formatter.formatTo(Duration.ofMillis(1370), sb)).isSameAs(sb);
+    sb.append(", then ");
+    formatter.formatTo(Duration.ZERO, sb);
+    Truth.assertThat(sb.toString()).isEqualTo("took 1s 370ms, then 0s");
+  }
+
+  @Test
+  public void formatTo_withAppendable_shouldAppend() throws IOException {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setSmallestUnit(SECONDS) //
+        .setNumFractionalDigits(3) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(format);
+
+    StringWriter writer = new StringWriter();
+    Truth.assertThat(formatter.formatTo(Duration.ofMillis(-1_370_223), writer)).isSameAs(writer);
+    Truth.assertThat(writer.toString()).isEqualTo("-22m 50.223s");
+
+    CharBuffer buffer = CharBuffer.allocate(32);
+    formatter.formatTo(Duration.ofNanos(1), buffer);
+    formatter.formatTo(Duration.ofDays(8), buffer.put('|'));
+    buffer.flip();
+    Truth.assertThat(buffer.toString()).isEqualTo("0s|1w 1d");
+  }
+
+  @Test
+  public void formatNanos_shouldMatchFormat() {
+    DurationFormat fractionalFormat =
+        DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+            .setSmallestUnit(MILLIS) //
+            .setNumFractionalDigits(2) //
+            .build();
+    DurationFormatter[] formatters = {new DurationFormatter(DurationFormats.getUsDefaultInstance()),
+        new DurationFormatter(fractionalFormat)};
+    long[] values = {0, 1, -1, 999_999, 1_370_223_000L, -2_521_370_223_000_000L, Long.MAX_VALUE,
+        Long.MIN_VALUE};
+    for (DurationFormatter formatter : formatters) {
+      for (long nanos : values) {
+        String expected = formatter.format(Duration.ofNanos(nanos));
+        Truth.assertThat(formatter.formatNanos(nanos)).isEqualTo(expected);
+        Truth.assertThat(formatter.formatNanosTo(nanos, new StringBuilder("x")).toString())
+            .isEqualTo("x" + expected);
+      }
+    }
+  }
+
+  @Test
+  public void formatNanosTo_withAppendable_shouldAppend() throws IOException {
+    DurationFormatter formatter = new DurationFormatter(DurationFormats.getUsDefaultInstance());
+    StringWriter writer = new StringWriter();
+    Truth.assertThat(formatter.formatNanosTo(1_370_000_000L, writer)).isSameAs(writer);
+    Truth.assertThat(writer.toString()).isEqualTo("1s 370ms");
+  }
+
+  @Test
+  public void formatLazily_shouldFormatOnlyWhenUsed() {
+    AtomicInteger numSuffixLookups = new AtomicInteger();
+    UnitSuffixProvider usSuffixes = DurationFormats.usShortSuffixProvider();
+    UnitSuffixProvider countingSuffixProvider = new UnitSuffixProvider() {
+      @Override
+      public String suffixFor(ChronoUnit unit, BigDecimal magnitude) {
+        numSuffixLookups.incrementAndGet();
+        return usSuffixes.suffixFor(unit, magnitude);
+      }
+
+      @Override
+      public String suffixFor(ChronoUnit unit, int magnitude) {
+        numSuffixLookups.incrementAndGet();
+        return usSuffixes.suffixFor(unit, magnitude);
+      }
+    };
+    DurationFormatter formatter = new DurationFormatter(
+        DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+            .setUnitSuffixProvider(countingSuffixProvider) //
+            .build());
+    numSuffixLookups.set(0);
+
+    CharSequence lazy = formatter.formatLazily(Duration.ofMillis(-1_370));
+    Truth.assertThat(numSuffixLookups.get()).isEqualTo(0);
+    Truth.assertThat(lazy.length()).isEqualTo(9);
+    Truth.assertThat(numSuffixLookups.get()).isEqualTo(2);
+    Truth.assertThat(lazy.charAt(0)).isEqualTo('-');
+    Truth.assertThat(lazy.subSequence(4, 9).toString()).isEqualTo("370ms");
+    Truth.assertThat(lazy.toString()).isEqualTo("-1s 370ms");
+    Truth.assertThat(lazy.toString()).isSameAs(lazy.toString());
+    Truth.assertThat(numSuffixLookups.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void compile_shouldMatchUncompiledFormatter() {
+    DurationFormat fractionalFormat =
+        DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+            .setSmallestUnit(SECONDS) //
+            .setNumFractionalDigits(3) //
+            .build();
+    DurationFormatter[] formatters = {new DurationFormatter(DurationFormats.getUsDefaultInstance()),
+        new DurationFormatter(fractionalFormat)};
+    Random random = new Random(4);
+    for (DurationFormatter formatter : formatters) {
+      DurationFormatter compiled = formatter.compile();
+      Truth.assertThat(compiled).isEqualTo(formatter);
+      Truth.assertThat(compiled.compile()).isSameAs(compiled);
+      for (int i = 0; i < 1_000; i++) {
+        long nanos = random.nextLong() >> random.nextInt(64);
+        Truth.assertThat(compiled.formatNanos(nanos)).isEqualTo(formatter.formatNanos(nanos));
+      }
+    }
+  }
+
+  @Test
+  public void compile_shouldOnlyCallSuffixProviderForUncachedQuantities() {
+    AtomicInteger numSuffixLookups = new AtomicInteger();
+    UnitSuffixProvider usSuffixes = DurationFormats.usShortSuffixProvider();
+    UnitSuffixProvider countingSuffixProvider = new UnitSuffixProvider() {
+      @Override
+      public String suffixFor(ChronoUnit unit, BigDecimal magnitude) {
+        numSuffixLookups.incrementAndGet();
+        return usSuffixes.suffixFor(unit, magnitude);
+      }
+
+      @Override
+      public String suffixFor(ChronoUnit unit, int magnitude) {
+        numSuffixLookups.incrementAndGet();
+        return usSuffixes.suffixFor(unit, magnitude);
+      }
+    };
+    DurationFormatter formatter = new DurationFormatter(
+        DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+            .setUnitSuffixProvider(countingSuffixProvider) //
+            .build()).compile();
+    numSuffixLookups.set(0);
+
+    checkFormattedDuration(formatter, Duration.ofMillis(-2_521_370_223L),
+        "-4w 1d 4h 22m 50s 223ms");
+    // Only the suffixes of -4 and 223 are not cached.
+    Truth.assertThat(numSuffixLookups.get()).isEqualTo(2);
+    checkFormattedDuration(formatter, Duration.ofSeconds(75), "1m 15s");
+    Truth.assertThat(numSuffixLookups.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void formatNanosLazily_shouldMatchFormatNanos() {
+    DurationFormatter formatter = new DurationFormatter(DurationFormats.getUsDefaultInstance());
+    long[] values = {0, 1, -1, 999_999, -1_370_223_000L, Long.MAX_VALUE, Long.MIN_VALUE};
+    for (long nanos : values) {
+      Truth.assertThat(formatter.formatNanosLazily(nanos).toString())
+          .isEqualTo(formatter.formatNanos(nanos));
+      Truth.assertThat(formatter.formatLazily(Duration.ofNanos(nanos)).toString())
+          .isEqualTo(formatter.formatNanos(nanos));
+    }
+  }
+
+  @Test
+  public void formatMillis_shouldMatchFormat() throws IOException {
+    DurationFormatter formatter = new DurationFormatter(DurationFormats.getUsDefaultInstance());
+    long[] values = {0, 17, -1370, 2_521_370_223L, Long.MAX_VALUE / 1_000_000 + 1, Long.MAX_VALUE,
+        Long.MIN_VALUE};
+    for (long millis : values) {
+      String expected = formatter.format(Duration.ofMillis(millis));
+      Truth.assertThat(formatter.formatMillis(millis)).isEqualTo(expected);
+      Truth.assertThat(formatter.formatMillisTo(millis, new StringBuilder()).toString())
+          .isEqualTo(expected);
+      Truth.assertThat(formatter.formatMillisTo(millis, new StringWriter()).toString())
+          .isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void format_withTimeUnit_shouldMatchFormat() throws IOException {
+    DurationFormatter formatter = new DurationFormatter(DurationFormats.getUsDefaultInstance());
+    TimeUnit[] timeUnits = {TimeUnit.NANOSECONDS, TimeUnit.MICROSECONDS, TimeUnit.MILLISECONDS,
+        TimeUnit.SECONDS, TimeUnit.MINUTES, TimeUnit.HOURS, TimeUnit.DAYS};
+    ChronoUnit[] chronoUnits = {NANOS, MICROS, MILLIS, SECONDS, MINUTES, HOURS, DAYS};
+    long[] values = {0, 1, -1, 59, 1_000_001, Integer.MAX_VALUE, Long.MAX_VALUE / 86_400,
+        Long.MIN_VALUE / 86_400, Long.MAX_VALUE / 86_400_000_000_000L + 1};
+    for (int i = 0; i < timeUnits.length; i++) {
+      for (long amount : values) {
+        String expected = formatter.format(Duration.of(amount, chronoUnits[i]));
+        Truth.assertThat(formatter.format(amount, timeUnits[i])).isEqualTo(expected);
+        Truth.assertThat(formatter.formatTo(amount, timeUnits[i], new StringBuilder()).toString())
+            .isEqualTo(expected);
+        Truth.assertThat(formatter.formatTo(amount, timeUnits[i], new StringWriter()).toString())
+            .isEqualTo(expected);
+      }
+    }
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void format_withTimeUnitAndAmountTooLargeForDuration_shouldThrow() {
+    new DurationFormatter(DurationFormats.getUsDefaultInstance()).format(Long.MAX_VALUE,
+        TimeUnit.DAYS);
+  }
+
+  @Test
+  public void formatAllNanos_shouldMatchFormatNanos() {
+    DurationFormatter formatter = new DurationFormatter(DurationFormats.getUsDefaultInstance());
+    long[] nanos = randomNanos(5 * BatchFormatTask.SEQUENTIAL_THRESHOLD + 17);
+    String[] results = formatter.formatAllNanos(nanos);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      Truth.assertThat(formatter.formatAllNanos(nanos, pool)).asList()
+          .containsExactlyElementsIn(results).inOrder();
+    } finally {
+      pool.shutdown();
+    }
+    Truth.assertThat(results).hasLength(nanos.length);
+    for (int i = 0; i < nanos.length; i++) {
+      Truth.assertThat(results[i]).isEqualTo(formatter.formatNanos(nanos[i]));
+    }
+    Truth.assertThat(formatter.formatAllNanos(new long[0])).isEmpty();
+  }
+
+  @Test
+  public void formatAll_shouldMatchFormat() {
+    DurationFormatter formatter = new DurationFormatter(DurationFormats.getUsDefaultInstance());
+    List<Duration> durations = new LinkedList<>();
+    for (long nanos : randomNanos(3 * BatchFormatTask.SEQUENTIAL_THRESHOLD)) {
+      durations.add(Duration.ofNanos(nanos));
+    }
+    durations.add(Duration.ofSeconds(Long.MAX_VALUE));
+    String[] results = formatter.formatAll(durations);
+    Truth.assertThat(formatter.formatAll(durations, ForkJoinPool.commonPool())).asList()
+        .containsExactlyElementsIn(results).inOrder();
+    int i = 0;
+    for (Duration duration : durations) {
+      Truth.assertThat(results[i++]).isEqualTo(formatter.format(duration));
+    }
+  }
+
+  @Test
+  public void formatAllTo_shouldAppendDelimitedValues() throws IOException {
+    DurationFormatter formatter = new DurationFormatter(DurationFormats.getUsDefaultInstance());
+    long[] nanos = {1_370_000_000L, 0, -90_000_000_000L};
+    String expected = "1s 370ms\n0s\n-1m 30s";
+
+    Truth.assertThat(formatter.formatAllNanosTo(nanos, "\n", new StringBuilder()).toString())
+        .isEqualTo(expected);
+    CharBuffer buffer = CharBuffer.allocate(100);
+    Truth.assertThat(formatter.formatAllNanosTo(nanos, "\n", buffer)).isSameAs(buffer);
+    buffer.flip();
+    Truth.assertThat(buffer.toString()).isEqualTo(expected);
+
+    List<Duration> durations = new ArrayList<>();
+    for (long value : nanos) {
+      durations.add(Duration.ofNanos(value));
+    }
+    Truth.assertThat(formatter.formatAllTo(durations, "\n", new StringBuilder()).toString())
+        .isEqualTo(expected);
+    Truth.assertThat(formatter.formatAllTo(durations, "\n", new StringWriter()).toString())
+        .isEqualTo(expected);
+    Truth.assertThat(formatter.formatAllTo(new ArrayList<>(), "\n", new StringBuilder()).toString())
+        .isEmpty();
+  }
+
+  private static long[] randomNanos(int count) {
+    Random random = new Random(12345);
+    long[] nanos = new long[count];
+    for (int i = 0; i < count; i++) {
+      // Mix values of many magnitudes, of both signs.
+      nanos[i] = random.nextLong() >> random.nextInt(64);
+    }
+    return nanos;
+  }
+
+  @Test
+  public void formatTo_withByteBuffer_shouldWriteUtf8() {
+    DurationFormat fractionalFrenchFormat =
+        DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+            .setNumberFormat(NumberFormat.getInstance(Locale.FRANCE)) //
+            .setLargestUnit(WEEKS) //
+            .setSmallestUnit(MILLIS) //
+            .setNumFractionalDigits(3) //
+            .setPartDelimiter(" — ") //
+            .build();
+    DurationFormatter[] formatters = {new DurationFormatter(DurationFormats.getUsDefaultInstance()),
+        new DurationFormatter(fractionalFrenchFormat)};
+    ByteBuffer heapBuffer = ByteBuffer.allocate(200);
+    ByteBuffer directBuffer = ByteBuffer.allocateDirect(200);
+    long[] values = randomNanos(1000);
+    values[0] = 0;
+    values[1] = Long.MIN_VALUE;
+    for (DurationFormatter formatter : formatters) {
+      for (long nanos : values) {
+        byte[] expected = formatter.formatNanos(nanos).getBytes(StandardCharsets.UTF_8);
+        for (ByteBuffer buffer : new ByteBuffer[] {heapBuffer, directBuffer}) {
+          buffer.clear();
+          buffer.put((byte) 'x');
+          Truth.assertThat(formatter.formatNanosTo(nanos, buffer)).isSameAs(buffer);
+          Truth.assertThat(buffer.position()).isEqualTo(1 + expected.length);
+
+          formatter.formatTo(Duration.ofNanos(nanos), buffer);
+          buffer.flip();
+          byte[] written = new byte[buffer.remaining()];
+          buffer.get(written);
+          Truth.assertThat(written)
+              .isEqualTo(Bytes.concat(new byte[] {'x'}, expected, expected));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void formatTo_withByteBufferThatIsTooSmall_shouldThrowAndKeepPosition() {
+    DurationFormatter formatter = new DurationFormatter(DurationFormats.getUsDefaultInstance());
+    ByteBuffer buffer = ByteBuffer.allocate(10);
+    buffer.position(2);
+    try {
+      formatter.formatTo(Duration.ofMillis(2_521_370_223L), buffer);
+      Assert.fail();
+    } catch (BufferOverflowException e) {
+      Truth.assertThat(buffer.position()).isEqualTo(2);
+    }
+    Truth.assertThat(formatter.formatNanosTo(15_000, buffer).position()).isEqualTo(2 + 5);
+  }
+
+  @Test
+  public void maxEncodedLength_shouldBeEnoughForAnyDuration() {
+    DurationFormat fractionalSecondsFormat =
+        DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+            .setLargestUnit(SECONDS) //
+            .setSmallestUnit(SECONDS) //
+            .setNumFractionalDigits(4) //
+            .setRemainderHandling(DurationRemainderHandling.ROUND_HALF_EVEN) //
+            .build();
+    DurationFormat noGroupingFormat = DurationFormat.builder(DurationFormats.getUsDefaultInstance())
+        .setNumberFormat(new DecimalFormat("0;(0)")) //
+        .build();
+    DurationFormat twoPartFormat = DurationFormat.builder(DurationFormats.getUsDefaultInstance())
+        .setMaxParts(2) //
+        .setRemainderHandling(DurationRemainderHandling.ROUND_HALF_EVEN) //
+        .build();
+    DurationFormat[] formats = {DurationFormats.getUsDefaultInstance(), fractionalSecondsFormat,
+        noGroupingFormat, twoPartFormat};
+    Duration[] durations = {Duration.ZERO, Duration.ofSeconds(Long.MIN_VALUE),
+        Duration.ofSeconds(Long.MAX_VALUE, 999_999_999),
+        Duration.ofSeconds(Long.MIN_VALUE + 1, 999_999_999),
+        Duration.ofSeconds(-365 * 86400 - 7 * 86400 - 23 * 3600 - 59 * 60 - 59, -999_999_999)};
+    for (DurationFormat format : formats) {
+      DurationFormatter formatter = new DurationFormatter(format);
+      int maxLength = 0;
+      for (Duration duration : durations) {
+        maxLength = Math.max(maxLength,
+            formatter.format(duration).getBytes(StandardCharsets.UTF_8).length);
+      }
+      Truth.assertThat(formatter.maxEncodedLength()).isAtLeast(maxLength);
+      // The bound should be close to the longest actual value.
+      Truth.assertThat(formatter.maxEncodedLength()).isAtMost(maxLength * 2);
+      ByteBuffer buffer = ByteBuffer.allocate(formatter.maxEncodedLength());
+      for (Duration duration : durations) {
+        buffer.clear();
+        formatter.formatTo(duration, buffer);
+      }
+    }
+  }
+
   @Test
   public void equalsAndHashCode_shouldWork() {
     EqualsVerifier.forClass(DurationFormatter.class).verify();
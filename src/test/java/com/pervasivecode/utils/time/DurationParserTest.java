@@ -0,0 +1,230 @@
+package com.pervasivecode.utils.time;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.HALF_DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+import static java.time.temporal.ChronoUnit.MILLENNIA;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static java.time.temporal.ChronoUnit.MINUTES;
+import static java.time.temporal.ChronoUnit.MONTHS;
+import static java.time.temporal.ChronoUnit.NANOS;
+import static java.time.temporal.ChronoUnit.SECONDS;
+import static java.time.temporal.ChronoUnit.WEEKS;
+import static org.junit.Assert.fail;
+import java.text.NumberFormat;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.truth.Truth;
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public class DurationParserTest {
+  private static DurationFormat longGermanFormat() {
+    ImmutableMap<ChronoUnit, String> singularSuffixes =
+        ImmutableMap.<ChronoUnit, String>builder() //
+            .put(SECONDS, " Sekunde") //
+            .put(MINUTES, " Minute") //
+            .put(HOURS, " Stunde") //
+            .put(DAYS, " Tag") //
+            .put(WEEKS, " Woche") //
+            .build();
+    ImmutableMap<ChronoUnit, String> pluralSuffixes = ImmutableMap.<ChronoUnit, String>builder() //
+        .put(SECONDS, " Sekunden") //
+        .put(MINUTES, " Minuten") //
+        .put(HOURS, " Stunden") //
+        .put(DAYS, " Tage") //
+        .put(WEEKS, " Wochen") //
+        .build();
+    return DurationFormat.builder() //
+        .setUnitSuffixProvider(
+            UnitSuffixProviders.singularAndPlural(singularSuffixes, pluralSuffixes)) //
+        .setPartDelimiter(", ") //
+        .setNumberFormat(NumberFormat.getInstance(Locale.GERMANY)) //
+        .setLargestUnit(WEEKS) //
+        .setSmallestUnit(SECONDS) //
+        .setUnitForZeroDuration(SECONDS) //
+        .setNumFractionalDigits(3) //
+        .setRemainderHandling(DurationRemainderHandling.ROUND_HALF_EVEN) //
+        .build();
+  }
+
+  private static void checkParseFailure(DurationParser parser, String text, int errorIndex) {
+    try {
+      parser.parse(text);
+      fail("Expected '" + text + "' to fail to parse");
+    } catch (DateTimeParseException e) {
+      Truth.assertThat(e.getParsedString()).isEqualTo(text);
+      Truth.assertThat(e.getErrorIndex()).isEqualTo(errorIndex);
+    }
+  }
+
+  @Test
+  public void parse_withUsDefaultFormat_shouldWork() {
+    DurationParser parser = new DurationParser(DurationFormats.getUsDefaultInstance());
+    Truth.assertThat(parser.parse("0s")).isEqualTo(Duration.ZERO);
+    Truth.assertThat(parser.parse("1h 10m")).isEqualTo(Duration.ofMinutes(70));
+    Truth.assertThat(parser.parse("1s 370ms")).isEqualTo(Duration.ofMillis(1370));
+    Truth.assertThat(parser.parse("-1m 30s")).isEqualTo(Duration.ofSeconds(-90));
+    Truth.assertThat(parser.parse("4w 1d 4h 22m 50s 223ms"))
+        .isEqualTo(Duration.ofMillis(2_521_370_223L));
+    Truth.assertThat(parser.parse("1,234ms")).isEqualTo(Duration.ofMillis(1234));
+    Truth.assertThat(parser.parse("2mo")).isEqualTo(MONTHS.getDuration().multipliedBy(2));
+  }
+
+  @Test
+  public void parse_withFormattedValues_shouldReturnOriginalValue() {
+    DurationFormatter formatter = new DurationFormatter(DurationFormats.getUsDefaultInstance());
+    DurationParser parser = new DurationParser(DurationFormats.getUsDefaultInstance());
+    Random random = new Random(1234);
+    for (int i = 0; i < 10_000; i++) {
+      long nanos = random.nextLong() >> random.nextInt(64);
+      String formatted = formatter.formatNanos(nanos);
+      Truth.assertThat(parser.parseNanos(formatted)).isEqualTo(nanos);
+      Truth.assertThat(parser.parse(formatted)).isEqualTo(Duration.ofNanos(nanos));
+    }
+    Duration[] extremes = {Duration.ofSeconds(Long.MAX_VALUE, 999_999_999),
+        Duration.ofSeconds(Long.MIN_VALUE), Duration.ofNanos(Long.MIN_VALUE)};
+    for (Duration duration : extremes) {
+      Truth.assertThat(parser.parse(formatter.format(duration))).isEqualTo(duration);
+    }
+  }
+
+  @Test
+  public void parse_withLongGermanFormat_shouldWork() {
+    DurationFormat format = longGermanFormat();
+    DurationParser parser = new DurationParser(format);
+    Truth.assertThat(parser.parse("6 Wochen, 4 Tage, 23 Stunden"))
+        .isEqualTo(Duration.ofDays(46).plusHours(23));
+    Truth.assertThat(parser.parse("1 Woche, 1 Tag")).isEqualTo(Duration.ofDays(8));
+    Truth.assertThat(parser.parse("1,37 Sekunden")).isEqualTo(Duration.ofMillis(1370));
+    Truth.assertThat(parser.parse("-1 Minute, 0,5 Sekunden"))
+        .isEqualTo(Duration.ofMillis(-60_500));
+
+    DurationFormatter formatter = new DurationFormatter(format);
+    Duration duration = Duration.ofDays(1234).plusMillis(5_678);
+    Truth.assertThat(formatter.format(duration))
+        .isEqualTo("176 Wochen, 2 Tage, 0 Stunden, 0 Minuten, 5,678 Sekunden");
+    Truth.assertThat(parser.parse(formatter.format(duration))).isEqualTo(duration);
+  }
+
+  @Test
+  public void parse_withFraction_shouldRoundToNearestNanosecond() {
+    DurationParser parser = new DurationParser(DurationFormats.getUsDefaultInstance());
+    Truth.assertThat(parser.parse("1.5h")).isEqualTo(Duration.ofMinutes(90));
+    Truth.assertThat(parser.parse("0.0000000005s")).isEqualTo(Duration.ZERO);
+    Truth.assertThat(parser.parse("0.0000000015s")).isEqualTo(Duration.ofNanos(2));
+    Truth.assertThat(parser.parse("0.3333333333333333333333s"))
+        .isEqualTo(Duration.ofNanos(333_333_333));
+    Truth.assertThat(parser.parse("1.25y")).isEqualTo(ChronoUnit.YEARS.getDuration()
+        .multipliedBy(5).dividedBy(4));
+    Truth.assertThat(parser.parse("-2d 1.5ms"))
+        .isEqualTo(Duration.ofDays(-2).minusNanos(1_500_000));
+  }
+
+  @Test
+  public void parse_withFractionOfUnitLargerThanLongNanos_shouldWork() {
+    DurationFormat format = DurationFormat.builder() //
+        .setUnitSuffixProvider(
+            UnitSuffixProviders.fixedSuffixPerUnit(ImmutableMap.of(MILLENNIA, "ky"))) //
+        .setPartDelimiter(" ") //
+        .setNumberFormat(NumberFormat.getInstance(Locale.US)) //
+        .setLargestUnit(MILLENNIA) //
+        .setSmallestUnit(MILLENNIA) //
+        .setUnitForZeroDuration(MILLENNIA) //
+        .setNumFractionalDigits(3) //
+        .build();
+    DurationParser parser = new DurationParser(format);
+    Truth.assertThat(parser.parse("0.5ky")).isEqualTo(MILLENNIA.getDuration().dividedBy(2));
+    Truth.assertThat(parser.parse("-2.25ky"))
+        .isEqualTo(MILLENNIA.getDuration().multipliedBy(-9).dividedBy(4));
+  }
+
+  @Test
+  public void parse_withQuantityLargerThanLong_shouldWork() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setLargestUnit(MILLIS) //
+        .setSmallestUnit(NANOS) //
+        .setUnitForZeroDuration(MILLIS) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(format);
+    DurationParser parser = new DurationParser(format);
+    Duration max = Duration.ofSeconds(Long.MAX_VALUE, 999_999_999);
+    Duration min = Duration.ofSeconds(Long.MIN_VALUE);
+    Truth.assertThat(formatter.format(max)).isEqualTo("9,223,372,036,854,775,807,999ms 999µs 999ns");
+    for (Duration duration : new Duration[] {max, min, max.minusNanos(1_000_001),
+        min.plusMillis(1), Duration.ofMillis(Long.MAX_VALUE).plusMillis(1)}) {
+      Truth.assertThat(parser.parse(formatter.format(duration))).isEqualTo(duration);
+    }
+    Truth.assertThat(parser.parse("9,223,372,036,854,775,808ms 1ns"))
+        .isEqualTo(Duration.ofMillis(Long.MAX_VALUE).plusMillis(1).plusNanos(1));
+    checkParseFailure(parser, "9,223,372,036,854,775,808,000ms", 0);
+    checkParseFailure(parser, "-9223372036854775808001ms", 0);
+  }
+
+  @Test
+  public void parse_withSameSuffixForTwoUnits_shouldUseUnitOrder() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setUnitSuffixProvider(UnitSuffixProviders.fixedSuffixPerUnit(ImmutableMap.of( //
+            MONTHS, "m", DAYS, "d", MINUTES, "m", SECONDS, "s"))) //
+        .setLargestUnit(MONTHS) //
+        .setSmallestUnit(SECONDS) //
+        .setSuppressedUnits(EnumSet.of(HALF_DAYS, HOURS, WEEKS)) //
+        .build();
+    DurationParser parser = new DurationParser(format);
+    Truth.assertThat(parser.parse("1m")).isEqualTo(MONTHS.getDuration());
+    Truth.assertThat(parser.parse("1m 2m")).isEqualTo(MONTHS.getDuration().plusMinutes(2));
+    Truth.assertThat(parser.parse("1d 2m")).isEqualTo(Duration.ofDays(1).plusMinutes(2));
+    checkParseFailure(parser, "1m 2m 3m", 7);
+  }
+
+  @Test
+  public void parse_withRegion_shouldParseOnlyTheRegion() {
+    DurationParser parser = new DurationParser(DurationFormats.getUsDefaultInstance());
+    StringBuilder line = new StringBuilder("GET /index.html took 1s 370ms;");
+    Truth.assertThat(parser.parse(line, 21, 29)).isEqualTo(Duration.ofMillis(1370));
+    Truth.assertThat(parser.parseNanos(line, 21, 23)).isEqualTo(1_000_000_000L);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void parse_withInvalidRegion_shouldThrow() {
+    new DurationParser(DurationFormats.getUsDefaultInstance()).parse("1s", 1, 3);
+  }
+
+  @Test
+  public void parse_withInvalidText_shouldThrow() {
+    DurationParser parser = new DurationParser(DurationFormats.getUsDefaultInstance());
+    checkParseFailure(parser, "", 0);
+    checkParseFailure(parser, "s", 0);
+    checkParseFailure(parser, "1", 1);
+    checkParseFailure(parser, "1x", 1);
+    checkParseFailure(parser, "1s ", 3);
+    checkParseFailure(parser, "1s,2ms", 2);
+    checkParseFailure(parser, "10m 1h", 5);
+    checkParseFailure(parser, "1m -1s", 3);
+    checkParseFailure(parser, "1.5m 1s", 4);
+    checkParseFailure(parser, "1,s", 1);
+    checkParseFailure(parser, "99999999999999999999s", 0);
+    checkParseFailure(parser, "999999999999999999y", 0);
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void parseNanos_withValueTooLargeForLong_shouldThrow() {
+    new DurationParser(DurationFormats.getUsDefaultInstance()).parseNanos("300y");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructor_withPercentFormat_shouldThrow() {
+    new DurationParser(DurationFormat.builder(DurationFormats.getUsDefaultInstance())
+        .setNumberFormat(NumberFormat.getPercentInstance(Locale.US)).build());
+  }
+
+  @Test
+  public void equalsAndHashCode_shouldWork() {
+    EqualsVerifier.forClass(DurationParser.class).verify();
+  }
+}
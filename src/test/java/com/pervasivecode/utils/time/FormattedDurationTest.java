@@ -0,0 +1,150 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static java.time.temporal.ChronoUnit.MINUTES;
+import static java.time.temporal.ChronoUnit.NANOS;
+import static java.time.temporal.ChronoUnit.SECONDS;
+import static java.time.temporal.ChronoUnit.WEEKS;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Random;
+import org.junit.Test;
+import com.google.common.truth.Truth;
+
+public class FormattedDurationTest {
+  private static final DurationFormatter US_FORMATTER =
+      new DurationFormatter(DurationFormats.getUsDefaultInstance());
+
+  @Test
+  public void formatToParts_withNegativeDuration_shouldOnlyMakeFirstPartNegative() {
+    FormattedDuration parts = US_FORMATTER.formatToParts(Duration.ofSeconds(-90));
+    assertThat(parts.isNegative()).isTrue();
+    assertThat(parts.numParts()).isEqualTo(2);
+    assertThat(parts.unit(0)).isEqualTo(MINUTES);
+    assertThat(parts.value(0)).isEqualTo(1);
+    assertThat(parts.unit(1)).isEqualTo(SECONDS);
+    assertThat(parts.value(1)).isEqualTo(30);
+    assertThat(parts.numFractionDigits()).isEqualTo(0);
+    assertThat(parts.toString()).isEqualTo("FormattedDuration{-1 Minutes, 30 Seconds}");
+  }
+
+  @Test
+  public void formatToParts_shouldSkipLeadingAndTrailingZeroParts() {
+    FormattedDuration parts = US_FORMATTER.formatToParts(Duration.ofDays(14).plusMinutes(5));
+    assertThat(parts.isNegative()).isFalse();
+    assertThat(parts.numParts()).isEqualTo(4);
+    assertThat(parts.unit(0)).isEqualTo(WEEKS);
+    assertThat(parts.value(0)).isEqualTo(2);
+    assertThat(parts.unit(1)).isEqualTo(DAYS);
+    assertThat(parts.value(1)).isEqualTo(0);
+    assertThat(parts.unit(3)).isEqualTo(MINUTES);
+    assertThat(parts.value(3)).isEqualTo(5);
+  }
+
+  @Test
+  public void formatToParts_withZero_shouldHaveOneZeroPart() {
+    FormattedDuration parts = US_FORMATTER.formatToParts(Duration.ZERO);
+    assertThat(parts.isNegative()).isFalse();
+    assertThat(parts.numParts()).isEqualTo(1);
+    assertThat(parts.unit(0)).isEqualTo(SECONDS);
+    assertThat(parts.value(0)).isEqualTo(0);
+    assertThat(parts.bigValue(0)).isEqualTo(BigDecimal.ZERO);
+  }
+
+  @Test
+  public void formatToParts_withFractionalDigits_shouldRoundLastPart() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setLargestUnit(HOURS) //
+        .setSmallestUnit(SECONDS) //
+        .setNumFractionalDigits(3) //
+        .build();
+    DurationFormatter formatter = new DurationFormatter(format);
+    FormattedDuration parts = new FormattedDuration();
+
+    Truth.assertThat(formatter.formatToParts(Duration.ofNanos(61_234_500_000L), parts))
+        .isSameAs(parts);
+    assertThat(parts.numParts()).isEqualTo(2);
+    assertThat(parts.value(1)).isEqualTo(1);
+    assertThat(parts.fraction()).isEqualTo(234);
+    assertThat(parts.numFractionDigits()).isEqualTo(3);
+    assertThat(parts.bigValue(1)).isEqualTo(new BigDecimal("1.234"));
+
+    // A negative value that rounds to zero is formatted as zero.
+    formatter.formatNanosToParts(-400_000, parts);
+    assertThat(parts.isNegative()).isFalse();
+    assertThat(parts.numParts()).isEqualTo(1);
+    assertThat(parts.value(0)).isEqualTo(0);
+    assertThat(parts.fraction()).isEqualTo(0);
+  }
+
+  @Test
+  public void formatToParts_withManyFractionalDigits_shouldWork() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setLargestUnit(MINUTES) //
+        .setSmallestUnit(MINUTES) //
+        .setUnitForZeroDuration(MINUTES) //
+        .setNumFractionalDigits(20) //
+        .build();
+    FormattedDuration parts =
+        new DurationFormatter(format).formatToParts(Duration.ofMinutes(-2).minusNanos(1));
+    assertThat(parts.isNegative()).isTrue();
+    assertThat(parts.value(0)).isEqualTo(2);
+    assertThat(parts.fraction()).isEqualTo(1_666_666_667L);
+    assertThat(parts.numFractionDigits()).isEqualTo(20);
+    assertThat(parts.bigValue(0)).isEqualTo(new BigDecimal("2.00000000001666666667"));
+  }
+
+  @Test
+  public void formatToParts_withValueLargerThanLong_shouldThrowOnlyFromValue() {
+    DurationFormat format = DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+        .setLargestUnit(NANOS) //
+        .setSmallestUnit(NANOS) //
+        .setUnitForZeroDuration(NANOS) //
+        .build();
+    FormattedDuration parts =
+        new DurationFormatter(format).formatToParts(Duration.ofSeconds(Long.MIN_VALUE));
+    assertThat(parts.isNegative()).isTrue();
+    assertThat(parts.bigValue(0)).isEqualTo(new BigDecimal("9223372036854775808000000000"));
+    try {
+      parts.value(0);
+      Truth.assert_().fail("Expected an exception here.");
+    } catch (ArithmeticException ae) {
+      // expected
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void unit_withIndexPastLastPart_shouldThrow() {
+    US_FORMATTER.formatToParts(Duration.ofMillis(1_500)).unit(2);
+  }
+
+  @Test
+  public void formatNanosToParts_shouldMatchFormatNanos() {
+    DurationFormatter formatter = new DurationFormatter(
+        DurationFormat.builder(DurationFormats.getUsDefaultInstance()) //
+            .setSmallestUnit(MILLIS) //
+            .setPartDelimiter(" ") //
+            .build());
+    Random random = new Random(12345);
+    FormattedDuration parts = new FormattedDuration();
+    for (int i = 0; i < 1_000; i++) {
+      long nanos = random.nextLong() >> random.nextInt(64);
+      formatter.formatNanosToParts(nanos, parts);
+      StringBuilder sb = new StringBuilder();
+      for (int j = 0; j < parts.numParts(); j++) {
+        if (j > 0) {
+          sb.append(' ');
+        }
+        if (j == 0 && parts.isNegative()) {
+          sb.append('-');
+        }
+        sb.append(String.format("%,d", parts.value(j)));
+        sb.append(DurationFormats.usShortSuffixProvider().suffixFor(parts.unit(j), 1));
+      }
+      assertThat(sb.toString()).isEqualTo(formatter.formatNanos(nanos));
+    }
+  }
+}
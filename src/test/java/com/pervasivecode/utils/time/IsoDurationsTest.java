@@ -0,0 +1,195 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+import org.junit.Test;
+import com.google.common.collect.ImmutableList;
+
+public class IsoDurationsTest {
+  private static final ImmutableList<Duration> INTERESTING_DURATIONS = ImmutableList.of( //
+      Duration.ZERO, //
+      Duration.ofNanos(1), //
+      Duration.ofMillis(500), //
+      Duration.ofSeconds(59, 999_999_999), //
+      Duration.ofHours(1).plusMinutes(10).plusMillis(500), //
+      Duration.ofHours(1), //
+      Duration.ofMinutes(61), //
+      Duration.ofDays(2).plusSeconds(1), //
+      Duration.ofSeconds(Long.MAX_VALUE, 999_999_999), //
+      Duration.ofNanos(-1), //
+      Duration.ofMillis(-500), //
+      Duration.ofSeconds(-60), //
+      Duration.ofSeconds(-60, 1), //
+      Duration.ofSeconds(-3661, 500_000_000), //
+      Duration.ofSeconds(Long.MIN_VALUE), //
+      Duration.ofSeconds(Long.MIN_VALUE, 1));
+
+  private static Duration randomDuration(Random random) {
+    long seconds = random.nextLong() >> random.nextInt(Long.SIZE);
+    int nanos = random.nextBoolean() ? 0 : random.nextInt(1_000_000_000);
+    if (random.nextBoolean()) {
+      nanos -= nanos % 1_000_000;
+    }
+    return Duration.ofSeconds(seconds, nanos);
+  }
+
+  private static void checkParseFailure(String text) {
+    try {
+      Duration.parse(text);
+      fail("Expected Duration.parse to reject '" + text + "'");
+    } catch (DateTimeParseException e) {
+      // expected
+    }
+    try {
+      IsoDurations.parse(text);
+      fail("Expected '" + text + "' to fail to parse");
+    } catch (DateTimeParseException e) {
+      assertThat(e.getParsedString()).isEqualTo(text);
+    }
+  }
+
+  @Test
+  public void format_shouldMatchDurationToString() {
+    assertThat(IsoDurations.format(Duration.ZERO)).isEqualTo("PT0S");
+    assertThat(IsoDurations.format(Duration.ofHours(1).plusMinutes(10).plusMillis(500)))
+        .isEqualTo("PT1H10M0.5S");
+    assertThat(IsoDurations.format(Duration.ofDays(2))).isEqualTo("PT48H");
+    assertThat(IsoDurations.format(Duration.ofSeconds(-3661, 500_000_000)))
+        .isEqualTo("PT-1H-1M-0.5S");
+    assertThat(IsoDurations.format(Duration.ofSeconds(-60, 1))).isEqualTo("PT-59.999999999S");
+
+    // Before Java 9, Duration#toString formatted some negative values with a fraction incorrectly.
+    Random random = new Random(2112);
+    for (int i = 0; i < 10_000; i++) {
+      Duration duration = randomDuration(random).abs();
+      assertThat(IsoDurations.format(duration)).isEqualTo(duration.toString());
+    }
+    for (Duration duration : INTERESTING_DURATIONS) {
+      if (!duration.isNegative()) {
+        assertThat(IsoDurations.format(duration)).isEqualTo(duration.toString());
+      }
+    }
+  }
+
+  @Test
+  public void format_withLongestValue_shouldFitInMaxFormattedLength() {
+    long seconds = -(2_562_047_788_015_214L * 3600 + 3599) - 1;
+    String formatted = IsoDurations.format(Duration.ofSeconds(seconds, 1));
+    assertThat(formatted).isEqualTo("PT-2562047788015214H-59M-59.999999999S");
+    assertThat(formatted.length()).isEqualTo(IsoDurations.MAX_FORMATTED_LENGTH);
+  }
+
+  @Test
+  public void formatNanosTo_shouldMatchFormat() {
+    Random random = new Random(5150);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1_000; i++) {
+      long nanos = random.nextLong() >> random.nextInt(Long.SIZE);
+      sb.setLength(0);
+      assertThat(IsoDurations.formatNanosTo(nanos, sb).toString())
+          .isEqualTo(IsoDurations.format(Duration.ofNanos(nanos)));
+      assertThat(IsoDurations.formatNanos(nanos)).isEqualTo(sb.toString());
+    }
+  }
+
+  @Test
+  public void formatTo_withByteBuffer_shouldWriteAsciiBytes() {
+    ByteBuffer buffer = ByteBuffer.allocate(100);
+    buffer.put((byte) '[');
+    IsoDurations.formatTo(Duration.ofSeconds(-3661, 500_000_000), buffer);
+    IsoDurations.formatNanosTo(1_500_000_000L, buffer);
+    buffer.flip();
+    assertThat(StandardCharsets.US_ASCII.decode(buffer).toString())
+        .isEqualTo("[PT-1H-1M-0.5SPT1.5S");
+  }
+
+  @Test
+  public void formatTo_withTooSmallByteBuffer_shouldNotMovePosition() {
+    ByteBuffer buffer = ByteBuffer.allocate(8);
+    buffer.put((byte) '[');
+    try {
+      IsoDurations.formatTo(Duration.ofSeconds(-3661, 500_000_000), buffer);
+      fail("Expected a BufferOverflowException");
+    } catch (BufferOverflowException e) {
+      assertThat(buffer.position()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void parse_shouldMatchDurationParse() {
+    ImmutableList<String> texts = ImmutableList.of("PT0S", "PT1H10M0.5S", "pt1h10m0,5s", "P2D",
+        "-P2DT-3M", "+PT+1S", "PT-0.5S", "-PT-0.5S", "PT1.S", "PT0.123456789S", "P0DT0H0M0S",
+        "P1DT-24H", "P1Dt", "PT-9223372036854775808S", "PT9223372036854775807.999999999S",
+        "-PT-9223372036854775807.999999999S", "P106751991167300DT15H30M7S");
+    for (String text : texts) {
+      assertThat(IsoDurations.parse(text)).isEqualTo(Duration.parse(text));
+    }
+    for (Duration duration : INTERESTING_DURATIONS) {
+      assertThat(IsoDurations.parse(duration.toString())).isEqualTo(duration);
+      assertThat(IsoDurations.parse(IsoDurations.format(duration))).isEqualTo(duration);
+    }
+    Random random = new Random(1984);
+    for (int i = 0; i < 10_000; i++) {
+      Duration duration = randomDuration(random);
+      String formatted = IsoDurations.format(duration);
+      assertThat(IsoDurations.parse(formatted)).isEqualTo(duration);
+      assertThat(Duration.parse(formatted)).isEqualTo(duration);
+    }
+  }
+
+  @Test
+  public void parse_withRegion_shouldOnlyParseRegion() {
+    String json = "{\"timeout\":\"PT1H10M0.5S\"}";
+    int start = json.indexOf("PT");
+    int end = json.lastIndexOf('"');
+    assertThat(IsoDurations.parse(json, start, end))
+        .isEqualTo(Duration.ofHours(1).plusMinutes(10).plusMillis(500));
+    assertThat(IsoDurations.parseNanos(json, start, end)).isEqualTo(4_200_500_000_000L);
+  }
+
+  @Test
+  public void parseNanos_shouldMatchParse() {
+    assertThat(IsoDurations.parseNanos("-PT-0.5S")).isEqualTo(500_000_000L);
+    assertThat(IsoDurations.parseNanos("PT-9223372036.854775808S")).isEqualTo(Long.MIN_VALUE);
+    try {
+      IsoDurations.parseNanos("PT9223372036.854775808S");
+      fail("Expected an ArithmeticException");
+    } catch (ArithmeticException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void parse_withInvalidText_shouldThrow() {
+    ImmutableList<String> texts = ImmutableList.of("", "P", "PT", "Pt", "P1DT", "1S", "T1S",
+        "PT1", "PT1X", "P1H", "PT1D", "P1S", "PT1M1H", "PT1S1S", "PT1.5M", "PT.5S",
+        "PT1.1234567891S", "PT1S ", " PT1S", "--PT1S", "P--1D", "PT9223372036854775808S",
+        "P106751991167301D", "PT1,S1", "PT١S");
+    for (String text : texts) {
+      checkParseFailure(text);
+    }
+  }
+
+  @Test
+  public void parse_withOverflowingSum_shouldThrow() {
+    checkParseFailure("P106751991167300DT24H");
+    checkParseFailure("P-1DT-9223372036854775808S");
+    checkParseFailure("-PT-9223372036854775808S");
+  }
+
+  @Test
+  public void parse_withErrorIndex_shouldReportPosition() {
+    try {
+      IsoDurations.parse("PT1H10X");
+      fail("Expected a DateTimeParseException");
+    } catch (DateTimeParseException e) {
+      assertThat(e.getErrorIndex()).isEqualTo(6);
+    }
+  }
+}
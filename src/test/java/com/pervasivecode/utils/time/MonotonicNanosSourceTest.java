@@ -0,0 +1,114 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.truth.Truth.assertThat;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import com.pervasivecode.utils.time.testing.FakeNanoSource;
+
+public class MonotonicNanosSourceTest {
+  private static final int NUM_THREADS = 4;
+  private static final int VALUES_PER_THREAD = 20_000;
+
+  /** A source that returns 1,000, 1,000, 990, 990, 980, ... */
+  private static CurrentNanosSource steppingBackward() {
+    AtomicLong calls = new AtomicLong();
+    return () -> 1_000 - calls.getAndIncrement() / 2 * 10;
+  }
+
+  @Test
+  public void currentTimeNanoPrecision_withAdvancingSource_shouldReturnSourceValues() {
+    FakeNanoSource fakeSource = new FakeNanoSource();
+    MonotonicNanosSource source = new MonotonicNanosSource(fakeSource);
+    long first = source.currentTimeNanoPrecision();
+    fakeSource.incrementTimeNanos(100);
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(first + 101);
+  }
+
+  @Test
+  public void currentTimeNanoPrecision_withSourceSteppingBackward_shouldIncrease() {
+    MonotonicNanosSource source = new MonotonicNanosSource(steppingBackward());
+    for (int i = 0; i < 5; i++) {
+      assertThat(source.currentTimeNanoPrecision()).isEqualTo(1_000 + i);
+    }
+  }
+
+  @Test
+  public void striped_withSourceSteppingBackward_shouldReserveRanges() {
+    MonotonicNanosSource source = MonotonicNanosSource.striped(steppingBackward(), 3);
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(1_000);
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(1_001);
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(1_002);
+    // The range [1,000, 1,003) is used up, so a new range is reserved.
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(1_003);
+  }
+
+  @Test
+  public void striped_withAdvancingSource_shouldReturnSourceValues() {
+    FakeNanoSource fakeSource = new FakeNanoSource();
+    MonotonicNanosSource source = MonotonicNanosSource.striped(fakeSource, 1_000);
+    long first = source.currentTimeNanoPrecision();
+    fakeSource.incrementTimeNanos(100);
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(first + 101);
+    // Past the end of the range.
+    fakeSource.incrementTimeNanos(5_000);
+    assertThat(source.currentTimeNanoPrecision()).isEqualTo(first + 5_102);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void striped_withRangeSizeOfOne_shouldThrow() {
+    MonotonicNanosSource.striped(new FakeNanoSource(), 1);
+  }
+
+  /**
+   * Get values from several threads at once, and check that the values are unique and strictly
+   * increasing in each thread.
+   */
+  private static void checkConcurrentValues(MonotonicNanosSource source) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+    try {
+      List<Future<long[]>> futures = new ArrayList<>();
+      for (int t = 0; t < NUM_THREADS; t++) {
+        futures.add(executor.submit(() -> {
+          long[] values = new long[VALUES_PER_THREAD];
+          for (int i = 0; i < VALUES_PER_THREAD; i++) {
+            values[i] = source.currentTimeNanoPrecision();
+          }
+          return values;
+        }));
+      }
+      Set<Long> allValues = new HashSet<>();
+      for (Future<long[]> future : futures) {
+        long[] values = future.get();
+        for (int i = 0; i < values.length; i++) {
+          if (i > 0) {
+            assertThat(values[i]).isGreaterThan(values[i - 1]);
+          }
+          allValues.add(values[i]);
+        }
+      }
+      assertThat(allValues).hasSize(NUM_THREADS * VALUES_PER_THREAD);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void currentTimeNanoPrecision_fromManyThreads_shouldReturnUniqueValues()
+      throws Exception {
+    checkConcurrentValues(new MonotonicNanosSource(() -> 42L));
+    checkConcurrentValues(new MonotonicNanosSource(steppingBackward()));
+  }
+
+  @Test
+  public void striped_fromManyThreads_shouldReturnUniqueValues() throws Exception {
+    checkConcurrentValues(MonotonicNanosSource.striped(() -> 42L, 64));
+    checkConcurrentValues(MonotonicNanosSource.striped(steppingBackward(), 64));
+  }
+}
@@ -2,7 +2,12 @@ package com.pervasivecode.utils.time;
 
 import static com.google.common.truth.Truth.assertThat;
 import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+import static java.time.temporal.ChronoUnit.MINUTES;
 import java.math.BigDecimal;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
 import org.junit.Test;
 import com.google.common.collect.ImmutableMap;
 
@@ -27,4 +32,52 @@ public class UnitSuffixProvidersTest {
     assertThat(dayOrDaysProvider.suffixFor(DAYS, -2)).isEqualTo("days");
     assertThat(dayOrDaysProvider.suffixFor(DAYS, BigDecimal.valueOf(-2))).isEqualTo("days");
   }
+
+  @Test
+  public void singularAndPluralProvider_withLongMagnitude_shouldWork() {
+    UnitSuffixProvider dayOrDaysProvider = UnitSuffixProviders
+        .singularAndPlural(ImmutableMap.of(DAYS, "day"), ImmutableMap.of(DAYS, "days"));
+
+    assertThat(dayOrDaysProvider.suffixFor(DAYS, 1L)).isEqualTo("day");
+    assertThat(dayOrDaysProvider.suffixFor(DAYS, -1L)).isEqualTo("days");
+    assertThat(dayOrDaysProvider.suffixFor(DAYS, 0L)).isEqualTo("days");
+    assertThat(dayOrDaysProvider.suffixFor(DAYS, Long.MAX_VALUE)).isEqualTo("days");
+    assertThat(dayOrDaysProvider.suffixFor(HOURS, 1L)).isNull();
+  }
+
+  @Test
+  public void fixedSuffixPerUnitProvider_shouldCopyTheMap() {
+    Map<ChronoUnit, String> suffixes = new HashMap<>();
+    suffixes.put(MINUTES, "m");
+    UnitSuffixProvider provider = UnitSuffixProviders.fixedSuffixPerUnit(suffixes);
+    suffixes.put(MINUTES, "min");
+    suffixes.put(HOURS, "h");
+
+    assertThat(provider.suffixFor(MINUTES, 3)).isEqualTo("m");
+    assertThat(provider.suffixFor(MINUTES, 3L)).isEqualTo("m");
+    assertThat(provider.suffixFor(MINUTES, Long.MIN_VALUE)).isEqualTo("m");
+    assertThat(provider.suffixFor(MINUTES, BigDecimal.TEN)).isEqualTo("m");
+    assertThat(provider.suffixFor(HOURS, 1L)).isNull();
+  }
+
+  @Test
+  public void defaultLongSuffixFor_shouldUseIntOrBigDecimalMethod() {
+    UnitSuffixProvider provider = new UnitSuffixProvider() {
+      @Override
+      public String suffixFor(ChronoUnit unit, BigDecimal magnitude) {
+        return "big " + magnitude;
+      }
+
+      @Override
+      public String suffixFor(ChronoUnit unit, int magnitude) {
+        return "int " + magnitude;
+      }
+    };
+
+    assertThat(provider.suffixFor(DAYS, 5L)).isEqualTo("int 5");
+    assertThat(provider.suffixFor(DAYS, (long) Integer.MIN_VALUE))
+        .isEqualTo("int " + Integer.MIN_VALUE);
+    assertThat(provider.suffixFor(DAYS, Integer.MAX_VALUE + 1L))
+        .isEqualTo("big " + (Integer.MAX_VALUE + 1L));
+  }
 }
@@ -0,0 +1,37 @@
+package com.pervasivecode.utils.time;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.truth.Truth;
+
+public class Utf8ByteBufferAppendableTest {
+  private static byte[] encode(String... parts) {
+    ByteBuffer buffer = ByteBuffer.allocate(100);
+    Utf8ByteBufferAppendable encoder =
+        new Utf8ByteBufferAppendable(buffer, ImmutableMap.of("µs", "µs".getBytes(UTF_8)));
+    for (String part : parts) {
+      encoder.append(part);
+    }
+    encoder.finish();
+    return Arrays.copyOf(buffer.array(), buffer.position());
+  }
+
+  @Test
+  public void append_shouldEncodeLikeStringGetBytes() {
+    String[] texts = {"", "1s 370ms", "15µs", "1 234 ms", "€5", "🕒 1h",
+        "\ud83d", "a\udd52b", "\ud83d🕒"};
+    for (String text : texts) {
+      Truth.assertThat(encode(text)).isEqualTo(text.getBytes(UTF_8));
+    }
+  }
+
+  @Test
+  public void append_withSurrogatePairSplitAcrossAppends_shouldEncodeCodePoint() {
+    Truth.assertThat(encode("1h \ud83d", "\udd52", "µs"))
+        .isEqualTo("1h 🕒µs".getBytes(UTF_8));
+    Truth.assertThat(encode("\ud83d", "µs")).isEqualTo("\ud83dµs".getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,125 @@
+package com.pervasivecode.utils.time;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.MONTHS;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Random;
+import org.junit.Test;
+import com.google.common.collect.ImmutableList;
+
+public class ZoneCalendarTest {
+  private static final ImmutableList<ZoneId> ZONES = ImmutableList.of(ZoneOffset.UTC,
+      ZoneId.of("America/New_York"), ZoneId.of("Europe/London"), ZoneId.of("Australia/Lord_Howe"),
+      ZoneId.of("Pacific/Apia"), ZoneId.of("Asia/Kolkata"), ZoneOffset.ofHours(-7));
+
+  // From 1850 through 2149, to include values outside of the cached years.
+  private static final long MIN_SECOND = LocalDateTime.of(1850, 1, 1, 0, 0)
+      .toEpochSecond(ZoneOffset.UTC);
+  private static final long MAX_SECOND = LocalDateTime.of(2150, 1, 1, 0, 0)
+      .toEpochSecond(ZoneOffset.UTC);
+
+  private static long randomSecond(Random random) {
+    return MIN_SECOND + Math.floorMod(random.nextLong(), MAX_SECOND - MIN_SECOND);
+  }
+
+  @Test
+  public void of_shouldReturnSharedInstance() {
+    ZoneId zone = ZoneId.of("America/New_York");
+    assertThat(ZoneCalendar.of(zone)).isSameAs(ZoneCalendar.of(ZoneId.of("America/New_York")));
+  }
+
+  @Test
+  public void of_withManyZones_shouldLimitCacheSize() {
+    for (int i = 0; i < ZoneCalendar.MAX_CACHED_ZONES * 3; i++) {
+      ZoneOffset offset = ZoneOffset.ofTotalSeconds(i);
+      assertThat(ZoneCalendar.of(offset).offsetAt(0)).isEqualTo(i);
+    }
+    assertThat(ZoneCalendar.numCachedZones()).isAtMost((long) ZoneCalendar.MAX_CACHED_ZONES);
+  }
+
+  @Test
+  public void offsetAt_shouldMatchZoneRules() {
+    Random random = new Random(1);
+    for (ZoneId zone : ZONES) {
+      ZoneCalendar calendar = ZoneCalendar.of(zone);
+      for (int i = 0; i < 10_000; i++) {
+        long epochSecond = randomSecond(random);
+        assertThat(calendar.offsetAt(epochSecond)).isEqualTo(
+            zone.getRules().getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds());
+      }
+    }
+  }
+
+  @Test
+  public void epochSecondOf_shouldResolveLikeZonedDateTime() {
+    Random random = new Random(2);
+    for (ZoneId zone : ZONES) {
+      ZoneCalendar calendar = ZoneCalendar.of(zone);
+      for (int i = 0; i < 10_000; i++) {
+        long localSecond = randomSecond(random);
+        LocalDateTime local = LocalDateTime.ofEpochSecond(localSecond, 0, ZoneOffset.UTC);
+        for (ZoneOffset preferred : ImmutableList.of(ZoneOffset.ofHours(-4),
+            ZoneOffset.ofHours(-5), ZoneOffset.ofHours(1), ZoneOffset.ofHoursMinutes(11, 30))) {
+          assertThat(calendar.epochSecondOf(localSecond, preferred.getTotalSeconds()))
+              .named(zone + " " + local + " " + preferred)
+              .isEqualTo(ZonedDateTime.ofLocal(local, zone, preferred).toEpochSecond());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void epochSecondOf_inGapOrOverlap_shouldResolveLikeZonedDateTime() {
+    ZoneId zone = ZoneId.of("America/New_York");
+    ZoneCalendar calendar = ZoneCalendar.of(zone);
+    int edt = ZoneOffset.ofHours(-4).getTotalSeconds();
+    int est = ZoneOffset.ofHours(-5).getTotalSeconds();
+    // 2:30 did not happen on 2019-03-10, and happened twice on 2019-11-03.
+    for (LocalDateTime local : ImmutableList.of(LocalDateTime.of(2019, 3, 10, 2, 30),
+        LocalDateTime.of(2019, 11, 3, 1, 30), LocalDateTime.of(1890, 11, 2, 1, 30))) {
+      long localSecond = local.toEpochSecond(ZoneOffset.UTC);
+      for (int preferred : new int[] {edt, est}) {
+        assertThat(calendar.epochSecondOf(localSecond, preferred)).isEqualTo(ZonedDateTime
+            .ofLocal(local, zone, ZoneOffset.ofTotalSeconds(preferred)).toEpochSecond());
+      }
+    }
+  }
+
+  @Test
+  public void plusMonths_shouldMatchLocalDateTime() {
+    Random random = new Random(3);
+    for (int i = 0; i < 100_000; i++) {
+      long localSecond = randomSecond(random);
+      long months = random.nextInt(2_400) - 1_200;
+      LocalDateTime local = LocalDateTime.ofEpochSecond(localSecond, 0, ZoneOffset.UTC);
+      assertThat(ZoneCalendar.plusMonths(localSecond, months)).named(local + " + " + months)
+          .isEqualTo(local.plusMonths(months).toEpochSecond(ZoneOffset.UTC));
+    }
+  }
+
+  @Test
+  public void monthsUntilAndDaysUntil_shouldMatchLocalDateTime() {
+    Random random = new Random(4);
+    for (int i = 0; i < 100_000; i++) {
+      long fromSecond = randomSecond(random);
+      long maxSpan = 86_400L * (i % 3 == 0 ? 3 : 900);
+      long toSecond = fromSecond + Math.floorMod(random.nextLong(), maxSpan);
+      int fromNano = random.nextInt(1_000_000_000);
+      int toNano = random.nextInt(1_000_000_000);
+      LocalDateTime from = LocalDateTime.ofEpochSecond(fromSecond, fromNano, ZoneOffset.UTC);
+      LocalDateTime to = LocalDateTime.ofEpochSecond(toSecond, toNano, ZoneOffset.UTC);
+      if (to.isBefore(from)) {
+        continue;
+      }
+      assertThat(ZoneCalendar.monthsUntil(fromSecond, fromNano, toSecond, toNano))
+          .named(from + " to " + to).isEqualTo(from.until(to, MONTHS));
+      assertThat(ZoneCalendar.daysUntil(fromSecond, fromNano, toSecond, toNano))
+          .named(from + " to " + to).isEqualTo(from.until(to, DAYS));
+    }
+  }
+}